@@ -0,0 +1,156 @@
+package org.brandao.brcache;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Acumula os horários de acesso dos itens com tempo de ociosidade.
+ * <p>
+ * A leitura de um item não altera o índice. O horário do acesso é
+ * registrado no buffer e aplicado ao índice em lote. Acessos dentro do
+ * intervalo definido pela granularidade são ignorados.
+ * </p>
+ *
+ * @author Brandao
+ *
+ */
+class AccessTimeBuffer implements Serializable{
+
+	private static final long serialVersionUID = -3507186398437510418L;
+
+	/**
+	 * Quantidade de acessos pendentes que força a atualização do índice.
+	 */
+	private static final int MAX_PENDING = 1024;
+
+	private ConcurrentHashMap<String, Access> pending;
+
+	private AtomicInteger count;
+
+	private ReentrantLock flushLock;
+
+	private volatile long lastFlush;
+
+	private volatile long granularity;
+
+	public AccessTimeBuffer(long granularity){
+		this.pending     = new ConcurrentHashMap<String, Access>();
+		this.count       = new AtomicInteger();
+		this.flushLock   = new ReentrantLock();
+		this.lastFlush   = System.currentTimeMillis();
+		this.granularity = granularity;
+	}
+
+	/**
+	 * Atualiza os metadados com o último acesso ainda não aplicado ao índice.
+	 *
+	 * @param key Chave do item.
+	 * @param map Metadados do item.
+	 */
+	public void merge(String key, DataMap map){
+		Access access = this.pending.get(key);
+		DataMap last  = access == null? null : access.getMap();
+
+		if(last != null && last != map && last.getId() == map.getId() &&
+				last.getMostRecentTime() > map.getMostRecentTime()){
+			map.setMostRecentTime(last.getMostRecentTime());
+		}
+	}
+
+	/**
+	 * Registra o acesso a um item. O acesso é ignorado se o último ocorreu
+	 * dentro do intervalo da granularidade. O intervalo é limitado a um
+	 * oitavo do tempo de ociosidade do item.
+	 *
+	 * @param key Chave do item.
+	 * @param map Metadados do item.
+	 * @param time Horário do acesso.
+	 * @return <code>true</code> se os acessos pendentes devem ser aplicados ao índice.
+	 */
+	public boolean access(String key, DataMap map, long time){
+		long interval = Math.min(this.granularity, map.getTimeToIdle() >> 3);
+
+		if(time - map.getMostRecentTime() < interval)
+			return false;
+
+		map.setMostRecentTime(time);
+
+		if(this.pending.put(key, new Access(map)) == null)
+			this.count.incrementAndGet();
+
+		return this.count.get() >= MAX_PENDING || time - this.lastFlush >= this.granularity;
+	}
+
+	/**
+	 * Obtém os acessos pendentes. Deve ser executado somente com o bloqueio
+	 * obtido em {@link #tryLock()}.
+	 *
+	 * @return Acessos pendentes.
+	 */
+	public Set<Map.Entry<String, Access>> getPending(){
+		this.lastFlush = System.currentTimeMillis();
+		return this.pending.entrySet();
+	}
+
+	/**
+	 * Remove um acesso pendente. Um acesso registrado depois da obtenção
+	 * do registro não é removido, mesmo que seja do mesmo item.
+	 *
+	 * @param key Chave do item.
+	 * @param access Registro obtido em {@link #getPending()}.
+	 * @return <code>true</code> se o acesso foi removido.
+	 */
+	public boolean remove(String key, Access access){
+		if(this.pending.remove(key, access)){
+			this.count.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	public boolean tryLock(){
+		return this.flushLock.tryLock();
+	}
+
+	public void unlock(){
+		this.flushLock.unlock();
+	}
+
+	public void clear(){
+		this.pending.clear();
+		this.count.set(0);
+	}
+
+	public long getGranularity(){
+		return this.granularity;
+	}
+
+	public void setGranularity(long granularity){
+		this.granularity = granularity;
+	}
+
+	/**
+	 * Registro de um acesso pendente. Cada acesso gera um novo registro,
+	 * e registros são comparados pela instância.
+	 */
+	static final class Access implements Serializable{
+
+		private static final long serialVersionUID = 2870911235718324522L;
+
+		private final DataMap map;
+
+		Access(DataMap map){
+			this.map = map;
+		}
+
+		public DataMap getMap(){
+			return this.map;
+		}
+
+	}
+
+}
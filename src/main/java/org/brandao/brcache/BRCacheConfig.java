@@ -4,7 +4,14 @@ import java.io.Serializable;
 
 import org.brandao.brcache.collections.DiskSwapper;
 import org.brandao.brcache.collections.Swapper;
+import org.brandao.brcache.eviction.EvictionPolicy;
+import org.brandao.brcache.eviction.LRUEvictionPolicy;
+import org.brandao.brcache.eviction.TinyLFUEvictionPolicy;
+import org.brandao.brcache.memory.BudgetMemory;
+import org.brandao.brcache.memory.MappedMemory;
 import org.brandao.brcache.memory.Memory;
+import org.brandao.brcache.memory.MemoryBudgetPolicy;
+import org.brandao.brcache.serializer.ValueSerializer;
 
 /**
  * Configuração de um cache.
@@ -28,6 +35,10 @@ public class BRCacheConfig implements Serializable{
 	private static final String MEMORY_PREFIX = "org.brandao.brcache.memory.";
 
 	private static final String MEMORY_SUFFIX = "Memory";
+
+	private static final String SERIALIZER_PREFIX = "org.brandao.brcache.serializer.";
+
+	private static final String SERIALIZER_SUFFIX = "ValueSerializer";
 	
 	protected long nodesBufferSize;
     
@@ -50,6 +61,8 @@ public class BRCacheConfig implements Serializable{
 	protected double dataSwapFactor;
 	
 	protected long maxSizeEntry;
+	
+	protected int dataInlineSize;
     
     protected int maxSizeKey;
     
@@ -59,6 +72,28 @@ public class BRCacheConfig implements Serializable{
     
     protected Memory memory;
     
+    protected long memoryBudget;
+    
+    protected MemoryBudgetPolicy memoryBudgetPolicy;
+    
+    protected long memoryBudgetTimeout;
+    
+    protected ValueSerializer valueSerializer;
+    
+    protected int asyncThreads;
+    
+    protected long accessTimeGranularity;
+    
+    protected long expirationInterval;
+    
+    protected String evictionPolicy;
+    
+    protected long evictionMaxBytes;
+    
+    protected long evictionMaxEntries;
+    
+    protected String indexEngine;
+    
     protected String dataPath;
     
     protected Configuration configuration;
@@ -90,16 +125,37 @@ public class BRCacheConfig implements Serializable{
         this.dataPageSize    = config.getLong(CacheConstants.DATA_PAGE_SIZE,		"8k");
         this.dataSwapFactor  = config.getDouble(CacheConstants.DATA_SWAP_FACTOR,	"0.3");
         this.maxSizeEntry    = config.getLong(CacheConstants.MAX_SIZE_ENTRY,		"1m");
+        this.dataInlineSize  = config.getInt(CacheConstants.DATA_INLINE_SIZE,		"64");
         this.maxSizeKey      = config.getInt(CacheConstants.MAX_SIZE_KEY,			"100");
         this.swapperThread   = config.getInt(CacheConstants.SWAPPER_THREAD,			"4");
         this.dataPath        = config.getString(CacheConstants.DATA_PATH,			"/mnt/brcache");
         this.swapper         = this.createSwapper(config.getString(CacheConstants.SWAPPER_TYPE,"file"), classLoader);
         this.memory          = this.createMemory(config.getString(CacheConstants.MEMORY_ACCESS_TYPE,"heap"), classLoader);
+        this.memoryBudget        = config.getLong(CacheConstants.MEMORY_BUDGET,			"0");
+        this.memoryBudgetPolicy  = MemoryBudgetPolicy.valueOf(config.getString(CacheConstants.MEMORY_BUDGET_POLICY,"block").toUpperCase());
+        this.memoryBudgetTimeout = config.getLong(CacheConstants.MEMORY_BUDGET_TIMEOUT,	"1000");
+        this.valueSerializer     = this.createValueSerializer(config.getString(CacheConstants.VALUE_SERIALIZER,"java"), classLoader);
+        this.asyncThreads        = config.getInt(CacheConstants.ASYNC_THREADS,			"4");
+        this.accessTimeGranularity = config.getLong(CacheConstants.ACCESS_TIME_GRANULARITY,	"1000");
+        this.expirationInterval    = config.getLong(CacheConstants.EXPIRATION_INTERVAL,		"1000");
+        this.evictionPolicy        = config.getString(CacheConstants.EVICTION_POLICY,			"tinylfu");
+        this.evictionMaxBytes      = config.getLong(CacheConstants.EVICTION_MAX_BYTES,			"0");
+        this.evictionMaxEntries    = config.getLong(CacheConstants.EVICTION_MAX_ENTRIES,		"0");
+        this.indexEngine           = config.getString(CacheConstants.INDEX_ENGINE,			"tree");
         
         if(this.swapper instanceof DiskSwapper){
         	((DiskSwapper)this.swapper).setRootPath(this.dataPath);
         }
         
+        if(this.memory instanceof MappedMemory){
+        	((MappedMemory)this.memory).setRootPath(this.dataPath);
+        }
+        
+        if(this.memoryBudget > 0){
+        	this.memory = new BudgetMemory(this.memory, this.memoryBudget, 
+        			this.memoryBudgetPolicy, this.memoryBudgetTimeout);
+        }
+        
     }
     
     @SuppressWarnings("unchecked")
@@ -134,6 +190,61 @@ public class BRCacheConfig implements Serializable{
     	}
     }
     
+    @SuppressWarnings("unchecked")
+    protected ValueSerializer createValueSerializer(String name, ClassLoader classLoader){
+    	try{
+    		//o nome pode ser o de uma classe.
+        	String className = 
+        			name.indexOf('.') != -1?
+        			name :
+        			SERIALIZER_PREFIX + 
+        			Character.toUpperCase(name.charAt(0)) + name.substring(1, name.length()).toLowerCase() +
+        			SERIALIZER_SUFFIX;
+        	
+        	Class<ValueSerializer> clazz = (Class<ValueSerializer>)Class.forName(className, true, classLoader);
+    		return clazz.newInstance();
+    	}
+    	catch(Throwable e){
+    		throw new IllegalStateException("invalid value serializer: " + name, e);
+    	}
+    }
+    
+    /**
+     * Cria a política de remoção definida na configuração. A política somente 
+     * é criada se houver um limite de tamanho ou se a memória for limitada 
+     * com a política {@link MemoryBudgetPolicy#EVICT}. Cada cache deve ter 
+     * a sua própria instância.
+     * @return política ou <code>null</code>.
+     */
+    public EvictionPolicy createEvictionPolicy(){
+    	boolean bounded = 
+    			this.evictionMaxBytes > 0 || this.evictionMaxEntries > 0 ||
+    			(this.memory instanceof BudgetMemory && 
+    					((BudgetMemory)this.memory).getPolicy() == MemoryBudgetPolicy.EVICT);
+    	
+    	if(!bounded || this.evictionPolicy == null || this.evictionPolicy.equalsIgnoreCase("none"))
+    		return null;
+    	
+    	return this.createEvictionPolicy(this.evictionPolicy, Thread.currentThread().getContextClassLoader());
+    }
+    
+    @SuppressWarnings("unchecked")
+	protected EvictionPolicy createEvictionPolicy(String name, ClassLoader classLoader){
+    	if(name.equalsIgnoreCase("lru"))
+    		return new LRUEvictionPolicy();
+    	
+    	if(name.equalsIgnoreCase("tinylfu"))
+    		return new TinyLFUEvictionPolicy((int)Math.min(this.evictionMaxEntries, Integer.MAX_VALUE >> 1));
+    	
+    	try{
+        	Class<EvictionPolicy> clazz = (Class<EvictionPolicy>)Class.forName(name, true, classLoader);
+    		return clazz.newInstance();
+    	}
+    	catch(Throwable e){
+    		throw new IllegalStateException("invalid eviction policy: " + name, e);
+    	}
+    }
+    
     /**
      * Obtém os metadados de configuração.
      * @return metadados.
@@ -401,5 +512,206 @@ public class BRCacheConfig implements Serializable{
 	public void setSwapper(Swapper swapper) {
 		this.swapper = swapper;
 	}
-    
+
+	/**
+	 * Obtém o tamanho máximo, em bytes, que um item pode ter para ser 
+	 * armazenado no próprio índice.
+	 * @return tamanho.
+	 */
+	public int getDataInlineSize() {
+		return dataInlineSize;
+	}
+
+	/**
+	 * Define o tamanho máximo, em bytes, que um item pode ter para ser 
+	 * armazenado no próprio índice.
+	 * @param dataInlineSize tamanho. O valor 0 desabilita o recurso.
+	 */
+	public void setDataInlineSize(int dataInlineSize) {
+		this.dataInlineSize = dataInlineSize;
+	}
+
+	/**
+	 * Obtém a quantidade máxima, em bytes, de memória usada pelos dados.
+	 * @return quantidade. O valor 0 indica que não há limite.
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Define a quantidade máxima, em bytes, de memória usada pelos dados.
+	 * O limite é aplicado somente na leitura da configuração.
+	 * @param memoryBudget quantidade.
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Obtém a política aplicada quando o limite de memória é atingido.
+	 * @return política.
+	 */
+	public MemoryBudgetPolicy getMemoryBudgetPolicy() {
+		return memoryBudgetPolicy;
+	}
+
+	/**
+	 * Define a política aplicada quando o limite de memória é atingido.
+	 * @param memoryBudgetPolicy política.
+	 */
+	public void setMemoryBudgetPolicy(MemoryBudgetPolicy memoryBudgetPolicy) {
+		this.memoryBudgetPolicy = memoryBudgetPolicy;
+	}
+
+	/**
+	 * Obtém o tempo máximo, em milisegundos, que uma alocação aguarda a 
+	 * liberação de memória.
+	 * @return tempo.
+	 */
+	public long getMemoryBudgetTimeout() {
+		return memoryBudgetTimeout;
+	}
+
+	/**
+	 * Define o tempo máximo, em milisegundos, que uma alocação aguarda a 
+	 * liberação de memória.
+	 * @param memoryBudgetTimeout tempo.
+	 */
+	public void setMemoryBudgetTimeout(long memoryBudgetTimeout) {
+		this.memoryBudgetTimeout = memoryBudgetTimeout;
+	}
+
+	/**
+	 * Obtém a estratégia de serialização dos valores.
+	 * @return estratégia.
+	 */
+	public ValueSerializer getValueSerializer() {
+		return valueSerializer;
+	}
+
+	/**
+	 * Define a estratégia de serialização dos valores.
+	 * @param valueSerializer estratégia.
+	 */
+	public void setValueSerializer(ValueSerializer valueSerializer) {
+		this.valueSerializer = valueSerializer;
+	}
+
+	/**
+	 * Obtém a quantidade de processos que executam as operações assíncronas.
+	 * @return quantidade.
+	 */
+	public int getAsyncThreads() {
+		return asyncThreads;
+	}
+
+	/**
+	 * Define a quantidade de processos que executam as operações assíncronas.
+	 * @param asyncThreads quantidade.
+	 */
+	public void setAsyncThreads(int asyncThreads) {
+		this.asyncThreads = asyncThreads;
+	}
+
+	/**
+	 * Obtém o intervalo mínimo, em milisegundos, entre duas atualizações do 
+	 * horário do último acesso de um item.
+	 * @return intervalo.
+	 */
+	public long getAccessTimeGranularity() {
+		return accessTimeGranularity;
+	}
+
+	/**
+	 * Define o intervalo mínimo, em milisegundos, entre duas atualizações do 
+	 * horário do último acesso de um item.
+	 * @param accessTimeGranularity intervalo. O valor 0 registra todos os acessos.
+	 */
+	public void setAccessTimeGranularity(long accessTimeGranularity) {
+		this.accessTimeGranularity = accessTimeGranularity;
+	}
+
+	/**
+	 * Obtém o intervalo, em milisegundos, entre duas execuções da remoção 
+	 * dos itens expirados.
+	 * @return intervalo.
+	 */
+	public long getExpirationInterval() {
+		return expirationInterval;
+	}
+
+	/**
+	 * Define o intervalo, em milisegundos, entre duas execuções da remoção 
+	 * dos itens expirados.
+	 * @param expirationInterval intervalo. O valor 0 desabilita a remoção.
+	 */
+	public void setExpirationInterval(long expirationInterval) {
+		this.expirationInterval = expirationInterval;
+	}
+
+	/**
+	 * Obtém o nome da política de remoção dos itens.
+	 * @return nome.
+	 */
+	public String getEvictionPolicy() {
+		return evictionPolicy;
+	}
+
+	/**
+	 * Define o nome da política de remoção dos itens.
+	 * @param evictionPolicy lru, tinylfu, none ou o nome de uma classe.
+	 */
+	public void setEvictionPolicy(String evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+	}
+
+	/**
+	 * Obtém a quantidade máxima de bytes armazenados.
+	 * @return quantidade.
+	 */
+	public long getEvictionMaxBytes() {
+		return evictionMaxBytes;
+	}
+
+	/**
+	 * Define a quantidade máxima de bytes armazenados.
+	 * @param evictionMaxBytes quantidade. O valor 0 indica que não há limite.
+	 */
+	public void setEvictionMaxBytes(long evictionMaxBytes) {
+		this.evictionMaxBytes = evictionMaxBytes;
+	}
+
+	/**
+	 * Obtém a quantidade máxima de itens armazenados.
+	 * @return quantidade.
+	 */
+	public long getEvictionMaxEntries() {
+		return evictionMaxEntries;
+	}
+
+	/**
+	 * Define a quantidade máxima de itens armazenados.
+	 * @param evictionMaxEntries quantidade. O valor 0 indica que não há limite.
+	 */
+	public void setEvictionMaxEntries(long evictionMaxEntries) {
+		this.evictionMaxEntries = evictionMaxEntries;
+	}
+
+	/**
+	 * Obtém o tipo do índice dos itens.
+	 * @return tipo.
+	 */
+	public String getIndexEngine() {
+		return indexEngine;
+	}
+
+	/**
+	 * Define o tipo do índice dos itens.
+	 * @param indexEngine tree ou hash.
+	 */
+	public void setIndexEngine(String indexEngine) {
+		this.indexEngine = indexEngine;
+	}
+	
 }
@@ -3,11 +3,16 @@ package org.brandao.brcache;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
 
 import org.brandao.brcache.collections.Swapper;
 import org.brandao.brcache.memory.Memory;
+import org.brandao.brcache.serializer.JavaValueSerializer;
+import org.brandao.brcache.serializer.ValueSerializer;
 import org.brandao.brcache.tx.CacheTransactionManager;
 import org.brandao.brcache.tx.TXCache;
 
@@ -24,6 +29,8 @@ public class BasicCache
 	
 	protected BRCacheConfig config;
 	
+	protected ValueSerializer serializer;
+	
     /**
      * Cria um novo cache.
      * 
@@ -40,6 +47,16 @@ public class BasicCache
     			config.getMaxSizeEntry(), config.getMaxSizeKey(), 
     			config.getSwapper(), config.getSwapperThread(), config.getMemory());
     	this.config = config;
+    	this.setIndexEngine(config.getIndexEngine());
+    	this.setInlineDataSize(config.getDataInlineSize());
+    	this.setAccessTimeGranularity(config.getAccessTimeGranularity());
+    	this.setExpirationInterval(config.getExpirationInterval());
+    	this.setEvictionMaxBytes(config.getEvictionMaxBytes());
+    	this.setEvictionMaxEntries(config.getEvictionMaxEntries());
+    	this.setEvictionPolicy(config.createEvictionPolicy());
+    	
+    	if(config.getValueSerializer() != null)
+    		this.serializer = config.getValueSerializer();
     }
     
     /**
@@ -84,6 +101,7 @@ public class BasicCache
     	super(nodeBufferSize, nodePageSize, nodeSwapFactor, indexBufferSize, 
     			indexPageSize, indexSwapFactor, dataBufferSize, dataPageSize, blockSize, 
     			dataSwapFactor, maxSizeEntry, maxSizeKey, swapper, quantitySwaperThread, memory);
+    	this.serializer = new JavaValueSerializer();
     }
     
     /**
@@ -121,9 +139,7 @@ public class BasicCache
 		
 		try{
 			bout = new ByteArrayOutputStream();
-			ObjectOutputStream oout = new ObjectOutputStream(bout);
-			oout.writeObject(value);
-			oout.flush();
+			this.serializer.writeObject(value, bout);
 		}
 		catch(Throwable e){
 			throw new StorageException(e, CacheErrors.ERROR_1020);
@@ -174,9 +190,7 @@ public class BasicCache
 		
 		try{
 			bout = new ByteArrayOutputStream();
-			ObjectOutputStream oout = new ObjectOutputStream(bout);
-			oout.writeObject(value);
-			oout.flush();
+			this.serializer.writeObject(value, bout);
 		}
 		catch(Throwable e){
 			throw new StorageException(e, CacheErrors.ERROR_1020);
@@ -188,8 +202,12 @@ public class BasicCache
 						timeToLive, timeToIdle);
 			
 			if(in != null){
-				ObjectInputStream oin = new ObjectInputStream(in);
-				return oin.readObject();
+				try{
+					return this.serializer.readObject(in);
+				}
+				finally{
+					in.close();
+				}
 			}
 			else
 				return null;
@@ -226,27 +244,38 @@ public class BasicCache
      * @throws StorageException Lançada se ocorrer alguma falha ao tentar inserir o item.
 	 */
 	public boolean put(String key, Object value, long timeToLive, long timeToIdle) throws StorageException {
+		return this.putObject(key, value, timeToLive, timeToIdle);
+	}
+	
+	/**
+	 * Associa os valores às chaves. As chaves são processadas em ordem.
+	 * @param values valores e suas chaves.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar inserir um item.
+	 */
+	public void putAll(Map<String, ?> values, long timeToLive, long timeToIdle) throws StorageException {
+		for(Map.Entry<String, ?> entry: new TreeMap<String, Object>(values).entrySet()){
+			this.putObject(entry.getKey(), entry.getValue(), timeToLive, timeToIdle);
+		}
+	}
+	
+	private boolean putObject(String key, Object value, long timeToLive, long timeToIdle) throws StorageException {
 		
-		ByteArrayOutputStream bout;
+		//O valor é serializado diretamente nos blocos do item.
+		CacheOutputStream out = super.openOutputStream(key, timeToLive, timeToIdle);
 		
 		try{
-			bout = new ByteArrayOutputStream();
-			ObjectOutputStream oout = new ObjectOutputStream(bout);
-			oout.writeObject(value);
-			oout.flush();
-		}
-		catch(Throwable e){
-			throw new StorageException(e, CacheErrors.ERROR_1020);
-		}
-		
-		try{
-			return this.putStream(key, new ByteArrayInputStream(bout.toByteArray()), 
-					timeToLive, timeToIdle);
+			this.serializer.writeObject(value, out);
+			out.close();
+			return out.isReplaced();
 		}
 		catch(StorageException e){
+			out.cancel();
 			throw e;
 		}
 		catch(Throwable e){
+			out.cancel();
 			throw new StorageException(e, CacheErrors.ERROR_1020);
 		}
 	}
@@ -264,6 +293,37 @@ public class BasicCache
     		long timeToLive, long timeToIdle) throws StorageException{
     	return super.putStream(key, inputData, timeToLive, timeToIdle);
     }
+    
+    /**
+     * Cria um fluxo para escrever o valor associado à chave. Os bytes são 
+     * escritos diretamente nos blocos do item e o item é registrado quando o 
+     * fluxo for fechado.
+	 * @param key chave associada ao valor.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @return fluxo de escrita do valor.
+     * @throws StorageException Lançada se os parâmetros forem inválidos.
+     */
+    public CacheOutputStream openOutputStream(String key, long timeToLive, 
+    		long timeToIdle) throws StorageException{
+    	return super.openOutputStream(key, timeToLive, timeToIdle);
+    }
+    
+    /**
+	 * Associa o fluxo de bytes do valor à chave. O tamanho é validado antes 
+	 * da leitura do fluxo.
+	 * @param key chave associada ao fluxo.
+     * @param inputData fluxo de bytes do valor.
+     * @param length quantidade de bytes do valor.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @return <code>true</code> se o item for substituido. Caso contrário, <code>false</code>
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar inserir o item.
+     */
+    public boolean putStream(String key, InputStream inputData, long length,
+    		long timeToLive, long timeToIdle) throws StorageException{
+    	return super.putStream(key, inputData, length, timeToLive, timeToIdle);
+    }
 	
     /* métodos de coleta */
     
@@ -278,8 +338,12 @@ public class BasicCache
 		try{
 			InputStream in = super.getStream(key);
 			if(in != null){
-				ObjectInputStream oin = new ObjectInputStream(in);
-				return oin.readObject();
+				try{
+					return this.serializer.readObject(in);
+				}
+				finally{
+					in.close();
+				}
 			}
 			else
 				return null;
@@ -303,6 +367,49 @@ public class BasicCache
     	return super.getStream(key);
     }
     
+	/**
+	 * Obtém os valores associados às chaves.
+	 * @param keys chaves associadas aos valores.
+     * @return valores das chaves que estão associadas a um valor.
+     * @throws RecoverException Lançada se ocorrer alguma falha ao tentar obter os
+     * itens.
+	 */
+	public Map<String, Object> getAll(Collection<String> keys) throws RecoverException {
+		Map<String, InputStream> streams = super.getStreams(keys);
+		Map<String, Object> result       = new HashMap<String, Object>();
+		
+		try{
+			for(Map.Entry<String, InputStream> entry: streams.entrySet()){
+				result.put(entry.getKey(), this.serializer.readObject(entry.getValue()));
+			}
+			return result;
+		}
+		catch(Throwable e){
+			throw new StorageException(e, CacheErrors.ERROR_1021);
+		}
+		finally{
+			for(InputStream in: streams.values()){
+				try{
+					in.close();
+				}
+				catch(Throwable e){
+				}
+			}
+		}
+	}
+	
+    /**
+     * Obtém os fluxos de bytes dos valores associados às chaves.
+     * @param keys chaves associadas aos fluxos.
+     * @return fluxos das chaves que estão associadas a um valor. Devem ser 
+     * fechados após o uso.
+     * @throws RecoverException Lançada se ocorrer alguma falha ao tentar obter os
+     * itens.
+     */
+    public Map<String, InputStream> getStreams(Collection<String> keys) throws RecoverException {
+    	return super.getStreams(keys);
+    }
+    
     /* métodos de remoção */
     
     /**
@@ -316,6 +423,46 @@ public class BasicCache
     	return super.removeStream(key);
     }
 
+    /**
+     * Remove os valores associados às chaves.
+     * @param keys chaves associadas aos valores.
+     * @return quantidade de itens removidos.
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar remover os
+     * itens.
+     */
+    public int removeAll(Collection<String> keys) throws StorageException{
+    	return super.removeStreams(keys);
+    }
+
+    /**
+     * Remove os valores cujas chaves iniciam com o prefixo. Os itens deixam de 
+     * ser encontrados antes do retorno e os dados são liberados em outro processo.
+     * @param prefix prefixo das chaves.
+     * @return resultado da operação com a quantidade de itens removidos.
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar remover os
+     * itens.
+     */
+    public Future<Integer> removeByPrefix(String prefix) throws StorageException{
+    	return super.removeStreamsByPrefix(prefix);
+    }
+    
+	/**
+	 * Obtém a estratégia de serialização dos valores.
+	 * @return estratégia.
+	 */
+	public ValueSerializer getValueSerializer() {
+		return serializer;
+	}
+
+	/**
+	 * Define a estratégia de serialização dos valores. Os valores já 
+	 * armazenados não são convertidos.
+	 * @param serializer estratégia.
+	 */
+	public void setValueSerializer(ValueSerializer serializer) {
+		this.serializer = serializer;
+	}
+
 	/**
 	 * Obtém a configuração do cache.
 	 * @return configuração.
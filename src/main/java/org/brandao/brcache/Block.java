@@ -14,8 +14,6 @@ class Block
     
     public int length;
     
-    public long nextBlock;
-    
     public RegionMemory buffer;
     
     public Block(long id, int segment, RegionMemory data, int length){
@@ -23,7 +21,6 @@ class Block
         this.segment   = segment;
         this.buffer    = data;
         this.length    = length;
-        this.nextBlock = -1;
     }
 
 	@Override
@@ -0,0 +1,99 @@
+package org.brandao.brcache;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Fluxo de bytes sobre um conjunto de buffers. Permite que 
+ * {@link StreamCache} obtenha partes dos buffers sem cópia intermediária.
+ * 
+ * @author Brandao
+ *
+ */
+class ByteBufferInputStream extends InputStream{
+
+	private ByteBuffer[] buffers;
+	
+	private int index;
+	
+	private long remaining;
+	
+	public ByteBufferInputStream(ByteBuffer[] buffers){
+		this.buffers   = new ByteBuffer[buffers.length];
+		this.index     = 0;
+		this.remaining = 0;
+		
+		for(int i=0;i<buffers.length;i++){
+			this.buffers[i] = buffers[i].duplicate();
+			this.remaining += buffers[i].remaining();
+		}
+	}
+	
+	/**
+	 * Obtém a quantidade de bytes que ainda não foram lidos.
+	 * @return Quantidade.
+	 */
+	public long getRemaining(){
+		return this.remaining;
+	}
+	
+	/**
+	 * Obtém a próxima parte dos buffers, sem cópia.
+	 * @param max Quantidade máxima de bytes.
+	 * @return Parte do buffer atual ou <code>null</code> se todos os bytes 
+	 * foram lidos.
+	 */
+	public ByteBuffer next(int max){
+		
+		ByteBuffer current = this.current();
+		
+		if(current == null)
+			return null;
+		
+		int len         = Math.min(max, current.remaining());
+		ByteBuffer part = current.duplicate();
+		part.limit(part.position() + len);
+		current.position(current.position() + len);
+		this.remaining -= len;
+		return part;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len){
+		
+		ByteBuffer current = this.current();
+		
+		if(current == null)
+			return -1;
+		
+		len = Math.min(len, current.remaining());
+		current.get(b, off, len);
+		this.remaining -= len;
+		return len;
+	}
+	
+	@Override
+	public int read(){
+		
+		ByteBuffer current = this.current();
+		
+		if(current == null)
+			return -1;
+		
+		this.remaining--;
+		return current.get() & 0xff;
+	}
+	
+	private ByteBuffer current(){
+		while(this.index < this.buffers.length){
+			ByteBuffer current = this.buffers[this.index];
+			
+			if(current.hasRemaining())
+				return current;
+			
+			this.index++;
+		}
+		return null;
+	}
+	
+}
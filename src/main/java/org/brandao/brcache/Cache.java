@@ -1,7 +1,18 @@
 package org.brandao.brcache;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.brandao.concurrent.NamedLock;
 
@@ -32,6 +43,16 @@ public class Cache
 
 	protected transient NamedLock locks;
 	
+	/**
+	 * Executa as operações assíncronas.
+	 */
+	private transient volatile ExecutorService executor;
+	
+	/**
+	 * Indica que o executor foi criado pelo cache.
+	 */
+	private transient boolean ownExecutor;
+	
     /**
      * Cria um novo cache.
      * 
@@ -227,6 +248,40 @@ public class Cache
 		}
     }
 	
+    /**
+     * Registra no índice um item escrito por um {@link CacheOutputStream}.
+	 * @param key chave associada ao valor.
+     * @param map metadados do item.
+     * @return <code>true</code> se o item for substituido. Caso contrário, <code>false</code>
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar inserir o item.
+     */
+    protected boolean putEntry(String key, DataMap map) throws StorageException{
+		Serializable refLock = this.locks.lock(key);
+		try{
+			return super.putEntry(key, map);
+		}
+		finally{
+			if(refLock != null){
+				this.locks.unlock(refLock, key);
+			}
+		}
+    }
+	
+    /**
+     * Associa os bytes de um conjunto de buffers à chave, sem cópia intermediária.
+	 * @param key chave associada ao valor.
+     * @param buffers bytes do valor.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @return <code>true</code> se o item for substituido. Caso contrário, <code>false</code>
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar inserir o item.
+     */
+    public boolean putBuffers(String key, ByteBuffer[] buffers, 
+    		long timeToLive, long timeToIdle) throws StorageException{
+    	//o bloqueio é feito em putStream.
+    	return super.putBuffers(key, buffers, timeToLive, timeToIdle);
+    }
+    
     /* métodos de coleta */
 	
 	/**
@@ -271,6 +326,18 @@ public class Cache
 		//}
     }
 	
+    /**
+     * Obtém visões somente leitura dos blocos do valor associado à chave.
+     * @param key chave associada ao valor.
+     * @return visões dos blocos ou <code>null</code>. Devem ser fechadas após o uso.
+     * @throws RecoverException Lançada se ocorrer alguma falha ao tentar obter o
+     * item.
+     */
+    public CacheBuffers getBuffers(String key) throws RecoverException {
+		/* Deixar sem bloqueio */
+    	return super.getBuffers(key);
+    }
+    
     /* métodos de remoção */
 
 	/**
@@ -327,6 +394,203 @@ public class Cache
 		}
     }
 	
+    /* métodos em lote */
+    
+	/**
+	 * Associa os valores às chaves. Todas as chaves são bloqueadas, em ordem, 
+	 * antes da primeira inserção.
+	 * @param values valores e suas chaves.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar inserir um item.
+	 */
+	public void putAll(Map<String, ?> values, long timeToLive, long timeToIdle) throws StorageException {
+		String[] keys           = new TreeSet<String>(values.keySet()).toArray(new String[0]);
+		Serializable[] refLocks = this.lockAll(keys);
+		try{
+			super.putAll(values, timeToLive, timeToIdle);
+		}
+		finally{
+			this.unlockAll(keys, refLocks);
+		}
+	}
+	
+    /**
+     * Remove os valores associados às chaves. Todas as chaves são bloqueadas, 
+     * em ordem, antes da primeira remoção.
+     * @param keys chaves associadas aos valores.
+     * @return quantidade de itens removidos.
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar remover os
+     * itens.
+     */
+    public int removeAll(Collection<String> keys) throws StorageException{
+		String[] sorted         = new TreeSet<String>(keys).toArray(new String[0]);
+		Serializable[] refLocks = this.lockAll(sorted);
+		try{
+			return super.removeAll(keys);
+		}
+		finally{
+			this.unlockAll(sorted, refLocks);
+		}
+    }
+    
+    /**
+     * Bloqueia as chaves na ordem informada. A ordem evita o impasse entre 
+     * dois lotes com chaves em comum.
+     */
+    private Serializable[] lockAll(String[] keys){
+    	Serializable[] refLocks = new Serializable[keys.length];
+    	int i = 0;
+    	try{
+	    	for(;i<keys.length;i++){
+	    		refLocks[i] = this.locks.lock(keys[i]);
+	    	}
+	    	return refLocks;
+    	}
+    	catch(RuntimeException e){
+    		this.unlockAll(keys, refLocks);
+    		throw e;
+    	}
+    }
+    
+    private void unlockAll(String[] keys, Serializable[] refLocks){
+    	for(int i=keys.length-1;i>=0;i--){
+    		if(refLocks[i] != null){
+    			this.locks.unlock(refLocks[i], keys[i]);
+    		}
+    	}
+    }
+    
+    /* métodos assíncronos */
+    
+    /**
+     * Obtém, em outro processo, o valor associado à chave. O processo que 
+     * chama o método não fica bloqueado enquanto o item é trazido do disco.
+	 * @param key chave associada ao valor.
+     * @return resultado da operação.
+     */
+    public Future<Object> getAsync(final String key){
+    	return this.getExecutor().submit(new Callable<Object>(){
+			public Object call() throws Exception {
+				return get(key);
+			}
+    	});
+    }
+    
+    /**
+     * Obtém, em outro processo, o fluxo de bytes do valor associado à chave.
+	 * @param key chave associada ao fluxo.
+     * @return resultado da operação.
+     */
+    public Future<InputStream> getStreamAsync(final String key){
+    	return this.getExecutor().submit(new Callable<InputStream>(){
+			public InputStream call() throws Exception {
+				return getStream(key);
+			}
+    	});
+    }
+    
+    /**
+     * Associa, em outro processo, o valor à chave.
+	 * @param key chave associada ao valor.
+	 * @param value valor para ser associado à chave.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @return resultado da operação.
+     */
+    public Future<Boolean> putAsync(final String key, final Object value, 
+    		final long timeToLive, final long timeToIdle){
+    	return this.getExecutor().submit(new Callable<Boolean>(){
+			public Boolean call() throws Exception {
+				return put(key, value, timeToLive, timeToIdle);
+			}
+    	});
+    }
+    
+    /**
+     * Associa, em outro processo, o fluxo de bytes do valor à chave. O fluxo 
+     * não deve ser usado até o fim da operação.
+	 * @param key chave associada ao fluxo.
+     * @param inputData fluxo de bytes do valor.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @return resultado da operação.
+     */
+    public Future<Boolean> putStreamAsync(final String key, final InputStream inputData, 
+    		final long timeToLive, final long timeToIdle){
+    	return this.getExecutor().submit(new Callable<Boolean>(){
+			public Boolean call() throws Exception {
+				return putStream(key, inputData, timeToLive, timeToIdle);
+			}
+    	});
+    }
+    
+    /**
+     * Remove, em outro processo, o valor associado à chave.
+	 * @param key chave associada ao valor.
+     * @return resultado da operação.
+     */
+    public Future<Boolean> removeAsync(final String key){
+    	return this.getExecutor().submit(new Callable<Boolean>(){
+			public Boolean call() throws Exception {
+				return remove(key);
+			}
+    	});
+    }
+    
+    /**
+     * Obtém o executor das operações assíncronas. Se não for definido, é 
+     * criado com a quantidade de processos da configuração.
+     * @return executor.
+     */
+    public ExecutorService getExecutor(){
+    	
+    	ExecutorService executor = this.executor;
+    	
+    	if(executor != null)
+    		return executor;
+    	
+    	synchronized(this){
+    		if(this.executor == null){
+    			int threads = 
+    					this.config == null || this.config.getAsyncThreads() <= 0? 
+    							Runtime.getRuntime().availableProcessors() : 
+    							this.config.getAsyncThreads();
+    			
+    			this.executor    = Executors.newFixedThreadPool(threads, new AsyncThreadFactory());
+    			this.ownExecutor = true;
+    		}
+    		return this.executor;
+    	}
+    }
+    
+    /**
+     * Define o executor das operações assíncronas. O executor não é 
+     * finalizado pelo cache.
+     * @param executor executor.
+     */
+    public synchronized void setExecutor(ExecutorService executor){
+    	if(this.ownExecutor && this.executor != null)
+    		this.executor.shutdown();
+    	
+    	this.executor    = executor;
+    	this.ownExecutor = false;
+    }
+    
+	/**
+	 * Destrói os dados contidos nesta instância e finaliza o executor 
+	 * criado pelo cache.
+	 */
+	public void destroy(){
+		synchronized(this){
+	    	if(this.ownExecutor && this.executor != null){
+	    		this.executor.shutdown();
+	    		this.executor = null;
+	    	}
+		}
+		super.destroy();
+	}
+	
     /* métodos de manipulação*/
     
 	/**
@@ -334,7 +598,7 @@ public class Cache
 	 * @return quantidade de itens.
 	 */
 	public long size() {
-		return super.getCountRemoved() - super.getCountWrite();
+		return this.getLiveEntries();
 	}
 
 	/**
@@ -353,7 +617,35 @@ public class Cache
      * item.
 	 */
 	public boolean containsKey(String key) throws RecoverException {
-		return super.getStream(key) != null;
+		InputStream in = super.getStream(key);
+		
+		if(in == null)
+			return false;
+		
+		try{
+			in.close();
+		}
+		catch(IOException e){
+			throw new RecoverException(e, CacheErrors.ERROR_1021);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Cria os processos das operações assíncronas. Os processos não impedem 
+	 * o término da aplicação.
+	 */
+	private static class AsyncThreadFactory implements ThreadFactory{
+
+		private static final AtomicInteger count = new AtomicInteger();
+		
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "brcache_async_" + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+		
 	}
 	
 }
@@ -0,0 +1,62 @@
+package org.brandao.brcache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Visões somente leitura dos blocos de um item do cache.
+ * <p>
+ * Os blocos ficam fixados enquanto as visões estiverem abertas. Depois 
+ * de {@link #close()}, a memória pode ser devolvida ao alocador e as 
+ * visões não devem mais ser usadas.
+ * </p>
+ * <pre>
+ * ex:
+ *     CacheBuffers buffers = cache.getBuffers(key);
+ *     try{
+ *         channel.write(buffers.getBuffers());
+ *     }
+ *     finally{
+ *         buffers.close();
+ *     }
+ * </pre>
+ * 
+ * @author Brandao
+ *
+ */
+public class CacheBuffers implements Closeable{
+
+	private CacheInputStream stream;
+	
+	private ByteBuffer[] buffers;
+	
+	CacheBuffers(CacheInputStream stream){
+		this.stream  = stream;
+		this.buffers = stream.getByteBuffers();
+	}
+	
+	/**
+	 * Obtém as visões dos blocos do item.
+	 * @return Visões com posição 0.
+	 */
+	public ByteBuffer[] getBuffers(){
+		return this.buffers;
+	}
+	
+	/**
+	 * Obtém o tamanho do item.
+	 * @return Quantidade de bytes.
+	 */
+	public long getSize(){
+		return this.stream.getSize();
+	}
+	
+	/**
+	 * Desfaz a fixação dos blocos.
+	 */
+	public void close() throws IOException{
+		this.stream.close();
+	}
+	
+}
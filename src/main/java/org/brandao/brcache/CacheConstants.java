@@ -69,6 +69,12 @@ public interface CacheConstants {
      */
     public static final String MAX_SIZE_ENTRY 		= "max_size_entry";
     
+    /**
+     * Tamanho máximo, em bytes, que um item pode ter para ser armazenado 
+     * no próprio índice.
+     */
+    public static final String DATA_INLINE_SIZE 	= "data_inline_size";
+    
     /**
      * Tamanho máximo, em bytes, que uma chave pode ter.
      */
@@ -89,5 +95,64 @@ public interface CacheConstants {
      * Estratégia de acesso a memória.
      */
     public static final String MEMORY_ACCESS_TYPE 	= "memory_access_type";
+    
+    /**
+     * Quantidade máxima, em bytes, de memória usada pelos dados. O valor 0 
+     * indica que não há limite.
+     */
+    public static final String MEMORY_BUDGET 		= "memory_budget";
+    
+    /**
+     * Política aplicada quando o limite de memória é atingido (block, evict ou fail).
+     */
+    public static final String MEMORY_BUDGET_POLICY = "memory_budget_policy";
+    
+    /**
+     * Tempo máximo, em milisegundos, que uma alocação aguarda a liberação de memória.
+     */
+    public static final String MEMORY_BUDGET_TIMEOUT = "memory_budget_timeout";
+    
+    /**
+     * Estratégia de serialização dos valores (java, binary ou o nome de uma classe).
+     */
+    public static final String VALUE_SERIALIZER 	= "value_serializer";
+    
+    /**
+     * Quantidade de processos que executam as operações assíncronas.
+     */
+    public static final String ASYNC_THREADS 		= "async_threads";
+    
+    /**
+     * Intervalo mínimo, em milisegundos, entre duas atualizações do horário 
+     * do último acesso de um item.
+     */
+    public static final String ACCESS_TIME_GRANULARITY = "access_time_granularity";
+    
+    /**
+     * Intervalo, em milisegundos, entre duas execuções da remoção dos itens 
+     * expirados. O valor 0 desabilita a remoção.
+     */
+    public static final String EXPIRATION_INTERVAL 	= "expiration_interval";
+    
+    /**
+     * Política de remoção dos itens quando o cache atinge o tamanho máximo 
+     * (lru, tinylfu ou o nome de uma classe).
+     */
+    public static final String EVICTION_POLICY 		= "eviction_policy";
+    
+    /**
+     * Quantidade máxima de bytes armazenados. O valor 0 indica que não há limite.
+     */
+    public static final String EVICTION_MAX_BYTES 	= "eviction_max_bytes";
+    
+    /**
+     * Quantidade máxima de itens armazenados. O valor 0 indica que não há limite.
+     */
+    public static final String EVICTION_MAX_ENTRIES = "eviction_max_entries";
+    
+    /**
+     * Tipo do índice dos itens (tree ou hash).
+     */
+    public static final String INDEX_ENGINE 		= "index_engine";
 
 }
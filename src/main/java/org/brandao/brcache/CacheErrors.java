@@ -111,5 +111,10 @@ public class CacheErrors {
 	 * ERROR 1030: Expired Item
 	 */
 	public static final CacheError ERROR_1030 = new CacheError(1029, "Expired Item");
+
+	/**
+	 * ERROR 1031: Insufficient memory
+	 */
+	public static final CacheError ERROR_1031 = new CacheError(1031, "Insufficient memory");
 	
 }
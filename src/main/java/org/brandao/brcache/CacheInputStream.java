@@ -20,6 +20,9 @@ package org.brandao.brcache;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 import org.brandao.brcache.memory.RegionMemory;
 
@@ -42,16 +45,47 @@ public class CacheInputStream extends InputStream{
     
     private byte[] bufByte = new byte[1];
 
+    /**
+     * Bytes de um valor armazenado no próprio índice.
+     */
+    private byte[] data;
+
+    /**
+     * Indica que os blocos estão fixados pelo fluxo.
+     */
+    private boolean pinned;
+    
+    /**
+     * Indica que a fixação dos blocos foi desfeita ao ler o fluxo até o 
+     * final. Os blocos são fixados novamente se forem usados.
+     */
+    private boolean unpinnedAtEnd;
+    
+    /**
+     * Indica que o fluxo foi fechado.
+     */
+    private boolean closed;
+    
     public CacheInputStream(){
-    	this(null, null, null);
+    	this(null, null, (Block[])null);
     }
 
     public CacheInputStream(StreamCache cache, DataMap map, Block[] dataList){
+    	this(cache, map, dataList, false);
+    }
+    
+    CacheInputStream(StreamCache cache, DataMap map, byte[] data){
+    	this(cache, map, new Block[0], false);
+    	this.data = data;
+    }
+    
+    CacheInputStream(StreamCache cache, DataMap map, Block[] dataList, boolean pinned){
         this.map                 = map;
         this.arrayDataList       = dataList;
         this.currentDataindex    = 0;
         this.currentSegmentIndex = 0;
         this.cache               = cache;
+        this.pinned              = pinned;
     }
     
     public DataMap getMap() {
@@ -91,13 +125,76 @@ public class CacheInputStream extends InputStream{
         if(l == -1)
             return -1;
         else
-            return bufByte[0];
+            return bufByte[0] & 0xff;
+    }
+    
+    /**
+     * Fecha o fluxo e desfaz a fixação dos blocos. Os blocos de uma entrada 
+     * removida somente são devolvidos ao alocador depois que todos os 
+     * fluxos forem fechados ou lidos até o final.
+     */
+    @Override
+    public synchronized void close() throws IOException{
+    	this.closed = true;
+    	this.unpinSegments();
+    }
+    
+    private synchronized void unpinSegments(){
+    	if(!this.pinned)
+    		return;
+    	
+    	this.pinned = false;
+    	
+    	for(Block block: this.arrayDataList){
+    		block.buffer.unpin();
+    	}
+    }
+    
+    /*
+     * Lança uma exceção se o fluxo foi fechado. Se a fixação dos blocos foi 
+     * desfeita no final da leitura, os blocos são fixados novamente. 
+     */
+    private synchronized void ensureOpen() throws IOException{
+    	
+    	if(this.closed)
+    		throw new IOException("stream closed");
+    	
+    	if(!this.unpinnedAtEnd)
+    		return;
+    	
+    	for(int i=0;i<this.arrayDataList.length;i++){
+    		if(!this.arrayDataList[i].buffer.pin()){
+    			//O bloco foi liberado. A entrada foi removida.
+    			for(int k=0;k<i;k++){
+    				this.arrayDataList[k].buffer.unpin();
+    			}
+    			throw new IOException("stream closed: entry removed");
+    		}
+    	}
+    	
+    	this.unpinnedAtEnd = false;
+    	this.pinned        = true;
     }
     
-    private int transfer(byte[] dest, int destPos, int length ){
+    private int transfer(byte[] dest, int destPos, int length ) throws IOException{
         
-        if(this.currentSegmentIndex >= arrayDataList.length)
+    	if(this.closed)
+    		throw new IOException("stream closed");
+    	
+        if(this.data != null)
+        	return this.transferData(dest, destPos, length);
+        
+        if(this.currentSegmentIndex >= arrayDataList.length){
+        	//O fluxo foi lido até o final. Os blocos não serão mais lidos por 
+        	//read() e podem ser devolvidos se a entrada for removida.
+        	synchronized(this){
+        		if(this.pinned){
+        			this.unpinSegments();
+        			this.unpinnedAtEnd = true;
+        		}
+        	}
             return -1;
+        }
         
         Block block = arrayDataList[this.currentSegmentIndex];
         RegionMemory origin  = block.buffer;
@@ -114,7 +211,7 @@ public class CacheInputStream extends InputStream{
                 
                 //System.arraycopy(origin, this.currentDataindex, dest, destPos, lenRead);
                 
-                cache.countReadData 	+= lenRead;
+                cache.countReadData.add(lenRead);
                 length 					-= lenRead;
                 read 					+= lenRead;
                 destPos 				+= lenRead;
@@ -135,7 +232,7 @@ public class CacheInputStream extends InputStream{
                 
                 //System.arraycopy(origin, this.currentDataindex, dest, destPos, lenRead);
                 
-                cache.countReadData 	+= lenRead;
+                cache.countReadData.add(lenRead);
                 destPos 				+= lenRead;
                 read 					+= lenRead;
                 length 					-= lenRead;
@@ -146,7 +243,29 @@ public class CacheInputStream extends InputStream{
         return read;
     }
     
+    private int transferData(byte[] dest, int destPos, int length){
+    	
+    	int lenRead = Math.min(length, this.data.length - this.currentDataindex);
+    	
+    	if(lenRead <= 0)
+    		return length == 0? 0 : -1;
+    	
+    	System.arraycopy(this.data, this.currentDataindex, dest, destPos, lenRead);
+    	
+    	cache.countReadData.add(lenRead);
+    	this.currentDataindex 	+= lenRead;
+    	return lenRead;
+    }
+    
     public void writeTo(OutputStream out) throws IOException{
+    	
+    	this.ensureOpen();
+    	
+    	if(this.data != null){
+    		out.write(this.data);
+    		return;
+    	}
+    	
     	if(this.arrayDataList.length > 0){
     		Block first = this.arrayDataList[0];
     		byte[] tmp = new byte[first.length];
@@ -160,6 +279,136 @@ public class CacheInputStream extends InputStream{
     	
     }
     
+    /**
+     * Envia todos os bytes do item para um canal. Os blocos são enviados 
+     * sem cópia intermediária sempre que a memória permitir. O canal deve 
+     * estar em modo bloqueante.
+     * 
+     * @param out Canal de destino.
+     * @return Quantidade de bytes enviados.
+     * @throws IOException Lançada se ocorrer uma falha ao enviar os dados.
+     */
+    public long writeTo(WritableByteChannel out) throws IOException{
+    	long size = this.getLength();
+    	long sent = 0;
+    	
+    	while(sent < size){
+    		long count = this.transferTo(sent, size - sent, out);
+    		
+    		if(count == 0)
+    			throw new IOException("channel not writable");
+    		
+    		sent += count;
+    	}
+    	
+    	return sent;
+    }
+    
+    /**
+     * Envia parte dos bytes do item para um canal. É usada a escrita 
+     * agrupada ({@link GatheringByteChannel}) quando o canal permitir.
+     * Assim como {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)},
+     * podem ser enviados menos bytes que o solicitado.
+     * 
+     * @param position Posição inicial no item.
+     * @param count Quantidade máxima de bytes.
+     * @param out Canal de destino.
+     * @return Quantidade de bytes enviados.
+     * @throws IOException Lançada se ocorrer uma falha ao enviar os dados.
+     */
+    public long transferTo(long position, long count, WritableByteChannel out) throws IOException{
+    	
+    	this.ensureOpen();
+    	
+    	ByteBuffer[] buffers = this.getByteBuffers(position, count);
+    	long sent;
+    	
+    	if(buffers.length == 0)
+    		return 0;
+    	
+    	if(out instanceof GatheringByteChannel){
+    		sent = ((GatheringByteChannel)out).write(buffers);
+    	}
+    	else{
+    		sent = 0;
+    		for(ByteBuffer buffer: buffers){
+    			int len = buffer.remaining();
+    			int w   = out.write(buffer);
+    			sent   += w;
+    			
+    			if(w < len)
+    				break;
+    		}
+    	}
+    	
+    	if(this.cache != null)
+    		this.cache.countReadData.add(sent);
+    	
+    	return sent;
+    }
+    
+    /**
+     * Obtém visões somente leitura de todos os blocos do item. As visões 
+     * somente são válidas enquanto o fluxo estiver aberto.
+     * 
+     * @return Visões dos blocos.
+     */
+    public ByteBuffer[] getByteBuffers(){
+    	return this.getByteBuffers(0, this.getLength());
+    }
+    
+    private ByteBuffer[] getByteBuffers(long position, long count){
+    	
+    	if(this.data != null){
+    		int off = (int)Math.min(position, this.data.length);
+    		int len = (int)Math.min(count, this.data.length - off);
+    		return len == 0? 
+    				new ByteBuffer[0] : 
+    				new ByteBuffer[]{ByteBuffer.wrap(this.data, off, len).slice().asReadOnlyBuffer()};
+    	}
+    	
+    	ByteBuffer[] buffers = new ByteBuffer[this.arrayDataList.length];
+    	int size             = 0;
+    	long blockStart      = 0;
+    	
+    	for(Block block: this.arrayDataList){
+    		
+    		if(count <= 0)
+    			break;
+    		
+    		long blockEnd = blockStart + block.length;
+    		
+    		if(position < blockEnd){
+    			long off = position - blockStart;
+    			int len  = (int)Math.min(count, block.length - off);
+    			buffers[size++] = block.buffer.getByteBuffer(off, len);
+    			position += len;
+    			count    -= len;
+    		}
+    		
+    		blockStart = blockEnd;
+    	}
+    	
+    	if(size < buffers.length){
+    		ByteBuffer[] tmp = new ByteBuffer[size];
+    		System.arraycopy(buffers, 0, tmp, 0, size);
+    		buffers = tmp;
+    	}
+    	
+    	return buffers;
+    }
+    
+    private long getLength(){
+    	if(this.data != null)
+    		return this.data.length;
+    	
+    	long length = 0;
+    	for(Block block: this.arrayDataList){
+    		length += block.length;
+    	}
+    	return length;
+    }
+    
     public long getId(){
     	return this.map.getId();
     }
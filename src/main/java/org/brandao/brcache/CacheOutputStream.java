@@ -0,0 +1,221 @@
+/*
+ * BRCache http://brcache.brandao.org/
+ * Copyright (C) 2015 Afonso Brandao. (afonso.rbn@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brandao.brcache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.brandao.brcache.memory.RegionMemory;
+
+/**
+ * Fluxo de escrita do valor de um item do cache.
+ * <p>
+ * Os bytes são escritos diretamente nos blocos do item. O item somente
+ * é registrado no cache em {@link #close()}. Se a escrita falhar,
+ * {@link #cancel()} deve ser executado para devolver os blocos.
+ * </p>
+ * <pre>
+ * ex:
+ *     CacheOutputStream out = cache.openOutputStream(key, 0, 0);
+ *     try{
+ *         encoder.encode(value, out);
+ *     }
+ *     catch(IOException e){
+ *         out.cancel();
+ *         throw e;
+ *     }
+ *     out.close();
+ * </pre>
+ *
+ * @author Brandao.
+ */
+public class CacheOutputStream extends OutputStream{
+
+	private StreamCache cache;
+
+	private String key;
+
+	private DataMap map;
+
+	private StreamCache.BlockWriter writer;
+
+	/**
+	 * Bloco que está sendo preenchido.
+	 */
+	private RegionMemory segment;
+
+	/**
+	 * Quantidade de bytes escritos no bloco atual.
+	 */
+	private int offset;
+
+	/**
+	 * Quantidade de blocos registrados.
+	 */
+	private int index;
+
+	private long length;
+
+	private boolean closed;
+
+	private boolean replaced;
+
+	private byte[] bufByte = new byte[1];
+
+	CacheOutputStream(StreamCache cache, String key, DataMap map){
+		this.cache  = cache;
+		this.key    = key;
+		this.map    = map;
+		this.writer = cache.createBlockWriter(map);
+		this.offset = 0;
+		this.index  = 0;
+		this.length = 0;
+		this.closed = false;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		this.bufByte[0] = (byte)b;
+		this.write(this.bufByte, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+
+		if(this.closed)
+			throw new IOException("stream closed");
+
+		try{
+			if(this.length + len > this.cache.getMaxBytesToStorageEntry())
+	            throw new StorageException(CacheErrors.ERROR_1007);
+
+			int segmentSize = this.cache.getSegmentSize();
+
+			while(len > 0){
+
+				if(this.segment == null)
+					this.segment = this.cache.allocSegment(segmentSize);
+
+				int count = Math.min(len, segmentSize - this.offset);
+				this.segment.write(this.offset, b, off, count);
+
+				this.offset += count;
+				this.length += count;
+				off         += count;
+				len         -= count;
+
+				if(this.offset == segmentSize)
+					this.flushSegment(this.segment);
+			}
+		}
+		catch(RuntimeException e){
+			this.cancel();
+			throw e;
+		}
+
+	}
+
+	/**
+	 * Registra o item no cache. Depois de fechado, o fluxo não pode ser
+	 * mais usado.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		if(this.closed)
+			return;
+
+		try{
+			if(this.segment != null){
+				RegionMemory last = this.segment;
+				this.segment      = null;
+
+				if(this.index == 0 && this.offset <= this.cache.getInlineDataSize()){
+					//Valores pequenos ficam no próprio índice.
+					byte[] data = new byte[this.offset];
+					last.read(0, data, 0, this.offset);
+					this.cache.releaseSegment(last);
+					this.map.setData(data);
+				}
+				else{
+					//O último bloco é alocado com o tamanho exato.
+					RegionMemory tail = this.cache.allocSegment(this.offset);
+					tail.write(0, last, 0, this.offset);
+					this.cache.releaseSegment(last);
+					this.flushSegment(tail);
+				}
+			}
+
+			this.writer.close();
+			this.closed = true;
+
+			this.map.setLength(this.length);
+			this.map.setSegments(this.index);
+			this.replaced = this.cache.putEntry(this.key, this.map);
+		}
+		catch(RuntimeException e){
+			this.closed = false;
+			this.cancel();
+			throw e;
+		}
+	}
+
+	/**
+	 * Descarta os bytes escritos. O item não é registrado no cache.
+	 */
+	public void cancel(){
+
+		if(this.closed)
+			return;
+
+		this.closed = true;
+
+		if(this.segment != null){
+			this.cache.releaseSegment(this.segment);
+			this.segment = null;
+		}
+
+		this.writer.close();
+		this.cache.discardData(this.map, this.length);
+	}
+
+	/**
+	 * Verifica se o item registrado em {@link #close()} substituiu um
+	 * item existente.
+	 * @return <code>true</code> se o item foi substituido. Caso contrário, <code>false</code>.
+	 */
+	public boolean isReplaced(){
+		return this.replaced;
+	}
+
+	/**
+	 * Obtém a quantidade de bytes escritos.
+	 * @return Quantidade.
+	 */
+	public long getSize(){
+		return this.length;
+	}
+
+	private void flushSegment(RegionMemory data){
+		this.cache.putSegment(this.writer, this.map, this.index, data, this.offset);
+		this.segment = null;
+		this.offset  = 0;
+		this.index++;
+	}
+
+}
@@ -18,6 +18,7 @@
 package org.brandao.brcache;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * 
@@ -37,7 +38,11 @@ class DataMap implements Serializable{
     
     private short flag;
     
-    private long firstSegment;
+    /**
+     * Sequências de blocos do item. Cada sequência é formada pelo endereço 
+     * do primeiro bloco e pela quantidade de blocos.
+     */
+    private long[] extents;
     
     private int segments;
     
@@ -45,19 +50,23 @@ class DataMap implements Serializable{
     
     private long mostRecentTime;
 
+    /**
+     * Bytes de um valor pequeno armazenado no próprio índice.
+     */
+    private byte[] data;
+    
     public DataMap(){
-    	this(-1, 0, -1, 0, (short)0, -1, 0, 0, 0);
+    	this(-1, 0, -1, 0, (short)0, 0, 0, 0);
     }
     
     public DataMap(long id, long timeToLive, long creationTime,
-			long timeToIdle, short flag, int firstSegment, int segments,
+			long timeToIdle, short flag, int segments,
 			long length, long mostRecentTime) {
 		this.id = id;
 		this.timeToLive = timeToLive;
 		this.creationTime = creationTime;
 		this.timeToIdle = timeToIdle;
 		this.flag = flag;
-		this.firstSegment = firstSegment;
 		this.segments = segments;
 		this.length = length;
 		this.mostRecentTime = mostRecentTime;
@@ -136,12 +145,37 @@ class DataMap implements Serializable{
 		this.flag = flag;
 	}
 
-	public long getFirstSegment() {
-		return firstSegment;
+	public long[] getExtents() {
+		return extents;
+	}
+
+	public void setExtents(long[] extents) {
+		this.extents = extents;
 	}
 
-	public void setFirstSegment(long firstSegment) {
-		this.firstSegment = firstSegment;
+	/**
+	 * Inclui blocos no item. Os blocos consecutivos à última sequência 
+	 * são incluídos nela.
+	 * @param address Endereço do primeiro bloco.
+	 * @param count Quantidade de blocos.
+	 */
+	public void addExtent(long address, int count) {
+		
+		if(this.extents == null){
+			this.extents = new long[]{address, count};
+			return;
+		}
+		
+		int last = this.extents.length - 2;
+		
+		if(this.extents[last] + (this.extents[last + 1] << 8) == address){
+			this.extents[last + 1] += count;
+			return;
+		}
+		
+		this.extents = Arrays.copyOf(this.extents, this.extents.length + 2);
+		this.extents[last + 2] = address;
+		this.extents[last + 3] = count;
 	}
 
 	public int getSegments() {
@@ -168,6 +202,14 @@ class DataMap implements Serializable{
 		this.mostRecentTime = mostRecentTime;
 	}
 
+	public byte[] getData() {
+		return data;
+	}
+
+	public void setData(byte[] data) {
+		this.data = data;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
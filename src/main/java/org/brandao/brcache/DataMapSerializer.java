@@ -0,0 +1,97 @@
+package org.brandao.brcache;
+
+import java.nio.ByteBuffer;
+
+import org.brandao.brcache.collections.BufferSerializer;
+
+/**
+ * Grava os metadados de um item no índice fora do heap.
+ * 
+ * @author Brandao
+ *
+ */
+class DataMapSerializer implements BufferSerializer<DataMap>{
+
+	private static final long serialVersionUID = 2750186124394417523L;
+
+	/**
+	 * Tamanho dos campos de tamanho fixo.
+	 */
+	private static final int HEADER_SIZE = 62;
+	
+	public int size(DataMap value) {
+		long[] extents = value.getExtents();
+		byte[] data    = value.getData();
+		return HEADER_SIZE + 
+				(extents == null? 0 : extents.length*8) + 
+				(data == null? 0 : data.length);
+	}
+
+	public void write(ByteBuffer buffer, int offset, DataMap value) {
+		long[] extents = value.getExtents();
+		byte[] data    = value.getData();
+		
+		buffer.putLong(offset,      value.getId());
+		buffer.putLong(offset + 8,  value.getTimeToLive());
+		buffer.putLong(offset + 16, value.getCreationTime());
+		buffer.putLong(offset + 24, value.getTimeToIdle());
+		buffer.putLong(offset + 32, value.getMostRecentTime());
+		buffer.putLong(offset + 40, value.getLength());
+		buffer.putInt(offset + 48,  value.getSegments());
+		buffer.putShort(offset + 52, value.getFlag());
+		buffer.putInt(offset + 54,  extents == null? -1 : extents.length);
+		buffer.putInt(offset + 58,  data == null? -1 : data.length);
+		
+		int off = offset + HEADER_SIZE;
+		
+		if(extents != null){
+			for(long e: extents){
+				buffer.putLong(off, e);
+				off += 8;
+			}
+		}
+		
+		if(data != null){
+			ByteBuffer buf = buffer.duplicate();
+			buf.position(off);
+			buf.put(data);
+		}
+	}
+
+	public DataMap read(ByteBuffer buffer, int offset) {
+		DataMap value = 
+			new DataMap(
+				buffer.getLong(offset), 
+				buffer.getLong(offset + 8), 
+				buffer.getLong(offset + 16), 
+				buffer.getLong(offset + 24), 
+				buffer.getShort(offset + 52), 
+				buffer.getInt(offset + 48), 
+				buffer.getLong(offset + 40), 
+				buffer.getLong(offset + 32));
+		
+		int extentsLength = buffer.getInt(offset + 54);
+		int dataLength    = buffer.getInt(offset + 58);
+		int off           = offset + HEADER_SIZE;
+		
+		if(extentsLength != -1){
+			long[] extents = new long[extentsLength];
+			for(int i=0;i<extentsLength;i++){
+				extents[i] = buffer.getLong(off);
+				off += 8;
+			}
+			value.setExtents(extents);
+		}
+		
+		if(dataLength != -1){
+			byte[] data    = new byte[dataLength];
+			ByteBuffer buf = buffer.duplicate();
+			buf.position(off);
+			buf.get(data);
+			value.setData(data);
+		}
+		
+		return value;
+	}
+
+}
@@ -0,0 +1,64 @@
+package org.brandao.brcache;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Remove periodicamente os itens expirados de um cache. O cache é
+ * referenciado de forma fraca para não impedir a sua coleta.
+ *
+ * @author Brandao
+ *
+ */
+class ExpirationThread implements Runnable{
+
+	private WeakReference<StreamCache> cache;
+
+	private volatile boolean live;
+
+	public ExpirationThread(StreamCache cache){
+		this.cache = new WeakReference<StreamCache>(cache);
+		this.live  = true;
+	}
+
+	public void run(){
+		while(this.live){
+			try{
+				long interval = this.expire();
+
+				if(interval < 0)
+					break;
+
+				Thread.sleep(interval > 0? interval : 1000);
+			}
+			catch(InterruptedException e){
+				break;
+			}
+			catch(Throwable e){
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/*
+	 * Retorna o intervalo até a próxima execução ou -1 se o cache
+	 * foi coletado.
+	 */
+	private long expire(){
+		StreamCache cache = this.cache.get();
+
+		if(cache == null)
+			return -1;
+
+		long interval = cache.getExpirationInterval();
+
+		if(interval > 0)
+			cache.expire();
+
+		return interval;
+	}
+
+	public void shutdown(){
+		this.live = false;
+	}
+
+}
@@ -0,0 +1,192 @@
+package org.brandao.brcache;
+
+import java.io.Serializable;
+
+/**
+ * Agenda a expiração dos itens em uma roda de tempo hierárquica.
+ * <p>
+ * O tempo é dividido em intervalos de {@link #TICK} milisegundos. Cada nível
+ * possui {@link #SLOTS} posições e cada posição de um nível cobre o intervalo
+ * de todas as posições do nível anterior. Um item é registrado no menor nível
+ * que contém o seu horário de expiração e desce de nível à medida que o tempo
+ * avança. Somente as posições vencidas são visitadas.
+ * </p>
+ *
+ * @author Brandao
+ *
+ */
+class ExpirationWheel implements Serializable{
+
+	private static final long serialVersionUID = 5412803574962210394L;
+
+	/**
+	 * Duração, em milisegundos, de uma posição do primeiro nível.
+	 */
+	public static final long TICK = 100;
+
+	private static final int LEVELS = 4;
+
+	private static final int BITS = 6;
+
+	private static final int SLOTS = 1 << BITS;
+
+	private static final int MASK = SLOTS - 1;
+
+	private Entry[][] wheel;
+
+	/**
+	 * Itens que expiram após o alcance do último nível.
+	 */
+	private Entry overflow;
+
+	private long currentTick;
+
+	private int size;
+
+	public ExpirationWheel(){
+		this.wheel       = new Entry[LEVELS][SLOTS];
+		this.currentTick = System.currentTimeMillis() / TICK;
+	}
+
+	/**
+	 * Agenda a expiração de um item.
+	 *
+	 * @param key Chave do item.
+	 * @param id Identificação do item.
+	 * @param expiration Horário de expiração.
+	 */
+	public synchronized void schedule(String key, long id, long expiration){
+		Entry e = new Entry(key, id);
+		this.schedule(e, expiration);
+	}
+
+	/**
+	 * Agenda novamente a expiração de um item retornado por {@link #advance(long)}.
+	 *
+	 * @param e Item.
+	 * @param expiration Horário de expiração.
+	 */
+	public synchronized void schedule(Entry e, long expiration){
+		long tick = expiration / TICK + 1;
+		e.tick    = tick > this.currentTick? tick : this.currentTick + 1;
+		this.place(e);
+		this.size++;
+	}
+
+	/**
+	 * Avança a roda até o horário informado.
+	 *
+	 * @param time Horário atual.
+	 * @return Itens vencidos encadeados por {@link Entry#next} ou <code>null</code>.
+	 */
+	public synchronized Entry advance(long time){
+		long tick     = time / TICK;
+		Entry expired = null;
+
+		while(this.currentTick < tick){
+			this.currentTick++;
+
+			for(int level=LEVELS-1;level>0;level--){
+				if((this.currentTick & ((1L << (BITS*level)) - 1)) == 0){
+					if(level == LEVELS-1 &&
+							(this.currentTick & ((1L << (BITS*LEVELS)) - 1)) == 0){
+						Entry e = this.overflow;
+						this.overflow = null;
+						this.cascade(e);
+					}
+
+					int slot = (int)(this.currentTick >>> (BITS*level)) & MASK;
+					Entry e = this.wheel[level][slot];
+					this.wheel[level][slot] = null;
+					this.cascade(e);
+				}
+			}
+
+			int slot = (int)this.currentTick & MASK;
+			Entry e  = this.wheel[0][slot];
+			this.wheel[0][slot] = null;
+
+			while(e != null){
+				Entry next = e.next;
+				e.next     = expired;
+				expired    = e;
+				e          = next;
+				this.size--;
+			}
+		}
+
+		return expired;
+	}
+
+	public synchronized void clear(){
+		this.wheel    = new Entry[LEVELS][SLOTS];
+		this.overflow = null;
+		this.size     = 0;
+	}
+
+	public synchronized int size(){
+		return this.size;
+	}
+
+	private void cascade(Entry e){
+		while(e != null){
+			Entry next = e.next;
+			this.place(e);
+			e = next;
+		}
+	}
+
+	/*
+	 * O item é registrado no menor nível em que o horário de expiração e o
+	 * horário atual pertencem à mesma posição do nível superior.
+	 */
+	private void place(Entry e){
+		for(int level=0;level<LEVELS;level++){
+			int shift = BITS*(level + 1);
+			if((e.tick >>> shift) == (this.currentTick >>> shift)){
+				int slot = (int)(e.tick >>> (BITS*level)) & MASK;
+				e.next   = this.wheel[level][slot];
+				this.wheel[level][slot] = e;
+				return;
+			}
+		}
+
+		e.next        = this.overflow;
+		this.overflow = e;
+	}
+
+	/**
+	 * Item agendado.
+	 */
+	public static class Entry implements Serializable{
+
+		private static final long serialVersionUID = -2203145108461780718L;
+
+		private String key;
+
+		private long id;
+
+		private long tick;
+
+		private Entry next;
+
+		public Entry(String key, long id){
+			this.key = key;
+			this.id  = id;
+		}
+
+		public String getKey(){
+			return this.key;
+		}
+
+		public long getId(){
+			return this.id;
+		}
+
+		public Entry getNext(){
+			return this.next;
+		}
+
+	}
+
+}
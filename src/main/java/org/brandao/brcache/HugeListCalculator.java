@@ -1,5 +1,7 @@
 package org.brandao.brcache;
 
+import java.io.Serializable;
+
 class HugeListCalculator {
 
 	public static HugeListInfo calculate(
@@ -54,7 +56,9 @@ class HugeListCalculator {
         return new HugeListInfo((int)blocksLength, swapFactor, pageFactor, (int)subLists);    			
 	}
 	
-	public static class HugeListInfo{
+	public static class HugeListInfo implements Serializable{
+		
+		private static final long serialVersionUID = -1927004452470382164L;
 		
 		private int maxCapacityElements;
 		
@@ -34,7 +34,7 @@ public class ItemCacheInputStream
 		super();
 		this.setMap(
 			new DataMap(id, timeToLive, creationTime, 
-					timeToIdle, flag, -1, 0, size, mostRecentTime));
+					timeToIdle, flag, 0, size, mostRecentTime));
 		this.stream = stream;
 	}
 	
@@ -27,6 +27,13 @@ public enum MemoryAccessStrategy {
 	 * <p>Equivale ao trecho a seguir:</p>
 	 * <pre>segmentMemory = Unsafe.allocateMemory(capacity);</pre>
 	 */
-	UNSAFE;
+	UNSAFE,
+	
+	/**
+	 * Os dados são gravados em um arquivo mapeado na pasta de dados. 
+	 * <p>Equivale ao trecho a seguir:</p>
+	 * <pre>segmentMemory = channel.map(MapMode.READ_WRITE, position, capacity);</pre>
+	 */
+	MAPPED;
 	
 }
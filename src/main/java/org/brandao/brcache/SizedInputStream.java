@@ -0,0 +1,30 @@
+package org.brandao.brcache;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * Fluxo de bytes com tamanho conhecido. Permite que {@link StreamCache} 
+ * valide o tamanho do item e reserve os blocos antes de ler o fluxo.
+ * 
+ * @author Brandao
+ *
+ */
+class SizedInputStream extends FilterInputStream{
+
+	private long length;
+	
+	public SizedInputStream(InputStream in, long length){
+		super(in);
+		this.length = length;
+	}
+	
+	/**
+	 * Obtém a quantidade de bytes do item.
+	 * @return Quantidade.
+	 */
+	public long getLength(){
+		return this.length;
+	}
+	
+}
@@ -17,17 +17,40 @@
 
 package org.brandao.brcache;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.brandao.brcache.HugeListCalculator.HugeListInfo;
 import org.brandao.brcache.collections.Collections;
 import org.brandao.brcache.collections.HugeArrayReferenceList;
+import org.brandao.brcache.collections.HugeMap;
+import org.brandao.brcache.collections.OffHeapHashMap;
 import org.brandao.brcache.collections.StringTreeMap;
 import org.brandao.brcache.collections.Swapper;
-import org.brandao.brcache.collections.treehugemap.CharNode;
+import org.brandao.brcache.collections.treehugemap.CharNode4;
+import org.brandao.brcache.eviction.EvictionEntry;
+import org.brandao.brcache.eviction.EvictionPolicy;
+import org.brandao.brcache.memory.BudgetMemory;
 import org.brandao.brcache.memory.Memory;
+import org.brandao.brcache.memory.MemoryExhaustedException;
+import org.brandao.brcache.memory.MemoryReclaimer;
 import org.brandao.brcache.memory.RegionMemory;
 
 /**
@@ -57,20 +80,64 @@ public abstract class StreamCache
 
     private static final int ENTRY_BINARY_SIZE = 48;
     
-    private static final int NODE_BINARY_SIZE = CharNode.DATA_SIZE + ENTRY_BINARY_SIZE;
+    private static final int NODE_BINARY_SIZE = CharNode4.DATA_SIZE + ENTRY_BINARY_SIZE;
 
     private static final int INDEX_BINARY_SIZE = 58 + ENTRY_BINARY_SIZE;
     
     private static final Class<?> ITEM_CACHE_INPUTSTREAM_CLASS = ItemCacheInputStream.class;
     
+    /**
+     * Quantidade máxima de endereços reservados de uma vez.
+     */
+    private static final int MAX_EXTENT_BLOCKS = 1024;
+    
     private Memory memory;
     
-    private StringTreeMap<DataMap> dataMap;
+    /**
+     * Índice em árvore. Permite operações por prefixo.
+     */
+    public static final String TREE_INDEX = "tree";
+    
+    /**
+     * Índice em tabela hash fora do heap.
+     */
+    public static final String HASH_INDEX = "hash";
+    
+    private HugeMap<String, DataMap> dataMap;
+    
+    private String indexEngine;
+    
+    private HugeListInfo nodeInfo;
+    
+    private HugeListInfo indexInfo;
+    
+    private int quantitySwaperThread;
 
     private HugeArrayReferenceList<Block> dataList;
     
     private int segmentSize;
     
+    private int inlineDataSize;
+    
+    private AccessTimeBuffer accessTimes;
+    
+    private ExpirationWheel expirations;
+    
+    private volatile long expirationInterval;
+    
+    private transient ExpirationThread expirationThread;
+    
+    /**
+     * Processo que libera os itens removidos por prefixo.
+     */
+    private transient ExecutorService purgeExecutor;
+    
+    private volatile EvictionPolicy evictionPolicy;
+    
+    private volatile long evictionMaxBytes;
+    
+    private volatile long evictionMaxEntries;
+    
     private long maxBytesToStorageEntry;
     
     private int maxLengthKey;
@@ -79,17 +146,23 @@ public abstract class StreamCache
     
     private volatile long modCount;
     
-    volatile long countRead;
+    final StripedCounter countRead = new StripedCounter();
     
-    volatile long countWrite;
+    final StripedCounter countWrite = new StripedCounter();
     
-    volatile long countRemoved;
+    final StripedCounter countRemoved = new StripedCounter();
     
-    volatile long countReadData;
+    final StripedCounter countReadData = new StripedCounter();
 
-    volatile long countWriteData;
+    final StripedCounter countWriteData = new StripedCounter();
 
-    volatile long countRemovedData;
+    final StripedCounter countRemovedData = new StripedCounter();
+    
+    final StripedCounter countEvicted = new StripedCounter();
+    
+    final StripedCounter liveEntries = new StripedCounter();
+    
+    final StripedCounter liveBytes = new StripedCounter();
     
     private boolean deleteOnExit;
     
@@ -99,6 +172,10 @@ public abstract class StreamCache
         this.segmentSize 			= -1;
         this.maxBytesToStorageEntry = -1;
         this.maxLengthKey 			= -1;
+        this.accessTimes 			= new AccessTimeBuffer(0);
+        this.expirations 			= new ExpirationWheel();
+        this.expirationInterval 	= 1000;
+        this.indexEngine 			= TREE_INDEX;
     }
     
     /**
@@ -140,6 +217,10 @@ public abstract class StreamCache
             int quantitySwaperThread,
             Memory memory
     		){
+    	this.accessTimes        = new AccessTimeBuffer(0);
+    	this.expirations        = new ExpirationWheel();
+    	this.expirationInterval = 1000;
+    	this.indexEngine        = TREE_INDEX;
     	this.init(nodeBufferSize, nodePageSize, nodeSwapFactor, indexBufferSize, 
     			indexPageSize, indexSwapFactor, dataBufferSize, dataPageSize, blockSize, 
     			dataSwapFactor, maxSizeEntry, maxSizeKey, swapper, quantitySwaperThread, memory);
@@ -191,10 +272,9 @@ public abstract class StreamCache
         this.maxLengthKey           = maxSizeKey;
         this.deleteOnExit           = true;
     	this.swapper                = swapper;
+    	this.quantitySwaperThread   = quantitySwaperThread;
     	
         synchronized(Collections.class){
-	    	HugeListInfo nodeInfo;
-	    	HugeListInfo indexInfo;
 	    	HugeListInfo dataInfo; 
         	
 	    	try{
@@ -219,7 +299,7 @@ public abstract class StreamCache
 
 	    	
 	    	try{
-		    	nodeInfo = 
+		    	this.nodeInfo = 
 		    			HugeListCalculator
 		    				.calculate(
 		    						nodeBufferSize, nodePageSize, 
@@ -230,7 +310,7 @@ public abstract class StreamCache
 	    	}
 	    	
 	    	try{
-		    	indexInfo = 
+		    	this.indexInfo = 
 		    			HugeListCalculator
 		    				.calculate(indexBufferSize, indexPageSize, 
 		    						INDEX_BINARY_SIZE, indexSwapFactor);
@@ -239,30 +319,13 @@ public abstract class StreamCache
 	    		throw new IllegalArgumentException("fail create index buffer", e);
 	    	}
 		    	
-	    	try{
-	            this.dataMap =
-	                    new StringTreeMap<DataMap>(
-	                    "dataMap",
-	                    nodeInfo.getMaxCapacityElements(),
-	                    nodeInfo.getClearFactorElements(),
-	                    nodeInfo.getFragmentFactorElements(),
-	                    this.swapper.clone(),
-	                    quantitySwaperThread,
-	                    nodeInfo.getSubLists(),
-	                    indexInfo.getMaxCapacityElements(),
-	                    indexInfo.getClearFactorElements(),
-	                    indexInfo.getFragmentFactorElements(),
-	                    this.swapper.clone(),
-	                    quantitySwaperThread,
-	                    indexInfo.getSubLists()
-	                    );
-		        this.dataMap.setDeleteOnExit(false);
-	    	}
-	    	catch(IllegalArgumentException e){
-	    		throw new IllegalArgumentException("fail data map", e);
-	    	}
-	    	
+	    	this.dataMap = this.createDataMap(this.indexEngine);
         }
+        
+        this.expirationThread = new ExpirationThread(this);
+        Thread thread = new Thread(this.expirationThread, "brcache_expiration");
+        thread.setDaemon(true);
+        thread.start();
     }
     
     /**
@@ -285,8 +348,7 @@ public abstract class StreamCache
         if(key.length() > this.maxLengthKey)
             throw new StorageException(CacheErrors.ERROR_1008);
         
-        DataMap oldMap = null;
-        DataMap map    = new DataMap();
+        DataMap map = new DataMap();
         
     	//ItemCacheInputStream permite manipular além dos dados os metadados do item.
         if(ITEM_CACHE_INPUTSTREAM_CLASS.isAssignableFrom(inputData.getClass())){
@@ -337,6 +399,60 @@ public abstract class StreamCache
         	
         }
 
+        return this.putIndex(key, map);
+    }
+
+    /**
+     * Cria um fluxo para escrever o valor associado à chave. Os bytes são 
+     * escritos diretamente nos blocos do item e o item é registrado quando o 
+     * fluxo for fechado.
+	 * @param key chave associada ao valor.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @return fluxo de escrita do valor.
+     * @throws StorageException Lançada se os parâmetros forem inválidos.
+     */
+    protected CacheOutputStream openOutputStream(String key, long timeToLive, 
+    		long timeToIdle) throws StorageException{
+        
+    	if(timeToLive < 0)
+            throw new StorageException(CacheErrors.ERROR_1029);
+
+    	if(timeToIdle < 0)
+            throw new StorageException(CacheErrors.ERROR_1028);
+    	
+        if(key.length() > this.maxLengthKey)
+            throw new StorageException(CacheErrors.ERROR_1008);
+        
+        DataMap map = new DataMap();
+        
+        map.setCreationTime(System.currentTimeMillis());
+        map.setMostRecentTime(map.getCreationTime());
+        map.setTimeToIdle(timeToIdle);
+        map.setTimeToLive(timeToLive);
+        
+        //Todo item inserido tem que ter uma nova id. Mesmo que ela exista.
+        map.setId(this.modCount++);
+        
+        return new CacheOutputStream(this, key, map);
+    }
+    
+    /**
+     * Registra no índice um item escrito por um {@link CacheOutputStream}.
+	 * @param key chave associada ao valor.
+     * @param map metadados do item.
+     * @return <code>true</code> se o item for substituido. Caso contrário, <code>false</code>
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar inserir o item.
+     */
+    protected boolean putEntry(String key, DataMap map) throws StorageException{
+        this.countWriteData.add(map.getLength());
+    	return this.putIndex(key, map);
+    }
+    
+    private boolean putIndex(String key, DataMap map) throws StorageException{
+    	
+        DataMap oldMap = null;
+        
         try{
             //Faz a indexação do item e retorna o índice atual, caso exista.
             oldMap = this.dataMap.put(key, map);
@@ -355,14 +471,42 @@ public abstract class StreamCache
         finally{
 	    	if(oldMap != null){
 	    		this.releaseSegments(oldMap);
-	            this.countRemoved++;
+	            this.countRemoved.increment();
 	    	}
         }
         
-        this.countWrite++;
+        this.updateLive(oldMap, map);
+        
+        this.scheduleExpiration(key, map);
+        this.track(key, map);
+        this.countWrite.increment();
         return oldMap != null;
     }
 
+    /**
+	 * Associa o fluxo de bytes do valor à chave. O tamanho é validado antes 
+	 * da leitura do fluxo e os blocos são reservados de uma vez. Somente 
+	 * <code>length</code> bytes são lidos do fluxo.
+	 * @param key chave associada ao fluxo.
+     * @param inputData fluxo de bytes do valor.
+     * @param length quantidade de bytes do valor.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @return <code>true</code> se o item for substituido. Caso contrário, <code>false</code>
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar inserir o item.
+     */
+    protected boolean putStream(String key, InputStream inputData, long length, 
+    		long timeToLive, long timeToIdle) throws StorageException{
+    	
+    	if(length < 0)
+    		throw new StorageException(CacheErrors.ERROR_1014);
+    	
+    	if(length > this.maxBytesToStorageEntry)
+            throw new StorageException(CacheErrors.ERROR_1007);
+    	
+    	return this.putStream(key, new SizedInputStream(inputData, length), timeToLive, timeToIdle);
+    }
+    
     /**
      * Substitui o fluxo de bytes associado à chave somente se ele existir.
      * @param key chave associada ao valor.
@@ -436,7 +580,10 @@ public abstract class StreamCache
         }
         
         if(oldMap != null){
-            this.countWrite++;
+        	this.updateLive(oldMap, map);
+        	this.scheduleExpiration(key, map);
+        	this.track(key, map);
+            this.countWrite.increment();
         	return true;
         }
         else
@@ -523,7 +670,10 @@ public abstract class StreamCache
         	in = this.getStream(key, oldMap);
         }
         else{
-        	this.countWrite++;
+        	this.updateLive(null, map);
+        	this.scheduleExpiration(key, map);
+        	this.track(key, map);
+        	this.countWrite.increment();
         }
         
         if(oldMap != null){
@@ -558,8 +708,13 @@ public abstract class StreamCache
     private InputStream getStream(String key, DataMap map) throws RecoverException {
         
         try{
-            countRead++;
+            this.countRead.increment();
 
+        	//Considera o último acesso ainda não aplicado ao índice.
+        	if(map.getTimeToIdle() > 0){
+        		this.accessTimes.merge(key, map);
+        	}
+        	
         	//Verifica se o item já expirou
         	if(map.isDead()){
         		//Se expirou, remove do cache e retorna null.
@@ -567,33 +722,49 @@ public abstract class StreamCache
         		return null;
         	}
         	
-        	//Se timeToIdle foi definido, é atualizado o horário do último acesso.
-        	if(map.getTimeToIdle() > 0){
-            	map.setMostRecentTime(System.currentTimeMillis());
-            	//a instância no momento do replace porde não ser a mesma passada em oldElement.
-            	this.dataMap.replace(key, map, map);
+        	EvictionPolicy policy = this.evictionPolicy;
+        	if(policy != null){
+        		policy.access(key, map.getId());
         	}
         	
+        	//Se timeToIdle foi definido, o horário do último acesso é registrado 
+        	//no buffer e aplicado ao índice em lote.
+        	if(map.getTimeToIdle() > 0 && 
+        			this.accessTimes.access(key, map, System.currentTimeMillis())){
+        		this.flushAccessTimes();
+        	}
+        	
+            //Valores pequenos são obtidos diretamente do índice.
+            if(map.getData() != null)
+            	return new CacheInputStream(this, map, map.getData());
+            
             Block[] segments = new Block[map.getSegments()];
-            Block current    = this.dataList.get(map.getFirstSegment());
-            int i            = 0;
+            long[] extents   = map.getExtents();
+            int off          = 0;
             
-            while(current != null){
-
+            //Os blocos de cada sequência são obtidos de uma vez.
+            for(int k=0;extents != null && k<extents.length;k+=2){
+            	int count = (int)extents[k + 1];
+            	this.dataList.get(extents[k], segments, off, count);
+            	off += count;
+            }
+            
+            for(int i=0;i<segments.length;i++){
+            	Block current = segments[i];
+            	
                 /*
                 Se id for diferente da
                 id do DataMap, significa que essa entrada foi ou está sendo
                 removida.
                 */
-				if(current.id != map.getId() || current.segment != i)
-				    throw new CorruptedDataException("invalid segment: " + current.id + ":" + map.getId() + " " + current.segment + ":" + i);
-                
-                segments[i] = current;
-            	current = current.nextBlock < 0? null : this.dataList.get(current.nextBlock);
-            	i++;
+				if(current == null || current.id != map.getId() || current.segment != i)
+				    throw new CorruptedDataException("invalid segment: " + 
+				    		(current == null? "null" : current.id + ":" + map.getId() + " " + current.segment + ":" + i));
             }
             
-            return new CacheInputStream(this, map, segments);
+            //Fixa os blocos. Eles não serão devolvidos ao alocador enquanto o fluxo estiver aberto.
+            this.pinSegments(segments);
+            return new CacheInputStream(this, map, segments, true);
         }
         catch(CorruptedDataException e){
             //e.printStackTrace();
@@ -638,84 +809,817 @@ public abstract class StreamCache
     	return this.dataMap.containsKey(key);
     }
     
-    private void remove(String key, DataMap data){
+    /**
+     * Obtém as chaves que iniciam com o prefixo, em ordem crescente dos bytes 
+     * da chave em UTF-8. As chaves são obtidas à medida que o iterador avança e 
+     * os itens expirados são ignorados. Somente o índice em árvore permite 
+     * a consulta por prefixo.
+     * @param prefix prefixo das chaves.
+     * @return iterador das chaves.
+     */
+    public Iterator<String> keys(String prefix){
+    	return new KeyIterator(this.getTreeMap().entries(prefix));
+    }
+    
+    private void scheduleExpiration(String key, DataMap map){
+    	if(this.expirationInterval > 0 && 
+    			(map.getTimeToLive() > 0 || map.getTimeToIdle() > 0)){
+    		this.expirations.schedule(key, map.getId(), map.getExpirationTime());
+    	}
+    }
+    
+    /**
+     * Remove os itens cuja expiração está vencida. Somente os itens agendados 
+     * até o momento são verificados. Um item acessado após o agendamento é 
+     * agendado novamente.
+     */
+    protected void expire(){
+    	ExpirationWheel.Entry e = this.expirations.advance(System.currentTimeMillis());
+    	
+    	while(e != null){
+    		ExpirationWheel.Entry next = e.getNext();
+    		String key  = e.getKey();
+    		DataMap map = this.dataMap.get(key);
+    		
+    		//o item foi removido ou substituído.
+    		if(map != null && map.getId() == e.getId()){
+    			if(map.getTimeToIdle() > 0){
+    				this.accessTimes.merge(key, map);
+    			}
+    			
+    			if(map.isDead()){
+    				this.remove(key, map);
+    			}
+    			else{
+    				this.expirations.schedule(e, map.getExpirationTime());
+    			}
+    		}
+    		
+    		e = next;
+    	}
+    }
+    
+    private boolean remove(String key, DataMap data){
     	if(this.dataMap.remove(key, data)){
-	    	this.releaseSegments(data);
-	        countRemoved++;
+    		this.release(key, data);
+	        return true;
     	}
+    	return false;
     }
     
-    private void putData(DataMap map, InputStream inputData) throws StorageException, InterruptedException{
+    /*
+     * Libera os dados de um item removido do índice.
+     */
+    private void release(String key, DataMap data){
+    	this.releaseSegments(data);
+        this.countRemoved.increment();
+        this.liveEntries.decrement();
+        this.liveBytes.add(-data.getLength());
         
-        int writeData    = 0;
-        byte[] buffer    = new byte[this.segmentSize];
-        int index        = 0;
-        Block lastBlock  = null;
-        long lastSegment = -1;
+        EvictionPolicy policy = this.evictionPolicy;
+        if(policy != null){
+        	policy.remove(key, data.getId());
+        }
+    }
+    
+    /*
+     * Libera os dados dos itens desligados do índice. A liberação é 
+     * interrompida se o cache for destruído.
+     */
+    private int releaseAll(Iterator<Map.Entry<String, DataMap>> entries) throws InterruptedException{
+    	int count = 0;
+    	
+    	while(entries.hasNext()){
+    		if(Thread.interrupted())
+    			throw new InterruptedException("cache destroyed");
+    		
+    		Map.Entry<String, DataMap> e = entries.next();
+    		this.release(e.getKey(), e.getValue());
+    		count++;
+    	}
+    	
+    	return count;
+    }
+    
+    /*
+     * Atualiza a quantidade de itens e bytes armazenados após a inclusão 
+     * ou substituição de um item.
+     */
+    private void updateLive(DataMap oldMap, DataMap map){
+    	if(oldMap == null){
+    		this.liveEntries.increment();
+    		this.liveBytes.add(map.getLength());
+    	}
+    	else{
+    		this.liveBytes.add(map.getLength() - oldMap.getLength());
+    	}
+    }
+    
+    /*
+     * Registra o item na política de remoção e remove os itens excedentes.
+     */
+    private void track(String key, DataMap map){
+    	EvictionPolicy policy = this.evictionPolicy;
+    	
+    	if(policy == null)
+    		return;
+    	
+    	policy.insert(key, map.getId(), map.getLength());
+    	
+    	while((this.evictionMaxBytes > 0 && policy.getWeight() > this.evictionMaxBytes) ||
+    			(this.evictionMaxEntries > 0 && policy.size() > this.evictionMaxEntries)){
+    		if(this.evict(policy) < 0)
+    			break;
+    	}
+    }
+    
+    /*
+     * Remove o item selecionado pela política. Retorna o peso do item ou -1 
+     * se não houver itens.
+     */
+    private long evict(EvictionPolicy policy){
+    	EvictionEntry e = policy.victim();
+    	
+    	if(e == null)
+    		return -1;
+    	
+    	DataMap map = this.dataMap.get(e.getKey());
+    	
+    	//o item foi removido ou substituído.
+    	if(map != null && map.getId() == e.getId() && this.remove(e.getKey(), map)){
+    		this.countEvicted.increment();
+    	}
+    	
+    	return e.getWeight();
+    }
+    
+    /**
+     * Remove itens selecionados pela política de remoção até liberar a 
+     * quantidade de bytes informada.
+     * @param size Quantidade de bytes.
+     * @return Quantidade de bytes liberados.
+     */
+    protected long reclaim(long size){
+    	EvictionPolicy policy = this.evictionPolicy;
+    	long released         = 0;
+    	
+    	while(policy != null && released < size){
+    		long weight = this.evict(policy);
+    		
+    		if(weight < 0)
+    			break;
+    		
+    		released += weight;
+    	}
+    	
+    	return released;
+    }
+    
+    /**
+     * Associa os bytes de um conjunto de buffers à chave. Os bytes são copiados 
+     * diretamente dos buffers para os blocos. As posições dos buffers não são 
+     * alteradas.
+	 * @param key chave associada ao valor.
+     * @param buffers bytes do valor.
+	 * @param timeToLive é a quantidade máxima de tempo que um item expira após sua criação.
+	 * @param timeToIdle é a quantidade máxima de tempo que um item expira após o último acesso.
+     * @return <code>true</code> se o item for substituido. Caso contrário, <code>false</code>
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar inserir o item.
+     */
+    protected boolean putBuffers(String key, ByteBuffer[] buffers, long timeToLive, long timeToIdle) throws StorageException{
+    	return this.putStream(key, new ByteBufferInputStream(buffers), timeToLive, timeToIdle);
+    }
+    
+    /**
+     * Obtém visões somente leitura dos blocos do valor associado à chave.
+     * @param key chave associada ao valor.
+     * @return visões dos blocos ou <code>null</code>. Devem ser fechadas após o uso.
+     * @throws RecoverException Lançada se ocorrer alguma falha ao tentar obter o
+     * item.
+     */
+    protected CacheBuffers getBuffers(String key) throws RecoverException{
+    	CacheInputStream in = (CacheInputStream)this.getStream(key);
+    	return in == null? null : new CacheBuffers(in);
+    }
+    
+    /**
+     * Obtém os fluxos de bytes dos valores associados às chaves.
+     * <p>
+     * As chaves são pesquisadas em ordem. Chaves próximas compartilham os 
+     * nós da árvore, que são obtidos uma única vez da memória ou do disco. 
+     * Depois, os blocos são obtidos na ordem dos seus endereços, agrupando 
+     * os acessos a um mesmo segmento.
+     * </p>
+     * @param keys chaves associadas aos fluxos.
+     * @return fluxos das chaves que estão associadas a um valor. Devem ser 
+     * fechados após o uso.
+     * @throws RecoverException Lançada se ocorrer alguma falha ao tentar obter os
+     * itens.
+     */
+    protected Map<String, InputStream> getStreams(Collection<String> keys) throws RecoverException {
+    	
+    	final String[] names  = new TreeSet<String>(keys).toArray(new String[0]);
+    	final DataMap[] maps  = new DataMap[names.length];
+    	Integer[] order       = new Integer[names.length];
+    	
+    	for(int i=0;i<names.length;i++){
+    		maps[i]  = this.dataMap.get(names[i]);
+    		order[i] = i;
+    	}
+    	
+    	Arrays.sort(order, new Comparator<Integer>(){
+			public int compare(Integer o1, Integer o2) {
+				long a = getFirstSegment(maps[o1]);
+				long b = getFirstSegment(maps[o2]);
+				return a < b? -1 : a == b? 0 : 1;
+			}
+    	});
+    	
+    	Map<String, InputStream> result = new HashMap<String, InputStream>();
+    	
+    	try{
+	    	for(Integer i: order){
+	    		if(maps[i] != null){
+	    			InputStream in = this.getStream(names[i], maps[i]);
+	    			if(in != null)
+	    				result.put(names[i], in);
+	    		}
+	    	}
+	    	return result;
+    	}
+    	catch(RecoverException e){
+    		for(InputStream in: result.values()){
+    			try{
+    				in.close();
+    			}
+    			catch(Throwable ex){
+    			}
+    		}
+    		throw e;
+    	}
+    }
+    
+    /**
+     * Remove os valores associados às chaves. As chaves são processadas em ordem.
+     * @param keys chaves associadas aos valores.
+     * @return quantidade de itens removidos.
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar remover os
+     * itens.
+     */
+    protected int removeStreams(Collection<String> keys) throws StorageException{
+    	int count = 0;
+    	
+    	for(String key: new TreeSet<String>(keys)){
+    		if(this.removeStream(key))
+    			count++;
+    	}
+    	
+    	return count;
+    }
+    
+    /**
+     * Remove os valores cujas chaves iniciam com o prefixo. Os itens deixam de 
+     * ser encontrados antes do retorno e os blocos de dados são liberados em 
+     * outro processo, compartilhado pelas remoções. Uma inclusão simultânea 
+     * de uma chave com o prefixo é removida com os demais itens ou mantida no 
+     * índice, sem perda dos seus blocos. Somente o índice em árvore permite a 
+     * remoção por prefixo.
+     * @param prefix prefixo das chaves.
+     * @return resultado da operação com a quantidade de itens removidos.
+     * @throws StorageException Lançada se ocorrer alguma falha ao tentar remover os
+     * itens.
+     */
+    protected Future<Integer> removeStreamsByPrefix(String prefix) throws StorageException{
+    	if(prefix == null || prefix.length() == 0)
+    		throw new IllegalArgumentException("empty prefix");
+    	
+    	StringTreeMap<DataMap> map = this.getTreeMap();
+    	
+    	try{
+    		final Iterator<Map.Entry<String, DataMap>> entries = map.removeByPrefix(prefix);
+    		
+    		return this.getPurgeExecutor().submit(new Callable<Integer>(){
+				public Integer call() throws Exception {
+					return releaseAll(entries);
+				}
+    		});
+    	}
+        catch(Throwable e){
+            throw new StorageException(e, CacheErrors.ERROR_1022);
+        }
+    }
+    
+    /*
+     * Obtém o processo de liberação. As liberações são feitas em ordem, uma 
+     * de cada vez.
+     */
+    private synchronized ExecutorService getPurgeExecutor(){
+    	if(this.purgeExecutor == null){
+    		this.purgeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory(){
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "brcache_purge");
+					thread.setDaemon(true);
+					return thread;
+				}
+    		});
+    	}
+    	return this.purgeExecutor;
+    }
+    
+    private static long getFirstSegment(DataMap map){
+    	long[] extents = map == null? null : map.getExtents();
+    	return extents == null? -1 : extents[0];
+    }
+    
+    private void putData(DataMap map, InputStream inputData) throws StorageException, InterruptedException{
+    	
+    	//Quando o tamanho é conhecido, os blocos são reservados de uma vez.
+    	if(inputData instanceof ByteBufferInputStream){
+    		this.putData(map, inputData, ((ByteBufferInputStream)inputData).getRemaining());
+    		return;
+    	}
+    	
+    	if(inputData instanceof SizedInputStream){
+    		this.putData(map, inputData, ((SizedInputStream)inputData).getLength());
+    		return;
+    	}
+    	
+        int writeData      = 0;
+        byte[] buffer      = new byte[this.segmentSize];
+        int index          = 0;
+        BlockWriter writer = new BlockWriter(map);
         int read;
         
         try{
-            while((read = inputData.read(buffer, 0, this.segmentSize)) != -1){
+            //Somente o último bloco pode ter menos que segmentSize bytes. Ele é 
+            //alocado com o tamanho exato e fica junto a outros blocos pequenos
+            //no mesmo slab.
+            while((read = this.readSegment(inputData, buffer)) > 0){
             	writeData += read;
             	
-        		RegionMemory data = this.memory.alloc(this.segmentSize);
+            	//O item é rejeitado assim que o limite for ultrapassado.
+        		if(writeData > this.maxBytesToStorageEntry){
+        			this.countWriteData.add(writeData);
+                    throw new StorageException(CacheErrors.ERROR_1007);
+        		}
+        		
+            	//Valores pequenos ficam no próprio índice. Não são criados blocos.
+            	if(index == 0 && read < this.segmentSize && read <= this.inlineDataSize){
+            		map.setData(Arrays.copyOf(buffer, read));
+            		break;
+            	}
+            	
+        		RegionMemory data = this.memory.alloc(read);
         		data.write(0, buffer, 0, read);
         		
-            	Block block = new Block(map.getId(), index++, data, read);
-                Long segment = this.dataList.insert(block);
-                
-                if(lastBlock != null){
-                	lastBlock.nextBlock = segment;
-                	this.dataList.set(lastSegment, lastBlock);
-                }
-                else
-                	map.setFirstSegment(segment);
-                
-            	lastBlock   = block;
-                lastSegment = segment;
+        		//O tamanho é desconhecido. As sequências crescem com o item.
+        		writer.write(new Block(map.getId(), index, data, read), Math.max(1, index));
+        		index++;
             }
 
-            this.countWriteData += writeData;
-            
-    		if(writeData > this.maxBytesToStorageEntry){
-                throw new StorageException(CacheErrors.ERROR_1007);
-    		}
+            this.countWriteData.add(writeData);
             
             map.setLength(writeData);
             map.setSegments(index);
         }
         catch(StorageException e){
-            this.countRemovedData += writeData;
+            this.countRemovedData.add(writeData);
             this.releaseSegments(map);
             throw e;
         }
         catch(IOException e){
-            this.countRemovedData += writeData;
+            this.countRemovedData.add(writeData);
             this.releaseSegments(map);
             throw new StorageException(e, CacheErrors.ERROR_1014);
         }
+        catch(MemoryExhaustedException e){
+            this.countRemovedData.add(writeData);
+            this.releaseSegments(map);
+            throw new StorageException(e, CacheErrors.ERROR_1031);
+        }
+        finally{
+        	writer.close();
+        }
     }
 
+    /**
+     * Registra um item de tamanho conhecido. O tamanho é validado antes da 
+     * leitura e os blocos são reservados de uma vez em endereços 
+     * consecutivos.
+     */
+    private void putData(DataMap map, InputStream inputData, long length) throws StorageException{
+        
+        long writeData     = 0;
+        int index          = 0;
+        int count          = (int)((length + this.segmentSize - 1) / this.segmentSize);
+        BlockWriter writer = new BlockWriter(map);
+        
+        if(length > this.maxBytesToStorageEntry){
+            throw new StorageException(CacheErrors.ERROR_1007);
+        }
+        
+        try{
+        	//Valores pequenos ficam no próprio índice.
+        	if(length > 0 && length < this.segmentSize && length <= this.inlineDataSize){
+        		byte[] data = new byte[(int)length];
+        		this.readData(inputData, data, (int)length);
+        		map.setData(data);
+        		writeData = length;
+        		count     = 0;
+        	}
+        	
+        	byte[] buffer = 
+        			count == 0 || inputData instanceof ByteBufferInputStream? 
+        					null : 
+        					new byte[(int)Math.min(this.segmentSize, length)];
+        	
+            while(index < count){
+            	int len           = (int)Math.min(this.segmentSize, length - writeData);
+        		RegionMemory data = this.memory.alloc(len);
+        		
+        		try{
+	        		this.writeSegment(inputData, buffer, data, len);
+        		}
+        		catch(IOException e){
+        			this.memory.release(data);
+        			throw e;
+        		}
+        		
+        		writer.write(new Block(map.getId(), index, data, len), count - index);
+            	writeData += len;
+            	index++;
+            }
+
+            this.countWriteData.add(writeData);
+            
+            map.setLength(writeData);
+            map.setSegments(index);
+        }
+        catch(IOException e){
+            this.countRemovedData.add(writeData);
+            this.releaseSegments(map);
+            throw new StorageException(e, CacheErrors.ERROR_1014);
+        }
+        catch(MemoryExhaustedException e){
+            this.countRemovedData.add(writeData);
+            this.releaseSegments(map);
+            throw new StorageException(e, CacheErrors.ERROR_1031);
+        }
+        finally{
+        	writer.close();
+        }
+    }
+    
+    BlockWriter createBlockWriter(DataMap map){
+    	return new BlockWriter(map);
+    }
+    
+    /**
+     * Aloca a memória de um bloco.
+     */
+    RegionMemory allocSegment(int size) throws StorageException{
+    	try{
+    		return this.memory.alloc(size);
+    	}
+    	catch(MemoryExhaustedException e){
+    		throw new StorageException(e, CacheErrors.ERROR_1031);
+    	}
+    }
+    
+    void releaseSegment(RegionMemory data){
+    	this.memory.release(data);
+    }
+    
+    /**
+     * Registra um bloco escrito por um {@link CacheOutputStream}.
+     */
+    void putSegment(BlockWriter writer, DataMap map, int index, RegionMemory data, int len){
+		writer.write(new Block(map.getId(), index, data, len), Math.max(1, index));
+    }
+    
+    /**
+     * Descarta os blocos de um item que não foi registrado.
+     */
+    void discardData(DataMap map, long length){
+    	this.countRemovedData.add(length);
+    	this.releaseSegments(map);
+    }
+    
+    int getSegmentSize(){
+    	return this.segmentSize;
+    }
+    
+    long getMaxBytesToStorageEntry(){
+    	return this.maxBytesToStorageEntry;
+    }
+    
+    private void writeSegment(InputStream inputData, byte[] buffer, 
+    		RegionMemory data, int len) throws IOException{
+    	
+		if(inputData instanceof ByteBufferInputStream){
+			ByteBufferInputStream bufferData = (ByteBufferInputStream)inputData;
+			int off = 0;
+			
+    		//o segmento pode ser formado por partes de mais de um buffer.
+			while(off < len){
+				ByteBuffer part = bufferData.next(len - off);
+				
+				if(part == null)
+					throw new EOFException();
+				
+				data.write(off, part);
+				off += part.remaining();
+			}
+		}
+		else{
+			this.readData(inputData, buffer, len);
+			data.write(0, buffer, 0, len);
+		}
+		
+    }
+    
+    private void readData(InputStream inputData, byte[] buffer, int len) throws IOException{
+    	int offset = 0;
+    	int read;
+    	
+    	while(offset < len){
+    		read = inputData.read(buffer, offset, len - offset);
+    		
+    		if(read == -1)
+    			throw new EOFException("expected " + len + " bytes, found " + offset);
+    		
+    		offset += read;
+    	}
+    }
+    
+    private int readSegment(InputStream inputData, byte[] buffer) throws IOException{
+    	int offset = 0;
+    	int read;
+    	
+    	while(offset < buffer.length && 
+    			(read = inputData.read(buffer, offset, buffer.length - offset)) != -1){
+    		offset += read;
+    	}
+    	
+    	return offset;
+    }
+    
     private void releaseSegments(DataMap map){
-    	long segmentId = map.getFirstSegment();
+    	long[] extents = map.getExtents();
     	
-    	if(segmentId == -1)
+    	if(extents == null)
     		return;
     	
-        Block current = this.dataList.get(segmentId);
-        
-        int i=0;
-        while(current != null){
-			if(current.id == map.getId() && current.segment == i){
-				this.dataList.remove(segmentId, current);
-			}
-            
-			segmentId = current.nextBlock;
-        	current = segmentId < 0? null : this.dataList.get(segmentId);
-        	i++;
-        }
+    	int i = 0;
+    	for(int k=0;k<extents.length;k+=2){
+    		for(int j=0;j<extents[k + 1];j++){
+    			long segmentId = extents[k] + ((long)j << 8);
+    			Block current  = this.dataList.get(segmentId);
+    			
+    			if(current != null && current.id == map.getId() && current.segment == i){
+    				this.dataList.remove(segmentId, current);
+    				//A memória será devolvida quando o último leitor fechar o fluxo.
+    				this.memory.release(current.buffer);
+    			}
+    			i++;
+    		}
+    	}
+    	
+    	map.setExtents(null);
+    }
+    
+    private void pinSegments(Block[] segments) throws CorruptedDataException{
+    	for(int i=0;i<segments.length;i++){
+    		if(!segments[i].buffer.pin()){
+    			//O bloco foi liberado. A entrada foi ou está sendo removida.
+    			for(int k=0;k<i;k++){
+    				segments[k].buffer.unpin();
+    			}
+    			throw new CorruptedDataException("released segment: " + segments[i].id + ":" + segments[i].segment);
+    		}
+    	}
+    }
+    
+    /**
+     * Aplica ao índice os horários de acesso pendentes. Se outro processo 
+     * estiver aplicando os horários, o método retorna imediatamente.
+     */
+    protected void flushAccessTimes(){
+    	if(!this.accessTimes.tryLock())
+    		return;
+    	
+    	try{
+    		Set<Map.Entry<String, AccessTimeBuffer.Access>> pending = this.accessTimes.getPending();
+    		for(Map.Entry<String, AccessTimeBuffer.Access> e: pending){
+    			String key                     = e.getKey();
+    			AccessTimeBuffer.Access access = e.getValue();
+    			DataMap map                    = access.getMap();
+    			//o horário somente é aplicado se o item não foi substituído. O acesso 
+    			//permanece pendente até ser aplicado para que o item não expire antes.
+    			this.dataMap.replace(key, map, map);
+    			this.accessTimes.remove(key, access);
+    		}
+    	}
+    	finally{
+    		this.accessTimes.unlock();
+    	}
+    }
+    
+    @SuppressWarnings("unchecked")
+    private StringTreeMap<DataMap> getTreeMap(){
+    	HugeMap<String, DataMap> map = this.dataMap;
+    	
+    	if(!(map instanceof StringTreeMap))
+    		throw new UnsupportedOperationException("prefix operations require the tree index");
+    	
+    	return (StringTreeMap<DataMap>)map;
+    }
+    
+    /*
+     * Cria o índice dos itens.
+     */
+    private HugeMap<String, DataMap> createDataMap(String engine){
+    	HugeMap<String, DataMap> map;
+    	
+    	if(HASH_INDEX.equalsIgnoreCase(engine)){
+    		map = new OffHeapHashMap<DataMap>(
+    				new DataMapSerializer(), 
+    				OffHeapHashMap.DEFAULT_SEGMENTS,
+    				this.memory instanceof BudgetMemory? (BudgetMemory)this.memory : null);
+    	}
+    	else
+    	if(TREE_INDEX.equalsIgnoreCase(engine)){
+	    	try{
+	    		synchronized(Collections.class){
+		            map =
+		                    new StringTreeMap<DataMap>(
+		                    "dataMap",
+		                    this.nodeInfo.getMaxCapacityElements(),
+		                    this.nodeInfo.getClearFactorElements(),
+		                    this.nodeInfo.getFragmentFactorElements(),
+		                    this.swapper.clone(),
+		                    this.quantitySwaperThread,
+		                    this.nodeInfo.getSubLists(),
+		                    this.indexInfo.getMaxCapacityElements(),
+		                    this.indexInfo.getClearFactorElements(),
+		                    this.indexInfo.getFragmentFactorElements(),
+		                    this.swapper.clone(),
+		                    this.quantitySwaperThread,
+		                    this.indexInfo.getSubLists()
+		                    );
+	    		}
+	    	}
+	    	catch(IllegalArgumentException e){
+	    		throw new IllegalArgumentException("fail data map", e);
+	    	}
+    	}
+    	else
+    		throw new IllegalArgumentException("invalid index engine: " + engine);
+    	
+        map.setDeleteOnExit(false);
+        return map;
+    }
+    
+    /**
+     * Define o tipo do índice dos itens. O índice em árvore ({@link #TREE_INDEX}) 
+     * percorre a chave caractere por caractere e permite operações por prefixo. 
+     * O índice em tabela hash ({@link #HASH_INDEX}) fica fora do heap e localiza 
+     * uma chave com um único cálculo de hash. Somente pode ser alterado com o 
+     * cache vazio.
+     * @param value tree ou hash.
+     */
+    public synchronized void setIndexEngine(String value){
+    	if(this.indexEngine.equalsIgnoreCase(value))
+    		return;
+    	
+    	if(this.getLiveEntries() != 0)
+    		throw new IllegalStateException("cache not empty");
+    	
+    	HugeMap<String, DataMap> old = this.dataMap;
+    	this.dataMap     = this.createDataMap(value);
+    	this.indexEngine = value.toLowerCase();
+    	old.destroy();
+    }
+    
+    /**
+     * Obtém o tipo do índice dos itens.
+     * @return tree ou hash.
+     */
+    public String getIndexEngine(){
+    	return this.indexEngine;
+    }
+    
+    /**
+     * Define a política de remoção aplicada quando o cache atinge o tamanho 
+     * máximo. Se a memória for limitada por {@link BudgetMemory}, a política 
+     * também é usada para liberar memória.
+     * @param value Política. O valor <code>null</code> desabilita a remoção.
+     */
+    public void setEvictionPolicy(EvictionPolicy value){
+    	this.evictionPolicy = value;
+    	
+    	if(this.memory instanceof BudgetMemory){
+    		((BudgetMemory)this.memory).setReclaimer(value == null? null : new EvictionReclaimer());
+    	}
+    }
+    
+    /**
+     * Obtém a política de remoção.
+     * @return Política.
+     */
+    public EvictionPolicy getEvictionPolicy(){
+    	return this.evictionPolicy;
+    }
+    
+    /**
+     * Define a quantidade máxima de bytes armazenados.
+     * @param value Quantidade. O valor 0 indica que não há limite.
+     */
+    public void setEvictionMaxBytes(long value){
+    	this.evictionMaxBytes = value;
+    }
+    
+    /**
+     * Obtém a quantidade máxima de bytes armazenados.
+     * @return Quantidade.
+     */
+    public long getEvictionMaxBytes(){
+    	return this.evictionMaxBytes;
+    }
+    
+    /**
+     * Define a quantidade máxima de itens armazenados.
+     * @param value Quantidade. O valor 0 indica que não há limite.
+     */
+    public void setEvictionMaxEntries(long value){
+    	this.evictionMaxEntries = value;
+    }
+    
+    /**
+     * Obtém a quantidade máxima de itens armazenados.
+     * @return Quantidade.
+     */
+    public long getEvictionMaxEntries(){
+    	return this.evictionMaxEntries;
+    }
+    
+    /**
+     * Define o intervalo, em milisegundos, entre duas execuções da remoção 
+     * dos itens expirados.
+     * @param value Intervalo. O valor 0 desabilita a remoção. Os itens 
+     * expirados são removidos somente quando acessados.
+     */
+    public void setExpirationInterval(long value){
+    	this.expirationInterval = value;
     	
-    	map.setFirstSegment(-1);
+    	if(value <= 0){
+    		this.expirations.clear();
+    	}
+    }
+    
+    /**
+     * Obtém o intervalo, em milisegundos, entre duas execuções da remoção 
+     * dos itens expirados.
+     * @return Intervalo.
+     */
+    public long getExpirationInterval(){
+    	return this.expirationInterval;
+    }
+    
+    /**
+     * Define o intervalo mínimo, em milisegundos, entre duas atualizações 
+     * do horário do último acesso de um item.
+     * @param value Intervalo. O valor 0 registra todos os acessos.
+     */
+    public void setAccessTimeGranularity(long value){
+    	this.accessTimes.setGranularity(value);
+    }
+    
+    /**
+     * Obtém o intervalo mínimo, em milisegundos, entre duas atualizações 
+     * do horário do último acesso de um item.
+     * @return Intervalo.
+     */
+    public long getAccessTimeGranularity(){
+    	return this.accessTimes.getGranularity();
+    }
+    
+    /**
+     * Define o tamanho máximo, em bytes, de um valor armazenado no 
+     * próprio índice. Esses valores não ocupam blocos de dados.
+     * @param value Tamanho. O valor 0 desabilita o recurso.
+     */
+    public void setInlineDataSize(int value){
+    	this.inlineDataSize = value;
+    }
+    
+    /**
+     * Obtém o tamanho máximo, em bytes, de um valor armazenado no 
+     * próprio índice.
+     * @return Tamanho.
+     */
+    public int getInlineDataSize(){
+    	return this.inlineDataSize;
     }
     
     /**
@@ -723,7 +1627,7 @@ public abstract class StreamCache
      * @return Quantidade de itens recuperados.
      */
     public long getCountRead(){
-        return this.countRead;
+        return this.countRead.sum();
     }
 
     /**
@@ -731,7 +1635,7 @@ public abstract class StreamCache
      * @return Quantidade de itens armazenados.
      */
     public long getCountWrite(){
-        return this.countWrite;
+        return this.countWrite.sum();
     }
 
     /**
@@ -739,7 +1643,7 @@ public abstract class StreamCache
      * @return Quantidade de itens removidos.
      */
     public long getCountRemoved() {
-		return countRemoved;
+		return this.countRemoved.sum();
 	}
 
     /**
@@ -747,7 +1651,7 @@ public abstract class StreamCache
      * @return Quantidade de bytes recuperados.
      */
     public long getCountReadData() {
-        return countReadData;
+        return this.countReadData.sum();
     }
     
     /**
@@ -755,7 +1659,7 @@ public abstract class StreamCache
      * @return Quantidade de bytes armazenados.
      */
     public long getCountWriteData() {
-        return countWriteData;
+        return this.countWriteData.sum();
     }
 
     /**
@@ -763,7 +1667,31 @@ public abstract class StreamCache
      * @return Quantidade de bytes removidos.
      */
     public long getCountRemovedData() {
-        return countRemovedData;
+        return this.countRemovedData.sum();
+    }
+
+    /**
+     * Obtém a quantidade de itens armazenados.
+     * @return Quantidade de itens.
+     */
+    public long getLiveEntries() {
+        return this.liveEntries.sum();
+    }
+
+    /**
+     * Obtém a quantidade de bytes dos itens armazenados.
+     * @return Quantidade de bytes.
+     */
+    public long getLiveBytes() {
+        return this.liveBytes.sum();
+    }
+
+    /**
+     * Obtém a quantidade de itens removidos pela política de remoção.
+     * @return Quantidade de itens removidos.
+     */
+    public long getCountEvicted() {
+        return this.countEvicted.sum();
     }
     
     /**
@@ -790,12 +1718,30 @@ public abstract class StreamCache
 	 * Remove todas as entradas contidas no cache.
 	 */
 	public void clear(){
-		this.countRead 			= 0;
-		this.countReadData 		= 0;
-		this.countRemoved 		= 0;
-		this.countRemovedData 	= 0;
-		this.countWrite 		= 0;
-		this.countWriteData 	= 0;
+		this.countRead.reset();
+		this.countReadData.reset();
+		this.countRemoved.reset();
+		this.countRemovedData.reset();
+		this.countWrite.reset();
+		this.countWriteData.reset();
+		this.countEvicted.reset();
+		this.liveEntries.reset();
+		this.liveBytes.reset();
+		this.accessTimes.clear();
+		this.expirations.clear();
+		
+		EvictionPolicy policy = this.evictionPolicy;
+		if(policy != null){
+			policy.clear();
+		}
+		
+		//A memória dos blocos é devolvida antes de descartar as listas. 
+		//Os blocos fixados por um leitor são devolvidos quando o fluxo for fechado.
+		Iterator<Block> blocks = this.dataList.iterator();
+		while(blocks.hasNext()){
+			this.memory.release(blocks.next().buffer);
+		}
+		
 		this.dataList.clear();
 		this.dataMap.clear();
 	}
@@ -805,9 +1751,21 @@ public abstract class StreamCache
 	 * for <code>false</code>.
 	 */
 	public void destroy(){
+		if(this.expirationThread != null){
+			this.expirationThread.shutdown();
+		}
+		
+		synchronized(this){
+			if(this.purgeExecutor != null){
+				this.purgeExecutor.shutdownNow();
+				this.purgeExecutor = null;
+			}
+		}
+		
 		this.dataList.destroy();
 		this.dataMap.destroy();
 		this.swapper.destroy();
+		this.memory.destroy();
 	}
 	
     protected void finalize() throws Throwable{
@@ -821,4 +1779,112 @@ public abstract class StreamCache
     	}
     }
 
+    /**
+     * Libera memória com a política de remoção quando o limite de 
+     * {@link BudgetMemory} é atingido.
+     */
+    private class EvictionReclaimer implements MemoryReclaimer, Serializable{
+
+		private static final long serialVersionUID = 3961281340618247706L;
+
+		public long reclaim(long size) {
+			return StreamCache.this.reclaim(size);
+		}
+    	
+    }
+    
+    /**
+     * Obtém as chaves dos itens que não estão expirados.
+     */
+    private static class KeyIterator implements Iterator<String>{
+    	
+    	private Iterator<Map.Entry<String, DataMap>> entries;
+    	
+    	private String next;
+    	
+    	public KeyIterator(Iterator<Map.Entry<String, DataMap>> entries){
+    		this.entries = entries;
+    	}
+    	
+		public boolean hasNext() {
+			while(this.next == null && this.entries.hasNext()){
+				Map.Entry<String, DataMap> e = this.entries.next();
+				if(!e.getValue().isDead())
+					this.next = e.getKey();
+			}
+			return this.next != null;
+		}
+
+		public String next() {
+			if(!this.hasNext())
+				throw new NoSuchElementException();
+			
+			String result = this.next;
+			this.next = null;
+			return result;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+    }
+    
+    /**
+     * Registra os blocos de um item em sequências de endereços consecutivos.
+     * Os endereços são reservados em grupo e os blocos registrados são 
+     * incluídos nas sequências do item.
+     */
+    class BlockWriter{
+    	
+    	private DataMap map;
+    	
+    	private long first;
+    	
+    	private int count;
+    	
+    	private int used;
+    	
+    	private int[] reserved;
+    	
+    	public BlockWriter(DataMap map){
+    		this.map      = map;
+    		this.first    = -1;
+    		this.count    = 0;
+    		this.used     = 0;
+    		this.reserved = new int[1];
+    	}
+    	
+    	/**
+    	 * Registra um bloco.
+    	 * @param block Bloco.
+    	 * @param expected Quantidade de endereços que deve ser reservada 
+    	 * quando não houver endereço disponível.
+    	 */
+    	public void write(Block block, int expected){
+    		
+    		if(this.used == this.count){
+    			this.first = dataList.reserve(Math.min(expected, MAX_EXTENT_BLOCKS), this.reserved);
+    			this.count = this.reserved[0];
+    			this.used  = 0;
+    		}
+    		
+    		long address = this.first + ((long)this.used << 8);
+    		dataList.put(address, block);
+    		this.map.addExtent(address, 1);
+    		this.used++;
+    	}
+    	
+    	/**
+    	 * Devolve os endereços reservados que não foram usados.
+    	 */
+    	public void close(){
+    		for(int i=this.used;i<this.count;i++){
+    			dataList.release(this.first + ((long)i << 8));
+    		}
+    		this.count = this.used;
+    	}
+    	
+    }
+    
 }
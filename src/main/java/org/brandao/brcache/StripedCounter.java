@@ -0,0 +1,70 @@
+package org.brandao.brcache;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Contador distribuído em várias células. Cada processo atualiza a célula 
+ * definida pela sua identificação, evitando a disputa por uma única 
+ * variável. As células são separadas para que fiquem em linhas de cache 
+ * diferentes. O valor é a soma de todas as células.
+ * 
+ * @author Brandao
+ *
+ */
+class StripedCounter implements Serializable{
+
+	private static final long serialVersionUID = -6171432860271513604L;
+
+	/**
+	 * Distância, em longs, entre duas células (64 bytes).
+	 */
+	private static final int PADDING = 8;
+	
+	private static final int STRIPES = 
+			Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors(), 1) * 2 - 1) << 1;
+	
+	private final AtomicLongArray cells;
+	
+	public StripedCounter(){
+		this.cells = new AtomicLongArray(STRIPES*PADDING);
+	}
+	
+	public void increment(){
+		this.add(1);
+	}
+	
+	public void decrement(){
+		this.add(-1);
+	}
+	
+	public void add(long value){
+		long id = Thread.currentThread().getId();
+		int h   = (int)(id ^ (id >>> 32));
+		h      ^= (h >>> 16);
+		h      *= 0x45d9f3b;
+		h      ^= (h >>> 16);
+		this.cells.addAndGet((h & (STRIPES - 1)) * PADDING, value);
+	}
+	
+	/**
+	 * Obtém o valor do contador. As atualizações simultâneas à leitura 
+	 * podem não ser consideradas.
+	 * 
+	 * @return Valor.
+	 */
+	public long sum(){
+		long sum = 0;
+		for(int i=0;i<STRIPES;i++){
+			sum += this.cells.get(i*PADDING);
+		}
+		return sum;
+	}
+	
+	public void reset(){
+		for(int i=0;i<STRIPES;i++){
+			this.cells.set(i*PADDING, 0);
+		}
+	}
+	
+}
@@ -97,6 +97,70 @@ public class ArrayCollectionReference<T> {
 		return index;
 	}
 
+	/**
+	 * Reserva posições consecutivas. As posições devem ser preenchidas com 
+	 * {@link #put(long, Object)} ou devolvidas com {@link #release(long)}.
+	 * <p>
+	 * As posições livres são usadas primeiro. Nesse caso, podem ser 
+	 * reservadas menos posições que o solicitado.
+	 * </p>
+	 * 
+	 * @param count Quantidade máxima de posições.
+	 * @param reserved Recebe, na posição 0, a quantidade reservada.
+	 * @return Primeira posição.
+	 */
+	public long reserve(int count, int[] reserved) {
+		
+		Long index = this.freeAddress.poll();
+		
+		if(index != null){
+			//as posições de um item removido são devolvidas em sequência.
+			int size = 1;
+			while(size < count){
+				Long next = this.freeAddress.peek();
+				
+				if(next == null || next.longValue() != index + size || !this.freeAddress.remove(next))
+					break;
+				
+				size++;
+			}
+			reserved[0] = size;
+			return index;
+		}
+		
+		lock.lock();
+		try{
+			index = this.lastPos;
+			this.lastPos += count;
+			reserved[0] = count;
+			return index;
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Preenche uma posição reservada.
+	 * 
+	 * @param reference Posição.
+	 * @param e Elemento.
+	 */
+	public void put(long reference, T e) {
+		long segment    = (long)(reference / collection.getFragmentSize());
+		long offset     = (long)(reference % collection.getFragmentSize());
+		collection.putEntity(segment, (int)offset, e);
+	}
+	
+	/**
+	 * Devolve uma posição reservada que não foi preenchida.
+	 * 
+	 * @param reference Posição.
+	 */
+	public void release(long reference) {
+		this.freeAddress.add(reference);
+	}
+	
 	@SuppressWarnings("unchecked")
 	public T set(long reference, T e) {
 		long segment    = (long)(reference / collection.getFragmentSize());
@@ -105,6 +169,51 @@ public class ArrayCollectionReference<T> {
 		return o instanceof Empty? null : (T)o;
 	}
 
+	/**
+	 * Obtém os elementos de posições consecutivas.
+	 * 
+	 * @param reference Primeira posição.
+	 * @param dest Destino dos elementos.
+	 * @param off Posição inicial no destino.
+	 * @param len Quantidade de elementos.
+	 */
+	public void get(long reference, Object[] dest, int off, int len) {
+		double fragmentSize = collection.getFragmentSize();
+		//uma posição vazia não pode ser gravada em um vetor tipado.
+		Object[] buf        = dest.getClass() == Object[].class? 
+				null : new Object[(int)Math.min(len, Math.ceil(fragmentSize))];
+		
+		while(len > 0){
+			long segment = (long)(reference / fragmentSize);
+			long offset  = (long)(reference % fragmentSize);
+			int count    = 1;
+			
+			//agrupa as posições do mesmo segmento.
+			while(count < len && (long)((reference + count) / fragmentSize) == segment)
+				count++;
+			
+			if(buf == null){
+				collection.getEntities(segment, (int)offset, dest, off, count);
+				
+				for(int i=off;i<off + count;i++){
+					if(dest[i] instanceof Empty)
+						dest[i] = null;
+				}
+			}
+			else{
+				collection.getEntities(segment, (int)offset, buf, 0, count);
+				
+				for(int i=0;i<count;i++){
+					dest[off + i] = buf[i] instanceof Empty? null : buf[i];
+				}
+			}
+			
+			reference += count;
+			off       += count;
+			len       -= count;
+		}
+	}
+	
 	@SuppressWarnings("unchecked")
 	public T get(long reference) {
 		long segment    = (long)(reference / collection.getFragmentSize());
@@ -186,7 +295,15 @@ public class ArrayCollectionReference<T> {
     }
 
     public void clear() {
-		collection.clear();
+    	lock.lock();
+    	try{
+    		collection.clear();
+    		this.freeAddress.clear();
+    		this.lastPos = 0;
+    	}
+    	finally{
+    		lock.unlock();
+    	}
     }
 
     public void destroy(){
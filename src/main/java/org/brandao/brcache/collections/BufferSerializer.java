@@ -0,0 +1,43 @@
+package org.brandao.brcache.collections;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Converte um valor em bytes gravados diretamente em um buffer.
+ * 
+ * @author Brandao
+ *
+ * @param <T> Tipo do valor.
+ */
+public interface BufferSerializer<T> extends Serializable{
+
+	/**
+	 * Obtém a quantidade de bytes necessária para gravar o valor.
+	 * 
+	 * @param value Valor.
+	 * @return Quantidade de bytes.
+	 */
+	int size(T value);
+	
+	/**
+	 * Grava o valor no buffer. Somente as operações com posição absoluta
+	 * podem ser usadas no buffer informado.
+	 * 
+	 * @param buffer Buffer.
+	 * @param offset Posição inicial.
+	 * @param value Valor.
+	 */
+	void write(ByteBuffer buffer, int offset, T value);
+	
+	/**
+	 * Lê um valor do buffer. Somente as operações com posição absoluta
+	 * podem ser usadas no buffer informado.
+	 * 
+	 * @param buffer Buffer.
+	 * @param offset Posição inicial.
+	 * @return Valor.
+	 */
+	T read(ByteBuffer buffer, int offset);
+	
+}
@@ -0,0 +1,219 @@
+package org.brandao.brcache.collections;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Chave lida byte a byte.
+ * <p>
+ * Uma chave do tipo <code>String</code> é lida em UTF-8 à medida que os
+ * bytes são solicitados, sem criar um array com a chave codificada. Chaves
+ * do tipo <code>byte[]</code> e {@link ByteBuffer} são lidas diretamente.
+ * Não há conversão entre letras maiúsculas e minúsculas.
+ * </p>
+ * <p>
+ * A leitura é otimizada para o acesso sequencial. A instância não deve ser
+ * compartilhada entre threads.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ */
+public abstract class ByteKey {
+
+	/**
+	 * Obtém a chave a partir de uma <code>String</code>, <code>byte[]</code>
+	 * ou {@link ByteBuffer}.
+	 * 
+	 * @param key Chave.
+	 * @return Chave lida byte a byte.
+	 */
+	public static ByteKey valueOf(Object key){
+		if(key instanceof String)
+			return new StringKey((String)key);
+		
+		if(key instanceof byte[])
+			return new ArrayKey((byte[])key);
+		
+		if(key instanceof ByteBuffer)
+			return new BufferKey((ByteBuffer)key);
+		
+		if(key instanceof ByteKey)
+			return (ByteKey)key;
+		
+		throw new IllegalArgumentException("invalid key: " + key);
+	}
+	
+	/**
+	 * Obtém a quantidade de bytes da chave.
+	 * 
+	 * @return Quantidade.
+	 */
+	public abstract int length();
+	
+	/**
+	 * Obtém um byte da chave.
+	 * 
+	 * @param index Posição.
+	 * @return Byte entre 0 e 255.
+	 */
+	public abstract int byteAt(int index);
+	
+	/**
+	 * Copia um intervalo da chave.
+	 * 
+	 * @param from Posição inicial.
+	 * @param to Posição final, exclusiva.
+	 * @return Bytes.
+	 */
+	public byte[] toArray(int from, int to){
+		byte[] result = new byte[to - from];
+		for(int i=from;i<to;i++)
+			result[i - from] = (byte)this.byteAt(i);
+		return result;
+	}
+	
+	private static class ArrayKey extends ByteKey{
+		
+		private final byte[] value;
+		
+		public ArrayKey(byte[] value){
+			this.value = value;
+		}
+
+		public int length() {
+			return this.value.length;
+		}
+
+		public int byteAt(int index) {
+			return this.value[index] & 0xff;
+		}
+		
+	}
+	
+	private static class BufferKey extends ByteKey{
+		
+		private final ByteBuffer value;
+		
+		private final int offset;
+		
+		private final int length;
+		
+		public BufferKey(ByteBuffer value){
+			this.value  = value;
+			this.offset = value.position();
+			this.length = value.remaining();
+		}
+
+		public int length() {
+			return this.length;
+		}
+
+		public int byteAt(int index) {
+			return this.value.get(this.offset + index) & 0xff;
+		}
+		
+	}
+	
+	/*
+	 * Codifica a chave em UTF-8 a partir do último caractere lido. Os
+	 * caracteres substitutos sem par são codificados como '?', da mesma forma
+	 * que em String.getBytes.
+	 */
+	private static class StringKey extends ByteKey{
+		
+		private final String value;
+		
+		private final int length;
+		
+		/**
+		 * Posição do caractere atual.
+		 */
+		private int charIndex;
+		
+		/**
+		 * Posição do primeiro byte do caractere atual.
+		 */
+		private int byteIndex;
+		
+		private int codePoint;
+		
+		private int codeLength;
+		
+		public StringKey(String value){
+			this.value = value;
+			
+			int len = 0;
+			int i   = 0;
+			while(i < value.length()){
+				int cp = codePointAt(value, i);
+				len += encodedLength(cp);
+				i   += cp >= 0x10000? 2 : 1;
+			}
+			
+			this.length = len;
+			this.reset();
+		}
+		
+		private static int codePointAt(String value, int index){
+			int cp = Character.codePointAt(value, index);
+			return cp >= 0xd800 && cp <= 0xdfff? '?' : cp;
+		}
+		
+		private static int encodedLength(int cp){
+			return cp < 0x80? 1 : cp < 0x800? 2 : cp < 0x10000? 3 : 4;
+		}
+		
+		private void reset(){
+			this.charIndex = 0;
+			this.byteIndex = 0;
+			this.decode();
+		}
+		
+		private void decode(){
+			if(this.charIndex < this.value.length()){
+				this.codePoint  = codePointAt(this.value, this.charIndex);
+				this.codeLength = encodedLength(this.codePoint);
+			}
+			else{
+				this.codePoint  = -1;
+				this.codeLength = 0;
+			}
+		}
+		
+		public int length() {
+			return this.length;
+		}
+
+		public int byteAt(int index) {
+			if(index < 0 || index >= this.length)
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+			
+			if(index < this.byteIndex)
+				this.reset();
+			
+			while(index >= this.byteIndex + this.codeLength){
+				this.byteIndex += this.codeLength;
+				this.charIndex += this.codePoint >= 0x10000? 2 : 1;
+				this.decode();
+			}
+			
+			int cp  = this.codePoint;
+			int pos = index - this.byteIndex;
+			
+			switch(this.codeLength){
+			case 1:
+				return cp;
+			case 2:
+				return pos == 0? 0xc0 | (cp >> 6) : 0x80 | (cp & 0x3f);
+			case 3:
+				return pos == 0? 0xe0 | (cp >> 12) : 
+					0x80 | ((cp >> (6*(2 - pos))) & 0x3f);
+			default:
+				return pos == 0? 0xf0 | (cp >> 18) : 
+					0x80 | ((cp >> (6*(3 - pos))) & 0x3f);
+			}
+		}
+		
+	}
+	
+}
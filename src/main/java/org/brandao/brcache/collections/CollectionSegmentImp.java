@@ -62,6 +62,34 @@ class CollectionSegmentImp<I>
     	
     }
 
+    /**
+     * Obtém elementos consecutivos de um segmento com um único bloqueio.
+     */
+    public void getEntities(long segment, int index, Object[] dest, int off, int len) {
+
+    	Lock lock = super.getSegment(segment).getLock();
+    	lock.lock();
+    	try{
+	        Entry<ArraySegment<I>> entry = this.getEntry(segment);
+	        
+	        if (entry == null){
+	        	for(int i=0;i<len;i++){
+	        		dest[off + i] = null;
+	        	}
+	        }
+	        else{
+	        	ArraySegment<I> seg = entry.getItem();
+	        	for(int i=0;i<len;i++){
+	        		dest[off + i] = seg.get(index + i);
+	        	}
+	        }
+    	}
+    	finally{
+    		lock.unlock();
+    	}
+    	
+    }
+    
     public int putEntity(long segment, int index, I value) {
         
         if(this.readOnly)
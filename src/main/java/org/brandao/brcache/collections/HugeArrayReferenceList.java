@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 import org.brandao.brcache.collections.swapper.TreeFileSwapper;
 
@@ -72,12 +73,68 @@ public class HugeArrayReferenceList<T>
 		return address;
 	}
 
+	/**
+	 * Reserva endereços consecutivos em uma mesma lista. O endereço de 
+	 * ordem <code>i</code> é <code>primeiro + (i &lt;&lt; 8)</code>.
+	 * 
+	 * @param count Quantidade máxima de endereços.
+	 * @param reserved Recebe, na posição 0, a quantidade reservada.
+	 * @return Primeiro endereço.
+	 */
+	public long reserve(int count, int[] reserved) {
+		long threadReference = Thread.currentThread().getId() % this.lists.length;
+		long index           = this.lists[(int)threadReference].reserve(count, reserved);
+		
+		threadReference = threadReference & 0xff;
+		index           = index & 0xffffffffL;
+		
+		return (index << 8) | threadReference;
+	}
+	
+	/**
+	 * Preenche um endereço reservado.
+	 * 
+	 * @param reference Endereço.
+	 * @param e Elemento.
+	 */
+	public void put(long reference, T e) {
+		long threadReference = reference & 0xff;
+		long index           = reference >> 8;
+		this.lists[(int)threadReference].put(index, e);
+	}
+	
+	/**
+	 * Devolve um endereço reservado que não foi preenchido.
+	 * 
+	 * @param reference Endereço.
+	 */
+	public void release(long reference) {
+		long threadReference = reference & 0xff;
+		long index           = reference >> 8;
+		this.lists[(int)threadReference].release(index);
+	}
+	
 	public T set(long reference, T e) {
 		long threadReference = reference & 0xff;
 		long index           = reference >> 8;
 		return this.lists[(int)threadReference].set(index, e);
 	}
 
+	/**
+	 * Obtém os elementos de endereços consecutivos, reservados com 
+	 * {@link #reserve(int, int[])}.
+	 * 
+	 * @param reference Primeiro endereço.
+	 * @param dest Destino dos elementos.
+	 * @param off Posição inicial no destino.
+	 * @param len Quantidade de elementos.
+	 */
+	public void get(long reference, T[] dest, int off, int len) {
+		long threadReference = reference & 0xff;
+		long index           = reference >> 8;
+		this.lists[(int)threadReference].get(index, dest, off, len);
+	}
+	
 	public T get(long reference) {
 		long threadReference = reference & 0xff;
 		long index           = reference >> 8;
@@ -161,8 +218,12 @@ public class HugeArrayReferenceList<T>
     	
     }
 
+	/**
+	 * Percorre os elementos de todas as listas. As posições vazias são 
+	 * ignoradas.
+	 */
 	public Iterator<T> iterator() {
-        throw new UnsupportedOperationException("Not supported yet.");
+		return new ElementIterator();
 	}
 
 	public Object[] toArray() {
@@ -243,4 +304,41 @@ public class HugeArrayReferenceList<T>
     	return this.lists[0].isReadOnly();
 	}
 
+	private class ElementIterator implements Iterator<T>{
+
+		private int list;
+		
+		private long index;
+		
+		private T next;
+		
+		public boolean hasNext() {
+			while(this.next == null && this.list < lists.length){
+				ArrayCollectionReference<T> l = lists[this.list];
+				
+				if(this.index < l.length())
+					this.next = l.get(this.index++);
+				else{
+					this.list++;
+					this.index = 0;
+				}
+			}
+			return this.next != null;
+		}
+
+		public T next() {
+			if(!this.hasNext())
+				throw new NoSuchElementException();
+			
+			T result  = this.next;
+			this.next = null;
+			return result;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+	}
+	
 }
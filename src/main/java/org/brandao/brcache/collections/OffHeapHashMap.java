@@ -0,0 +1,857 @@
+package org.brandao.brcache.collections;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.brandao.brcache.memory.BudgetMemory;
+
+/**
+ * Mapa de chaves textuais armazenado fora do heap.
+ * <p>
+ * As chaves são distribuídas entre segmentos. Cada segmento possui uma
+ * tabela de endereçamento aberto com sondagem linear e uma área de registros,
+ * ambas obtidas com <code>ByteBuffer.allocateDirect</code>. Uma posição da
+ * tabela ocupa 8 bytes: o hash da chave e o endereço do registro. O registro
+ * contém a chave e o valor gravado pelo {@link BufferSerializer}. Uma consulta
+ * calcula o hash, percorre as posições consecutivas da tabela e compara a
+ * chave somente quando o hash coincide.
+ * </p>
+ * <p>
+ * Os registros são gravados sempre no final da área. Os registros
+ * substituídos ou removidos são descartados quando a área precisa crescer.
+ * A remoção desloca as posições seguintes da tabela, sem marcas de exclusão.
+ * </p>
+ * <p>
+ * As chaves são lidas byte a byte com {@link ByteKey}. Uma chave 
+ * <code>String</code> equivale à mesma chave codificada em UTF-8. As 
+ * operações de consulta e remoção aceitam diretamente <code>byte[]</code> e 
+ * <code>ByteBuffer</code>. O conteúdo do mapa não é serializado.
+ * </p>
+ * <p>
+ * Se for informado um {@link BudgetMemory}, a memória das tabelas e das áreas
+ * de registros é contabilizada nele. O crescimento do índice não aguarda a 
+ * liberação de memória.
+ * </p>
+ * <p>
+ * As visões {@link #keySet()}, {@link #values()} e {@link #entrySet()} 
+ * percorrem um segmento de cada vez. Os itens de um segmento são copiados
+ * com o bloqueio obtido. As alterações feitas durante a iteração podem não 
+ * ser vistas.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ * @param <T> Tipo do valor.
+ */
+public class OffHeapHashMap<T> 
+	implements HugeMap<String, T>{
+
+	private static final long serialVersionUID = -6718925374409541107L;
+
+	public static final int DEFAULT_SEGMENTS = 16;
+	
+	private static final int SLOT_SIZE = 8;
+	
+	private static final int MIN_CAPACITY = 64;
+	
+	private static final int MIN_DATA_SIZE = 4096;
+	
+	private static final int RECORD_HEADER_SIZE = 8;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private Segment<T>[] segments;
+	
+	private int segmentShift;
+	
+	private BufferSerializer<T> serializer;
+	
+	private boolean deleteOnExit;
+	
+	private volatile boolean readOnly;
+	
+	public OffHeapHashMap(BufferSerializer<T> serializer){
+		this(serializer, DEFAULT_SEGMENTS);
+	}
+	
+	public OffHeapHashMap(BufferSerializer<T> serializer, int segments){
+		this(serializer, segments, null);
+	}
+	
+	/**
+	 * Cria um mapa cuja memória é contabilizada em um orçamento.
+	 * 
+	 * @param serializer Serializador dos valores.
+	 * @param segments Quantidade de segmentos.
+	 * @param budget Orçamento de memória. Pode ser <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public OffHeapHashMap(BufferSerializer<T> serializer, int segments, BudgetMemory budget){
+		int size  = 1;
+		int shift = 32;
+		
+		while(size < segments){
+			size <<= 1;
+			shift--;
+		}
+		
+		this.serializer   = serializer;
+		this.segmentShift = shift;
+		this.segments     = (Segment<T>[])new Segment<?>[size];
+		this.deleteOnExit = true;
+		
+		for(int i=0;i<size;i++)
+			this.segments[i] = new Segment<T>(serializer, budget);
+	}
+	
+	private static int hash(ByteKey key){
+		int h   = 0x9747b28c;
+		int len = key.length();
+		for(int i=0;i<len;i++)
+			h = 31*h + key.byteAt(i);
+		
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+	
+	private Segment<T> segmentFor(int hash){
+		return this.segments[this.segmentShift == 32? 0 : hash >>> this.segmentShift];
+	}
+	
+	public T put(String key, T value) {
+		return this.put(ByteKey.valueOf(key), value);
+	}
+
+	public T putIfAbsent(String key, T value) {
+		return this.putIfAbsent(ByteKey.valueOf(key), value);
+	}
+
+	public T replace(String key, T value) {
+		return this.replace(ByteKey.valueOf(key), value);
+	}
+
+	public boolean replace(String key, T oldValue, T value) {
+		return this.replace(ByteKey.valueOf(key), oldValue, value);
+	}
+	
+	public T get(Object key) {
+		ByteKey k      = ByteKey.valueOf(key);
+		int h          = hash(k);
+		Segment<T> s   = this.segmentFor(h);
+		Lock lock      = s.lock.readLock();
+		lock.lock();
+		try{
+			int slot = s.find(h, k);
+			return slot == -1? null : s.read(slot);
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+
+	public boolean containsKey(Object key) {
+		ByteKey k      = ByteKey.valueOf(key);
+		int h          = hash(k);
+		Segment<T> s   = this.segmentFor(h);
+		Lock lock      = s.lock.readLock();
+		lock.lock();
+		try{
+			return s.find(h, k) != -1;
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+	
+	public T put(ByteKey key, T value) {
+		ByteKey k      = ByteKey.valueOf(key);
+		int h          = hash(k);
+		Segment<T> s   = this.segmentFor(h);
+		Lock lock      = s.lock.writeLock();
+		lock.lock();
+		try{
+			int slot = s.find(h, k);
+			
+			if(slot == -1){
+				s.insert(h, k, value);
+				return null;
+			}
+			
+			T old = s.read(slot);
+			s.update(slot, k, value);
+			return old;
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+
+	public T putIfAbsent(ByteKey key, T value) {
+		ByteKey k      = ByteKey.valueOf(key);
+		int h          = hash(k);
+		Segment<T> s   = this.segmentFor(h);
+		Lock lock      = s.lock.writeLock();
+		lock.lock();
+		try{
+			int slot = s.find(h, k);
+			
+			if(slot == -1){
+				s.insert(h, k, value);
+				return null;
+			}
+			
+			return s.read(slot);
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+	
+	public T replace(ByteKey key, T value) {
+		ByteKey k      = ByteKey.valueOf(key);
+		int h          = hash(k);
+		Segment<T> s   = this.segmentFor(h);
+		Lock lock      = s.lock.writeLock();
+		lock.lock();
+		try{
+			int slot = s.find(h, k);
+			
+			if(slot == -1)
+				return null;
+			
+			T old = s.read(slot);
+			s.update(slot, k, value);
+			return old;
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+
+	public boolean replace(ByteKey key, T oldValue, T value) {
+		ByteKey k      = ByteKey.valueOf(key);
+		int h          = hash(k);
+		Segment<T> s   = this.segmentFor(h);
+		Lock lock      = s.lock.writeLock();
+		lock.lock();
+		try{
+			int slot = s.find(h, k);
+			
+			if(slot == -1 || !s.read(slot).equals(oldValue))
+				return false;
+			
+			s.update(slot, k, value);
+			return true;
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+	
+	public T remove(Object key) {
+		ByteKey k      = ByteKey.valueOf(key);
+		int h          = hash(k);
+		Segment<T> s   = this.segmentFor(h);
+		Lock lock      = s.lock.writeLock();
+		lock.lock();
+		try{
+			int slot = s.find(h, k);
+			
+			if(slot == -1)
+				return null;
+			
+			T old = s.read(slot);
+			s.delete(slot);
+			return old;
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+
+	public boolean remove(Object key, Object value) {
+		ByteKey k      = ByteKey.valueOf(key);
+		int h          = hash(k);
+		Segment<T> s   = this.segmentFor(h);
+		Lock lock      = s.lock.writeLock();
+		lock.lock();
+		try{
+			int slot = s.find(h, k);
+			
+			if(slot == -1 || !s.read(slot).equals(value))
+				return false;
+			
+			s.delete(slot);
+			return true;
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+	
+	public int size() {
+		long size = 0;
+		for(Segment<T> s: this.segments){
+			Lock lock = s.lock.readLock();
+			lock.lock();
+			try{
+				size += s.count;
+			}
+			finally{
+				lock.unlock();
+			}
+		}
+		return (int)Math.min(size, Integer.MAX_VALUE);
+	}
+
+	public boolean isEmpty() {
+		return this.size() == 0;
+	}
+
+	public boolean containsValue(Object value) {
+		for(Segment<T> s: this.segments){
+			Lock lock = s.lock.readLock();
+			lock.lock();
+			try{
+				for(int i=0;i<s.capacity;i++){
+					if(s.getRecord(i) != -1 && s.read(i).equals(value))
+						return true;
+				}
+			}
+			finally{
+				lock.unlock();
+			}
+		}
+		return false;
+	}
+
+	public void putAll(Map<? extends String, ? extends T> m) {
+        for(String key: m.keySet())
+            this.put(key, m.get(key));
+	}
+
+	public void clear() {
+		for(Segment<T> s: this.segments){
+			Lock lock = s.lock.writeLock();
+			lock.lock();
+			try{
+				s.reset();
+			}
+			finally{
+				lock.unlock();
+			}
+		}
+	}
+
+	public Set<String> keySet() {
+		return new KeySet();
+	}
+
+	public Collection<T> values() {
+		return new Values();
+	}
+
+	public Set<java.util.Map.Entry<String, T>> entrySet() {
+		return new EntrySet();
+	}
+
+	public void setDeleteOnExit(boolean value) {
+		this.deleteOnExit = value;
+	}
+
+	public boolean isDeleteOnExit() {
+		return this.deleteOnExit;
+	}
+
+	/**
+	 * Devolve ao orçamento a memória dos segmentos. O mapa continua 
+	 * utilizável, mas a sua memória deixa de ser contabilizada.
+	 */
+	public void destroy() {
+		for(Segment<T> s: this.segments){
+			Lock lock = s.lock.writeLock();
+			lock.lock();
+			try{
+				s.reset();
+				s.release();
+			}
+			finally{
+				lock.unlock();
+			}
+		}
+	}
+
+	public void flush() {
+	}
+
+	public void setReadOnly(boolean value) {
+		this.readOnly = value;
+	}
+
+	public boolean isReadOnly() {
+		return this.readOnly;
+	}
+
+	/**
+	 * Percorre os itens do mapa, um segmento de cada vez.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<String, T>>{
+		
+		private int segment;
+		
+		private Iterator<Map.Entry<String, T>> current;
+		
+		private Map.Entry<String, T> last;
+		
+		public boolean hasNext() {
+			while((this.current == null || !this.current.hasNext()) && 
+					this.segment < segments.length){
+				Segment<T> s                         = segments[this.segment++];
+				List<Map.Entry<String, T>> entries = new ArrayList<Map.Entry<String, T>>();
+				Lock lock                            = s.lock.readLock();
+				lock.lock();
+				try{
+					s.entries(entries);
+				}
+				finally{
+					lock.unlock();
+				}
+				this.current = entries.iterator();
+			}
+			return this.current != null && this.current.hasNext();
+		}
+
+		public Map.Entry<String, T> next() {
+			if(!this.hasNext())
+				throw new NoSuchElementException();
+			
+			this.last = this.current.next();
+			return this.last;
+		}
+
+		public void remove() {
+			if(this.last == null)
+				throw new IllegalStateException();
+			
+			OffHeapHashMap.this.remove(this.last.getKey());
+			this.last = null;
+		}
+		
+	}
+	
+	private class KeySet extends AbstractSet<String>{
+
+		public Iterator<String> iterator() {
+			final EntryIterator i = new EntryIterator();
+			return new Iterator<String>(){
+
+				public boolean hasNext() {
+					return i.hasNext();
+				}
+
+				public String next() {
+					return i.next().getKey();
+				}
+
+				public void remove() {
+					i.remove();
+				}
+				
+			};
+		}
+
+		public int size() {
+			return OffHeapHashMap.this.size();
+		}
+		
+		public boolean contains(Object o) {
+			return OffHeapHashMap.this.containsKey(o);
+		}
+		
+		public boolean remove(Object o) {
+			return OffHeapHashMap.this.remove(o) != null;
+		}
+		
+		public void clear() {
+			OffHeapHashMap.this.clear();
+		}
+		
+	}
+	
+	private class Values extends AbstractCollection<T>{
+
+		public Iterator<T> iterator() {
+			final EntryIterator i = new EntryIterator();
+			return new Iterator<T>(){
+
+				public boolean hasNext() {
+					return i.hasNext();
+				}
+
+				public T next() {
+					return i.next().getValue();
+				}
+
+				public void remove() {
+					i.remove();
+				}
+				
+			};
+		}
+
+		public int size() {
+			return OffHeapHashMap.this.size();
+		}
+		
+		public boolean contains(Object o) {
+			return OffHeapHashMap.this.containsValue(o);
+		}
+		
+		public void clear() {
+			OffHeapHashMap.this.clear();
+		}
+		
+	}
+	
+	private class EntrySet extends AbstractSet<Map.Entry<String, T>>{
+
+		public Iterator<Map.Entry<String, T>> iterator() {
+			return new EntryIterator();
+		}
+
+		public int size() {
+			return OffHeapHashMap.this.size();
+		}
+		
+		public boolean contains(Object o) {
+			if(!(o instanceof Map.Entry))
+				return false;
+			
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+			T value           = OffHeapHashMap.this.get(e.getKey());
+			return value != null && value.equals(e.getValue());
+		}
+		
+		public boolean remove(Object o) {
+			if(!(o instanceof Map.Entry))
+				return false;
+			
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+			return OffHeapHashMap.this.remove(e.getKey(), e.getValue());
+		}
+		
+		public void clear() {
+			OffHeapHashMap.this.clear();
+		}
+		
+	}
+	
+	/**
+	 * Segmento do mapa. Deve ser usado somente com o bloqueio obtido.
+	 */
+	private static class Segment<T> implements Serializable{
+		
+		private static final long serialVersionUID = 3215489785136042197L;
+
+		final ReentrantReadWriteLock lock;
+		
+		private final BufferSerializer<T> serializer;
+		
+		private transient BudgetMemory budget;
+		
+		private transient ByteBuffer table;
+		
+		private transient ByteBuffer data;
+		
+		int capacity;
+		
+		private int mask;
+		
+		int count;
+		
+		/**
+		 * Final da área de registros.
+		 */
+		private int dataEnd;
+		
+		/**
+		 * Bytes ocupados por registros descartados.
+		 */
+		private int garbage;
+		
+		public Segment(BufferSerializer<T> serializer, BudgetMemory budget){
+			this.lock       = new ReentrantReadWriteLock();
+			this.serializer = serializer;
+			this.budget     = budget;
+			this.reset();
+		}
+		
+		void reset(){
+			this.free(this.table);
+			this.free(this.data);
+			this.capacity = MIN_CAPACITY;
+			this.mask     = MIN_CAPACITY - 1;
+			this.table    = this.allocate(MIN_CAPACITY*SLOT_SIZE);
+			this.data     = this.allocate(MIN_DATA_SIZE);
+			this.count    = 0;
+			this.dataEnd  = 0;
+			this.garbage  = 0;
+		}
+		
+		/*
+		 * Devolve ao orçamento a memória do segmento.
+		 */
+		void release(){
+			this.free(this.table);
+			this.free(this.data);
+			this.budget = null;
+		}
+		
+		private ByteBuffer allocate(int size){
+			if(this.budget != null)
+				this.budget.charge(size);
+			
+			return ByteBuffer.allocateDirect(size);
+		}
+		
+		private void free(ByteBuffer buffer){
+			if(buffer != null && this.budget != null)
+				this.budget.discharge(buffer.capacity());
+		}
+		
+		/*
+		 * Copia os itens do segmento.
+		 */
+		void entries(List<Map.Entry<String, T>> dest){
+			for(int i=0;i<this.capacity;i++){
+				int record = this.getRecord(i);
+				
+				if(record == -1)
+					continue;
+				
+				byte[] key = new byte[this.data.getInt(record + 4)];
+				for(int k=0;k<key.length;k++)
+					key[k] = this.data.get(record + RECORD_HEADER_SIZE + k);
+				
+				dest.add(new AbstractMap.SimpleImmutableEntry<String, T>(
+						new String(key, UTF8), this.read(i)));
+			}
+		}
+		
+		/*
+		 * Endereço do registro de uma posição ou -1 se a posição está vazia.
+		 */
+		int getRecord(int slot){
+			return this.table.getInt(slot*SLOT_SIZE + 4) - 1;
+		}
+		
+		int find(int hash, ByteKey key){
+			int slot = hash & this.mask;
+			
+			for(;;){
+				int record = this.getRecord(slot);
+				
+				if(record == -1)
+					return -1;
+				
+				if(this.table.getInt(slot*SLOT_SIZE) == hash && this.equalsKey(record, key))
+					return slot;
+				
+				slot = (slot + 1) & this.mask;
+			}
+		}
+		
+		private boolean equalsKey(int record, ByteKey key){
+			int len = key.length();
+			
+			if(this.data.getInt(record + 4) != len)
+				return false;
+			
+			int off = record + RECORD_HEADER_SIZE;
+			for(int i=0;i<len;i++){
+				if((this.data.get(off + i) & 0xff) != key.byteAt(i))
+					return false;
+			}
+			return true;
+		}
+		
+		T read(int slot){
+			int record = this.getRecord(slot);
+			return this.serializer.read(
+					this.data, record + RECORD_HEADER_SIZE + this.data.getInt(record + 4));
+		}
+		
+		void insert(int hash, ByteKey key, T value){
+			if((this.count + 1) > (this.capacity >> 2)*3)
+				this.resize(this.capacity << 1);
+			
+			int record = this.append(key, value);
+			int slot   = hash & this.mask;
+			
+			while(this.getRecord(slot) != -1)
+				slot = (slot + 1) & this.mask;
+			
+			this.table.putInt(slot*SLOT_SIZE, hash);
+			this.table.putInt(slot*SLOT_SIZE + 4, record + 1);
+			this.count++;
+		}
+		
+		void update(int slot, ByteKey key, T value){
+			int record = this.append(key, value);
+			this.garbage += this.data.getInt(this.getRecord(slot));
+			this.table.putInt(slot*SLOT_SIZE + 4, record + 1);
+		}
+		
+		/*
+		 * Remove a posição e desloca as posições seguintes que pertencem
+		 * a posições anteriores.
+		 */
+		void delete(int slot){
+			this.garbage += this.data.getInt(this.getRecord(slot));
+			
+			int hole = slot;
+			int next = slot;
+			
+			for(;;){
+				next = (next + 1) & this.mask;
+				
+				if(this.getRecord(next) == -1)
+					break;
+				
+				int home = this.table.getInt(next*SLOT_SIZE) & this.mask;
+				
+				boolean move = hole <= next?
+						home <= hole || home > next :
+						home <= hole && home > next;
+				
+				if(move){
+					this.table.putLong(hole*SLOT_SIZE, this.table.getLong(next*SLOT_SIZE));
+					hole = next;
+				}
+			}
+			
+			this.table.putLong(hole*SLOT_SIZE, 0);
+			this.count--;
+		}
+		
+		private int append(ByteKey key, T value){
+			int keySize   = key.length();
+			int valueSize = this.serializer.size(value);
+			long size     = (long)RECORD_HEADER_SIZE + keySize + valueSize;
+			
+			if(size > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("record too large: " + size);
+			
+			this.ensureData((int)size);
+			
+			int record = this.dataEnd;
+			this.data.putInt(record, (int)size);
+			this.data.putInt(record + 4, keySize);
+			
+			int off = record + RECORD_HEADER_SIZE;
+			for(int i=0;i<keySize;i++)
+				this.data.put(off + i, (byte)key.byteAt(i));
+			
+			this.serializer.write(this.data, off + keySize, value);
+			this.dataEnd += size;
+			return record;
+		}
+		
+		/*
+		 * Garante o espaço para um novo registro. Os registros descartados são
+		 * removidos quando a área precisa ser realocada.
+		 */
+		private void ensureData(int size){
+			int capacity = this.data.capacity();
+			
+			if((long)this.dataEnd + size <= capacity)
+				return;
+			
+			long live        = this.dataEnd - this.garbage;
+			long newCapacity = capacity;
+			
+			while(live + size > newCapacity - (newCapacity >> 2))
+				newCapacity <<= 1;
+			
+			if(newCapacity > Integer.MAX_VALUE)
+				throw new IllegalStateException("segment full");
+			
+			ByteBuffer newData = this.allocate((int)newCapacity);
+			int end            = 0;
+			
+			for(int i=0;i<this.capacity;i++){
+				int record = this.getRecord(i);
+				
+				if(record == -1)
+					continue;
+				
+				int length     = this.data.getInt(record);
+				ByteBuffer src = this.data.duplicate();
+				src.limit(record + length);
+				src.position(record);
+				
+				newData.position(end);
+				newData.put(src);
+				
+				this.table.putInt(i*SLOT_SIZE + 4, end + 1);
+				end += length;
+			}
+			
+			this.free(this.data);
+			this.data    = newData;
+			this.dataEnd = end;
+			this.garbage = 0;
+		}
+		
+		private void resize(int newCapacity){
+			ByteBuffer newTable = this.allocate(newCapacity*SLOT_SIZE);
+			int newMask         = newCapacity - 1;
+			
+			for(int i=0;i<this.capacity;i++){
+				long entry = this.table.getLong(i*SLOT_SIZE);
+				
+				if(this.getRecord(i) == -1)
+					continue;
+				
+				int slot = this.table.getInt(i*SLOT_SIZE) & newMask;
+				
+				while(newTable.getInt(slot*SLOT_SIZE + 4) != 0)
+					slot = (slot + 1) & newMask;
+				
+				newTable.putLong(slot*SLOT_SIZE, entry);
+			}
+			
+			this.free(this.table);
+			this.table    = newTable;
+			this.capacity = newCapacity;
+			this.mask     = newMask;
+		}
+		
+		private void readObject(ObjectInputStream stream) 
+				throws IOException, ClassNotFoundException {
+			stream.defaultReadObject();
+			this.reset();
+		}
+		
+	}
+	
+}
@@ -22,4 +22,25 @@ public class RouletteLock {
 		return this.locks[(int)(value % this.locks.length)];
 	}
 	
+	/**
+	 * Obtém os bloqueios de dois valores. Os bloqueios são obtidos sempre na
+	 * mesma ordem para evitar o impasse entre dois processos.
+	 * 
+	 * @param a Primeiro valor.
+	 * @param b Segundo valor.
+	 */
+	public void lock(long a, long b){
+		int i = (int)(a % this.locks.length);
+		int j = (int)(b % this.locks.length);
+		this.locks[Math.min(i, j)].lock();
+		this.locks[Math.max(i, j)].lock();
+	}
+	
+	public void unlock(long a, long b){
+		int i = (int)(a % this.locks.length);
+		int j = (int)(b % this.locks.length);
+		this.locks[Math.max(i, j)].unlock();
+		this.locks[Math.min(i, j)].unlock();
+	}
+	
 }
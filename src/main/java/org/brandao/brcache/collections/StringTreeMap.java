@@ -20,6 +20,12 @@ package org.brandao.brcache.collections;
 import org.brandao.brcache.collections.treehugemap.StringTreeNodes;
 
 /**
+ * Mapa em árvore com chaves textuais. As chaves também podem ser informadas
+ * em bytes com {@link ByteKey}. Uma chave <code>String</code> equivale à 
+ * mesma chave codificada em UTF-8. As operações de consulta e remoção 
+ * aceitam diretamente <code>byte[]</code> e <code>ByteBuffer</code>.
+ * As chaves obtidas por {@link #keys(Object)} e {@link #entries(Object)} 
+ * são decodificadas em UTF-8.
  *
  * @author Brandao
  */
@@ -46,5 +52,22 @@ public class StringTreeMap<T> extends TreeMap<String, T> {
                 maxCapacityElements, clearFactorElements, fragmentFactorElements, 
                 swapElements, quantitySwaperThreadElements, subListsElements, 
                 new StringTreeNodes<T>());
-    }    
+    }
+    
+    public T put(ByteKey key, T element){
+    	return this.putKey(key, element);
+    }
+
+    public boolean replace(ByteKey key, T oldElement, T element){
+    	return this.replaceKey(key, oldElement, element);
+    }
+
+    public T replace(ByteKey key, T element){
+    	return this.replaceKey(key, element);
+    }
+
+    public T putIfAbsent(ByteKey key, T element){
+    	return this.putIfAbsentKey(key, element);
+    }
+    
 }
@@ -17,12 +17,16 @@
 
 package org.brandao.brcache.collections;
 
+import org.brandao.brcache.collections.treehugemap.TreeCursor;
 import org.brandao.brcache.collections.treehugemap.TreeNode;
 import org.brandao.brcache.collections.treehugemap.TreeNodes;
 import org.brandao.brcache.collections.treehugemap.TreeMapKey;
 import java.io.Serializable;
+import java.util.AbstractMap;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -114,59 +118,77 @@ public class TreeMap<K,T>
         this.treeNodes.init(this.nodes);
     }
     
+    /*
+     * A busca é feita em laço porque uma divisão simultânea de um nó 
+     * reinicia a busca pela raiz. A alteração do valor também reinicia a 
+     * busca se o nó foi desligado da árvore.
+     */
     private T put(TreeMapKey key, TreeNode<T> node, T value){
         
-        if(!this.treeNodes.isEquals(key, node)){
-            TreeNode<T> next = this.treeNodes.getNext(this.nodes, key, node, false);
-            return this.put(key, next, value);
-        }
-        else{
-        	return this.treeNodes.setValue(this.values, node, value);
-        }
+    	for(;;){
+	        while(!this.treeNodes.isEquals(key, node))
+	            node = this.treeNodes.getNext(this.nodes, key, node, false);
+	        
+	    	T result = this.treeNodes.setValue(this.values, key, node, value);
+	    	
+	    	if(this.treeNodes.isEquals(key, node))
+	    		return result;
+	    	
+	    	node = this.treeNodes.getFirst(this.nodes);
+    	}
     }
 
     private boolean replace(TreeMapKey key, TreeNode<T> node, T oldValue, T value){
         
-        if(!this.treeNodes.isEquals(key, node)){
-            TreeNode<T> next = this.treeNodes.getNext(this.nodes, key, node, false);
-            return this.replace(key, next, oldValue, value);
-        }
-        else{
-        	return this.treeNodes.replaceValue(values, node, oldValue, value);
-        }
+    	for(;;){
+	        while(!this.treeNodes.isEquals(key, node))
+	            node = this.treeNodes.getNext(this.nodes, key, node, false);
+	        
+	    	boolean result = this.treeNodes.replaceValue(values, key, node, oldValue, value);
+	    	
+	    	if(this.treeNodes.isEquals(key, node))
+	    		return result;
+	    	
+	    	node = this.treeNodes.getFirst(this.nodes);
+    	}
     }
 
     private T replace(TreeMapKey key, TreeNode<T> node, T value){
         
-        if(!this.treeNodes.isEquals(key, node)){
-            TreeNode<T> next = this.treeNodes.getNext(this.nodes, key, node, false);
-            return this.replace(key, next, value);
-        }
-        else{
-        	return this.treeNodes.replaceValue(values, node, value);
-        }
+    	for(;;){
+	        while(!this.treeNodes.isEquals(key, node))
+	            node = this.treeNodes.getNext(this.nodes, key, node, false);
+	        
+	    	T result = this.treeNodes.replaceValue(values, key, node, value);
+	    	
+	    	if(this.treeNodes.isEquals(key, node))
+	    		return result;
+	    	
+	    	node = this.treeNodes.getFirst(this.nodes);
+    	}
     }
 
     private T putIfAbsent(TreeMapKey key, TreeNode<T> node, T value){
         
-        if(!this.treeNodes.isEquals(key, node)){
-            TreeNode<T> next = this.treeNodes.getNext(this.nodes, key, node, false);
-            return this.putIfAbsent(key, next, value);
-        }
-        else{
-        	return this.treeNodes.putIfAbsentValue(values, node, value);
-        }
+    	for(;;){
+	        while(!this.treeNodes.isEquals(key, node))
+	            node = this.treeNodes.getNext(this.nodes, key, node, false);
+	        
+	    	T result = this.treeNodes.putIfAbsentValue(values, key, node, value);
+	    	
+	    	if(this.treeNodes.isEquals(key, node))
+	    		return result;
+	    	
+	    	node = this.treeNodes.getFirst(this.nodes);
+    	}
     }
     
     private T get(TreeMapKey key, TreeNode<T> node){
         
-        if(!this.treeNodes.isEquals(key, node)){
-            TreeNode<T> next = this.treeNodes.getNext(this.nodes, key, node, true);
-            if(next == null)
-                return null;
-            else
-                return this.get(key, next);
-        }
+        node = this.find(key, node);
+        
+        if(node == null)
+            return null;
         else
             return this.treeNodes.getValue(this.values, node);
         
@@ -174,53 +196,87 @@ public class TreeMap<K,T>
 
     private T remove(TreeMapKey key, TreeNode<T> node){
         
-        if(!this.treeNodes.isEquals(key, node)){
-            TreeNode<T> next = this.treeNodes.getNext(this.nodes, key, node, true);
-            if(next == null)
-                return null;
-            else
-                return (T)remove(key, next);
-        }
-        else{
-        	return this.treeNodes.removeValue(this.values, node);
-        }
+    	for(;;){
+	        node = this.find(key, node);
+	        
+	        if(node == null)
+	            return null;
+	        
+	    	T result = this.treeNodes.removeValue(this.values, key, node);
+	    	
+	    	if(this.treeNodes.isEquals(key, node))
+	    		return result;
+	    	
+	    	node = this.treeNodes.getFirst(this.nodes);
+    	}
         
     }
 
     private boolean remove(TreeMapKey key, TreeNode<T> node, T oldValue){
         
-        if(!this.treeNodes.isEquals(key, node)){
-            TreeNode<T> next = this.treeNodes.getNext(this.nodes, key, node, true);
-            if(next == null)
-                return false;
-            else
-                return remove(key, next, oldValue);
-        }
-        else{
-        	return this.treeNodes.removeValue(this.values, node, oldValue);
-        }
+    	for(;;){
+	        node = this.find(key, node);
+	        
+	        if(node == null)
+	            return false;
+	        
+	    	boolean result = this.treeNodes.removeValue(this.values, key, node, oldValue);
+	    	
+	    	if(this.treeNodes.isEquals(key, node))
+	    		return result;
+	    	
+	    	node = this.treeNodes.getFirst(this.nodes);
+    	}
+        
+    }
+    
+    private TreeNode<T> find(TreeMapKey key, TreeNode<T> node){
+        
+        while(node != null && !this.treeNodes.isEquals(key, node))
+            node = this.treeNodes.getNext(this.nodes, key, node, true);
         
+        return node;
     }
     
     public T put(K key, T element){
+    	return this.putKey(key, element);
+    }
+
+    public boolean replace(K key, T oldElement, T element){
+    	return this.replaceKey(key, oldElement, element);
+    }
+
+    public T replace(K key, T element){
+    	return this.replaceKey(key, element);
+    }
+
+    public T putIfAbsent(K key, T element){
+    	return this.putIfAbsentKey(key, element);
+    }
+    
+    /*
+     * As operações abaixo aceitam qualquer chave suportada por TreeNodes.getKey.
+     */
+    
+    protected T putKey(Object key, T element){
     	TreeMapKey k = this.treeNodes.getKey(key);
         TreeNode<T> root = this.treeNodes.getFirst(this.nodes);
         return put(k, root, element);
     }
 
-    public boolean replace(K key, T oldElement, T element){
+    protected boolean replaceKey(Object key, T oldElement, T element){
     	TreeMapKey k = this.treeNodes.getKey(key);
         TreeNode<T> root = this.treeNodes.getFirst(this.nodes);
         return this.replace(k, root, oldElement, element);
     }
 
-    public T replace(K key, T element){
+    protected T replaceKey(Object key, T element){
     	TreeMapKey k = this.treeNodes.getKey(key);
         TreeNode<T> root = this.treeNodes.getFirst(this.nodes);
         return this.replace(k, root, element);
     }
 
-    public T putIfAbsent(K key, T element){
+    protected T putIfAbsentKey(Object key, T element){
     	TreeMapKey k = this.treeNodes.getKey(key);
         TreeNode<T> root = this.treeNodes.getFirst(this.nodes);
         return this.putIfAbsent(k, root, element);
@@ -287,6 +343,7 @@ public class TreeMap<K,T>
     public void clear() {
         this.values.clear();
         this.nodes.clear();
+        this.treeNodes.init(this.nodes);
     }
 
     public void destroy() {
@@ -299,6 +356,52 @@ public class TreeMap<K,T>
         this.values.flush();
     }
     
+    /*
+     * Quantidade de posições ocupadas pelos nós, incluindo as liberadas.
+     */
+    long getNodesLength(){
+    	return this.nodes.length();
+    }
+    
+    /**
+     * Obtém as chaves que iniciam com o prefixo em ordem crescente de bytes. 
+     * As chaves são obtidas à medida que o iterador avança. Alterações 
+     * simultâneas podem ou não ser refletidas.
+     * 
+     * @param prefix Prefixo.
+     * @return Iterador das chaves.
+     */
+    public Iterator<K> keys(Object prefix){
+    	return new KeyIterator(this.treeNodes.getCursor(this.nodes, this.values, prefix));
+    }
+    
+    /**
+     * Obtém os itens cujas chaves iniciam com o prefixo em ordem crescente 
+     * de bytes. Os itens são obtidos à medida que o iterador avança. 
+     * Alterações simultâneas podem ou não ser refletidas.
+     * 
+     * @param prefix Prefixo.
+     * @return Iterador dos itens.
+     */
+    public Iterator<Map.Entry<K,T>> entries(Object prefix){
+    	return new EntryIterator(this.treeNodes.getCursor(this.nodes, this.values, prefix));
+    }
+    
+    /**
+     * Remove os itens cujas chaves iniciam com o prefixo. A parte da árvore 
+     * com o prefixo é desligada antes do retorno e os itens deixam de ser 
+     * encontrados. Os valores e os nós são liberados à medida que o iterador 
+     * avança, por isso ele deve ser percorrido até o fim. Uma alteração 
+     * simultânea de uma chave com o prefixo é incluída no iterador ou 
+     * refeita após o desligamento.
+     * 
+     * @param prefix Prefixo.
+     * @return Iterador dos itens removidos.
+     */
+    public Iterator<Map.Entry<K,T>> removeByPrefix(Object prefix){
+    	return new EntryIterator(this.treeNodes.detach(this.nodes, this.values, prefix));
+    }
+    
     public Set<K> keySet() {
         throw new UnsupportedOperationException("not implemented yet");
     }
@@ -320,4 +423,76 @@ public class TreeMap<K,T>
         return this.values.isReadOnly();
     }
     
+    private class KeyIterator implements Iterator<K>{
+    	
+    	private TreeCursor<T> cursor;
+    	
+    	private boolean loaded;
+    	
+    	private boolean hasNext;
+    	
+    	public KeyIterator(TreeCursor<T> cursor){
+    		this.cursor = cursor;
+    	}
+    	
+		public boolean hasNext() {
+			if(!this.loaded){
+				this.hasNext = this.cursor.next();
+				this.loaded  = true;
+			}
+			return this.hasNext;
+		}
+
+		@SuppressWarnings("unchecked")
+		public K next() {
+			if(!this.hasNext())
+				throw new NoSuchElementException();
+			
+			this.loaded = false;
+			return (K)this.cursor.getKey();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+    }
+    
+    private class EntryIterator implements Iterator<Map.Entry<K,T>>{
+    	
+    	private TreeCursor<T> cursor;
+    	
+    	private Map.Entry<K,T> next;
+    	
+    	public EntryIterator(TreeCursor<T> cursor){
+    		this.cursor = cursor;
+    	}
+    	
+    	@SuppressWarnings("unchecked")
+		public boolean hasNext() {
+			while(this.next == null && this.cursor.next()){
+				T value = this.cursor.getValue();
+				
+				//o valor foi removido após a leitura do nó.
+				if(value != null)
+					this.next = new AbstractMap.SimpleImmutableEntry<K,T>((K)this.cursor.getKey(), value);
+			}
+			return this.next != null;
+		}
+
+		public Map.Entry<K,T> next() {
+			if(!this.hasNext())
+				throw new NoSuchElementException();
+			
+			Map.Entry<K,T> result = this.next;
+			this.next = null;
+			return result;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+    }
+    
 }
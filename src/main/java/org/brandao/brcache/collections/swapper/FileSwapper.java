@@ -222,10 +222,17 @@ public class FileSwapper implements DiskSwapper {
 
 	public void destroy() {
     	try{
-    		this.indexFile.close();
-    		this.indexFile.delete();
-    		this.dataFile.close();
-    		this.dataFile.delete();
+    		//os arquivos somente são criados na primeira gravação.
+    		if(this.indexFile != null){
+	    		this.indexFile.close();
+	    		this.indexFile.delete();
+    		}
+    		
+    		if(this.dataFile != null){
+	    		this.dataFile.close();
+	    		this.dataFile.delete();
+    		}
+    		
     		this.hasCreatePath = false;
     	}
     	catch(Throwable e){
@@ -0,0 +1,293 @@
+package org.brandao.brcache.collections.treehugemap;
+
+import org.brandao.brcache.collections.ReferenceCollection;
+
+/**
+ * Base dos nós de uma árvore de bytes.
+ * <p>
+ * A quantidade de filhos define o tipo do nó ({@link CharNode4},
+ * {@link CharNode16}, {@link CharNode48} e {@link CharNode}). Quando um nó
+ * fica cheio, ele é substituído por um nó maior com a mesma identificação.
+ * Quando perde filhos, é substituído por um nó menor. As referências ao nó
+ * são feitas pela identificação, por isso a troca é transparente.
+ * </p>
+ * <p>
+ * Os filhos são incluídos sem alterar as posições já ocupadas para que uma
+ * leitura simultânea não perca um filho existente.
+ * </p>
+ * <p>
+ * O nó possui um rótulo com os bytes que seguem o byte usado para chegar
+ * até ele. Desta forma, uma sequência de nós com um único filho é
+ * representada por um único nó. A profundidade é o tamanho da chave
+ * representada pelo nó e não se altera quando o rótulo é dividido.
+ * </p>
+ *
+ * @author Brandao
+ *
+ * @param <T> Tipo do valor.
+ */
+public abstract class AbstractCharNode<T> implements TreeNode<T>{
+
+	private static final long serialVersionUID = -1340578023418817153L;
+
+	/**
+	 * Quantidade de valores de um byte.
+	 */
+	public static final int LEN_NODES       = 256;
+
+	/**
+	 * Tamanho estimado dos dados comuns a todos os nós, considerando um
+	 * rótulo de 16 bytes.
+	 */
+	public static final int HEADER_SIZE     = 56;
+
+	private static final byte[] EMPTY_LABEL = new byte[0];
+
+    protected long id;
+
+    protected volatile long valueId;
+
+    protected byte[] label;
+
+    protected int depth;
+
+    public AbstractCharNode(){
+    	this.id      = -1;
+    	this.valueId = -1;
+    	this.label   = EMPTY_LABEL;
+    	this.depth   = 0;
+    }
+
+    protected AbstractCharNode(AbstractCharNode<T> node){
+    	this.id      = node.id;
+    	this.valueId = node.valueId;
+    	this.label   = node.label;
+    	this.depth   = node.depth;
+    }
+
+    /**
+     * Cria um nó do menor tipo que comporta a quantidade de filhos
+     * informada. Os dados do nó de origem são copiados, exceto os filhos.
+     *
+     * @param children Quantidade de filhos.
+     * @param node Nó de origem.
+     * @return Novo nó.
+     */
+    protected static <T> AbstractCharNode<T> create(int children, AbstractCharNode<T> node){
+    	if(children <= CharNode4.CAPACITY)
+    		return new CharNode4<T>(node);
+    	else
+    	if(children <= CharNode16.CAPACITY)
+    		return new CharNode16<T>(node);
+    	else
+    	if(children <= CharNode48.CAPACITY)
+    		return new CharNode48<T>(node);
+    	else
+    		return new CharNode<T>(node);
+    }
+
+    public void setNext(ReferenceCollection<TreeNode<T>> nodes, Object key, TreeNode<T> node){
+    	int b = (Byte)key & 0xff;
+    	AbstractCharNode<T> current = this.putNext(b, node.getId());
+    	nodes.set(this.id, current);
+    }
+
+    public void removeNext(ReferenceCollection<TreeNode<T>> nodes, Object key){
+    	int b = (Byte)key & 0xff;
+
+    	if(this.getNextId(b) == -1)
+    		return;
+
+    	AbstractCharNode<T> current = this.deleteNext(b);
+    	nodes.set(this.id, current);
+    }
+
+    public TreeNode<T> getNext(ReferenceCollection<TreeNode<T>> nodes, Object key) {
+    	long next = this.getNextId((Byte)key & 0xff);
+    	return next == -1? null : nodes.get(next);
+    }
+
+    /**
+     * Obtém a identificação do filho associado a um byte.
+     *
+     * @param b Byte entre 0 e 255.
+     * @return Identificação ou -1.
+     */
+    protected abstract long getNextId(int b);
+
+    /**
+     * Associa um filho a um byte.
+     *
+     * @param b Byte entre 0 e 255.
+     * @param next Identificação do filho.
+     * @return O próprio nó ou o nó maior que o substitui.
+     */
+    protected abstract AbstractCharNode<T> putNext(int b, long next);
+
+    /**
+     * Remove o filho associado a um byte. O nó não é alterado. É criado
+     * um novo nó, do menor tipo que comporta os filhos restantes, para que uma
+     * leitura simultânea não encontre o nó em um estado intermediário.
+     *
+     * @param b Byte entre 0 e 255.
+     * @return Nó que substitui o nó atual.
+     */
+    protected AbstractCharNode<T> deleteNext(int b){
+    	AbstractCharNode<T> node = create(this.getChildren() - 1, this);
+    	return this.copyTo(node, b);
+    }
+
+    /**
+     * Cria uma cópia do nó com outro rótulo. O nó não é alterado.
+     *
+     * @param label Rótulo.
+     * @return Cópia do nó.
+     */
+    public AbstractCharNode<T> copy(byte[] label){
+    	AbstractCharNode<T> node = create(this.getChildren(), this);
+    	node.label = label;
+    	return this.copyTo(node, -1);
+    }
+
+    /**
+     * Obtém a quantidade de filhos.
+     *
+     * @return Quantidade.
+     */
+    public abstract int getChildren();
+
+    /**
+     * Copia os filhos do nó.
+     *
+     * @param keys Bytes.
+     * @param nexts Identificações dos filhos.
+     * @return Quantidade de filhos copiados.
+     */
+    protected abstract int copyChildren(byte[] keys, long[] nexts);
+
+    /**
+     * Copia os filhos para outro nó, exceto o filho associado ao byte
+     * informado.
+     *
+     * @param node Nó de destino.
+     * @param skip Byte ignorado ou -1.
+     * @return Nó de destino.
+     */
+    protected AbstractCharNode<T> copyTo(AbstractCharNode<T> node, int skip){
+    	int size     = this.getChildren();
+    	byte[] keys  = new byte[size];
+    	long[] nexts = new long[size];
+    	int count    = this.copyChildren(keys, nexts);
+
+    	for(int i=0;i<count;i++){
+    		int b = keys[i] & 0xff;
+    		if(b != skip){
+    			node = node.putNext(b, nexts[i]);
+    		}
+    	}
+
+    	return node;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getValueId() {
+        return valueId;
+    }
+
+    public byte[] getLabel() {
+    	return label;
+    }
+
+    public void setLabel(byte[] label) {
+    	this.label = label;
+    }
+
+    public int getDepth() {
+    	return depth;
+    }
+
+    public void setDepth(int depth) {
+    	this.depth = depth;
+    }
+
+    public T setValue(ReferenceCollection<T> values, T value) {
+        if(this.valueId == -1){
+        	this.valueId = values.insert(value);
+            return null;
+        }
+        else{
+    		T old = values.get(valueId);
+            values.set(this.valueId, value);
+            return old;
+        }
+    }
+
+    public T removeValue(ReferenceCollection<T> values) {
+        if(this.valueId != -1){
+            T old = values.set(this.valueId, null);
+            this.valueId = -1;
+            return old;
+        }
+        else{
+        	return null;
+        }
+    }
+
+    public T getValue(ReferenceCollection<T> values) {
+    	long id = this.valueId;
+        if(id != -1)
+            return values.get(id);
+        else
+            return null;
+    }
+
+	public boolean replaceValue(ReferenceCollection<T> values, T oldValue,
+			T value) {
+        if(this.valueId != -1){
+            return values.replace(this.valueId, oldValue, value);
+        }
+        else{
+        	return false;
+        }
+	}
+
+	public T replaceValue(ReferenceCollection<T> values, T value) {
+        if(this.valueId != -1){
+            return values.replace(this.valueId, value);
+        }
+        else{
+        	return null;
+        }
+	}
+
+	public T putIfAbsentValue(ReferenceCollection<T> values, T value) {
+        if(this.valueId != -1){
+            return values.putIfAbsent(this.valueId, value);
+        }
+        else{
+        	this.valueId = values.insert(value);
+        	return null;
+        }
+	}
+
+	public boolean removeValue(ReferenceCollection<T> values, T oldValue) {
+        if(this.valueId != -1){
+            boolean success = values.remove(this.valueId, oldValue);
+            if(success){
+            	this.valueId = -1;
+            }
+            return success;
+        }
+        else{
+        	return false;
+        }
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.brandao.brcache.collections.treehugemap;
+
+/**
+ * Nó com até {@link #CAPACITY} filhos. Os bytes são pesquisados
+ * sequencialmente.
+ *
+ * @author Brandao
+ *
+ * @param <T> Tipo do valor.
+ */
+public class CharNode4<T> extends AbstractCharNode<T>{
+
+	private static final long serialVersionUID = 6030712547226498375L;
+
+	public static final int CAPACITY  = 4;
+
+    public static final int DATA_SIZE = CAPACITY*9 + HEADER_SIZE;
+
+    private byte[] keys;
+
+    private long[] nextNodes;
+
+    private volatile int count;
+
+    public CharNode4(){
+    	super();
+    	this.keys      = new byte[CAPACITY];
+    	this.nextNodes = new long[CAPACITY];
+    	this.count     = 0;
+    }
+
+    public CharNode4(AbstractCharNode<T> node){
+    	super(node);
+    	this.keys      = new byte[CAPACITY];
+    	this.nextNodes = new long[CAPACITY];
+    	this.count     = 0;
+    }
+
+    protected long getNextId(int b){
+    	byte c   = (byte)b;
+    	int size = this.count;
+    	for(int i=0;i<size;i++){
+    		if(this.keys[i] == c)
+    			return this.nextNodes[i];
+    	}
+    	return -1;
+    }
+
+    protected AbstractCharNode<T> putNext(int b, long next){
+    	byte c   = (byte)b;
+    	int size = this.count;
+    	for(int i=0;i<size;i++){
+    		if(this.keys[i] == c){
+    			this.nextNodes[i] = next;
+    			this.count        = size;
+    			return this;
+    		}
+    	}
+
+    	if(size == CAPACITY)
+    		return this.copyTo(new CharNode16<T>(this), -1).putNext(b, next);
+
+    	this.keys[size]      = c;
+    	this.nextNodes[size] = next;
+    	this.count           = size + 1;
+    	return this;
+    }
+
+    public int getChildren(){
+    	return this.count;
+    }
+
+    protected int copyChildren(byte[] keys, long[] nexts){
+    	int size = this.count;
+    	System.arraycopy(this.keys, 0, keys, 0, size);
+    	System.arraycopy(this.nextNodes, 0, nexts, 0, size);
+    	return size;
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.brandao.brcache.collections.treehugemap;
+
+/**
+ * Nó com até {@link #CAPACITY} filhos. A posição do filho é obtida
+ * diretamente a partir do byte.
+ *
+ * @author Brandao
+ *
+ * @param <T> Tipo do valor.
+ */
+public class CharNode48<T> extends AbstractCharNode<T>{
+
+	private static final long serialVersionUID = 2917310557013476440L;
+
+	public static final int CAPACITY  = 48;
+
+    public static final int DATA_SIZE = LEN_NODES + CAPACITY*8 + HEADER_SIZE;
+
+    /**
+     * Posição do filho mais um. Zero indica que não existe filho.
+     */
+    private byte[] index;
+
+    private long[] nextNodes;
+
+    private volatile int count;
+
+    public CharNode48(){
+    	super();
+    	this.index     = new byte[LEN_NODES];
+    	this.nextNodes = new long[CAPACITY];
+    	this.count     = 0;
+    }
+
+    public CharNode48(AbstractCharNode<T> node){
+    	super(node);
+    	this.index     = new byte[LEN_NODES];
+    	this.nextNodes = new long[CAPACITY];
+    	this.count     = 0;
+    }
+
+    protected long getNextId(int b){
+    	int size = this.count;
+    	int slot = this.index[b];
+    	return slot == 0 || slot > size? -1 : this.nextNodes[slot - 1];
+    }
+
+    protected AbstractCharNode<T> putNext(int b, long next){
+    	int size = this.count;
+    	int slot = this.index[b];
+
+    	if(slot != 0){
+    		this.nextNodes[slot - 1] = next;
+    		this.count               = size;
+    		return this;
+    	}
+
+    	if(size == CAPACITY)
+    		return this.copyTo(new CharNode<T>(this), -1).putNext(b, next);
+
+    	this.nextNodes[size] = next;
+    	this.index[b]        = (byte)(size + 1);
+    	this.count           = size + 1;
+    	return this;
+    }
+
+    public int getChildren(){
+    	return this.count;
+    }
+
+    protected int copyChildren(byte[] keys, long[] nexts){
+    	int size  = this.count;
+    	int total = 0;
+    	for(int b=0;b<LEN_NODES && total < size;b++){
+    		int slot = this.index[b];
+    		if(slot != 0 && slot <= size){
+    			keys[total]  = (byte)b;
+    			nexts[total] = this.nextNodes[slot - 1];
+    			total++;
+    		}
+    	}
+    	return total;
+    }
+
+}
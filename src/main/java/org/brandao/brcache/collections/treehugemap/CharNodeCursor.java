@@ -0,0 +1,262 @@
+package org.brandao.brcache.collections.treehugemap;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+
+import org.brandao.brcache.collections.ReferenceCollection;
+import org.brandao.brcache.collections.RouletteLock;
+
+/**
+ * Cursor de uma árvore de bytes.
+ * <p>
+ * A subárvore é percorrida em profundidade com os filhos em ordem crescente
+ * de byte. Desta forma, as chaves são obtidas em ordem. Somente o caminho
+ * até o nó atual é mantido.
+ * </p>
+ * <p>
+ * A chave é montada com os rótulos dos nós do caminho e decodificada em
+ * UTF-8. Um filho cuja profundidade não corresponde ao caminho foi dividido
+ * após a leitura do pai e é obtido novamente pelo pai.
+ * </p>
+ * <p>
+ * Em uma parte desligada da árvore, cada nó é lido novamente com o seu 
+ * bloqueio. Com o bloqueio, os filhos são copiados, o valor é removido e o
+ * nó é excluído. As alterações feitas antes do bloqueio são vistas pelo 
+ * cursor e as feitas depois encontram o nó excluído.
+ * </p>
+ *
+ * @author Brandao
+ *
+ * @param <T> Tipo do valor.
+ */
+class CharNodeCursor<T> implements TreeCursor<T>{
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private ReferenceCollection<TreeNode<T>> nodes;
+
+	private ReferenceCollection<T> values;
+
+	/**
+	 * Bloqueios dos nós. Somente é usado em uma parte desligada da árvore.
+	 */
+	private RouletteLock locks;
+
+	private AbstractCharNode<T> first;
+
+	private AbstractCharNode<T> current;
+
+	private Frame top;
+
+	private byte[] key;
+
+	private int length;
+
+	/**
+	 * Valor removido do nó atual.
+	 */
+	private T value;
+
+	/**
+	 * Cria um cursor a partir de um nó.
+	 *
+	 * @param nodes Nós da árvore.
+	 * @param values Valores da árvore.
+	 * @param node Nó inicial.
+	 * @param key Chave do nó inicial.
+	 */
+	public CharNodeCursor(ReferenceCollection<TreeNode<T>> nodes,
+			ReferenceCollection<T> values, AbstractCharNode<T> node, byte[] key){
+		this(nodes, values, null, node, key);
+	}
+
+	/**
+	 * Cria um cursor que remove os nós de uma parte desligada da árvore.
+	 *
+	 * @param nodes Nós da árvore.
+	 * @param values Valores da árvore.
+	 * @param locks Bloqueios dos nós.
+	 * @param node Nó desligado.
+	 * @param key Chave do nó desligado.
+	 */
+	CharNodeCursor(ReferenceCollection<TreeNode<T>> nodes, ReferenceCollection<T> values,
+			RouletteLock locks, AbstractCharNode<T> node, byte[] key){
+		this.nodes  = nodes;
+		this.values = values;
+		this.locks  = locks;
+		this.first  = node;
+		this.key    = Arrays.copyOf(key, Math.max(16, key.length << 1));
+		this.length = key.length;
+	}
+
+	public boolean next(){
+		if(this.first != null){
+			AbstractCharNode<T> node = this.first;
+			this.first = null;
+
+			if(this.visit(node, this.length))
+				return true;
+		}
+
+		while(this.top != null){
+			Frame frame = this.top;
+
+			if(frame.index == frame.count){
+				this.top = frame.parent;
+				continue;
+			}
+
+			int b     = frame.keys[frame.index] & 0xff;
+			long next = frame.nexts[frame.index];
+			frame.index++;
+
+			AbstractCharNode<T> node = this.getChild(frame, b, next);
+
+			if(node == null)
+				continue;
+
+			byte[] label = node.getLabel();
+			int length   = frame.length + 1 + label.length;
+
+			if(length > this.key.length)
+				this.key = Arrays.copyOf(this.key, length << 1);
+
+			this.key[frame.length] = (byte)b;
+			System.arraycopy(label, 0, this.key, frame.length + 1, label.length);
+
+			if(this.visit(node, length))
+				return true;
+		}
+
+		this.current = null;
+		this.value   = null;
+		return false;
+	}
+
+	public Object getKey(){
+		return new String(this.key, 0, this.length, UTF8);
+	}
+
+	public TreeNode<T> getNode(){
+		return this.current;
+	}
+
+	public T getValue(){
+		if(this.locks != null)
+			return this.value;
+
+		return this.current == null? null : this.current.getValue(this.values);
+	}
+
+	/*
+	 * Registra o nó como atual e inclui os seus filhos no caminho. Retorna
+	 * true se o nó possuir valor.
+	 */
+	private boolean visit(AbstractCharNode<T> node, int length){
+		if(this.locks != null)
+			return this.release(node, length);
+
+		this.push(node, length);
+		return node.getValueId() != -1;
+	}
+
+	/*
+	 * Remove o valor e o nó desligado com o bloqueio do nó.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean release(AbstractCharNode<T> node, int length){
+		long id   = node.getId();
+		Lock lock = this.locks.getLock(id);
+		lock.lock();
+		try{
+			node = (AbstractCharNode<T>)this.nodes.get(id);
+			this.push(node, length);
+			this.value = node.removeValue(this.values);
+			this.nodes.remove(id);
+		}
+		finally{
+			lock.unlock();
+		}
+
+		return this.value != null;
+	}
+
+	private void push(AbstractCharNode<T> node, int length){
+		this.current = node;
+		this.length  = length;
+
+		if(node.getChildren() > 0){
+			Frame frame  = new Frame();
+			frame.id     = node.getId();
+			frame.length = length;
+			frame.keys   = new byte[AbstractCharNode.LEN_NODES];
+			frame.nexts  = new long[AbstractCharNode.LEN_NODES];
+			frame.count  = node.copyChildren(frame.keys, frame.nexts);
+			frame.parent = this.top;
+			sort(frame.keys, frame.nexts, frame.count);
+			this.top = frame;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private AbstractCharNode<T> getChild(Frame parent, int b, long id){
+		for(;;){
+			AbstractCharNode<T> node =
+					id == -1? null : (AbstractCharNode<T>)this.nodes.get(id);
+
+			//os filhos de um nó desligado foram copiados com o seu bloqueio.
+			if(node == null || this.locks != null ||
+					parent.length + 1 + node.getLabel().length == node.getDepth())
+				return node;
+
+			Thread.yield();
+			AbstractCharNode<T> parentNode = (AbstractCharNode<T>)this.nodes.get(parent.id);
+
+			//o pai foi desligado e excluído.
+			if(parentNode == null)
+				return null;
+
+			id = parentNode.getNextId(b);
+		}
+	}
+
+	/*
+	 * Os nós pequenos não mantêm os filhos em ordem.
+	 */
+	private static void sort(byte[] keys, long[] nexts, int count){
+		for(int i=1;i<count;i++){
+			byte k = keys[i];
+			long n = nexts[i];
+			int j  = i - 1;
+
+			while(j >= 0 && (keys[j] & 0xff) > (k & 0xff)){
+				keys[j + 1]  = keys[j];
+				nexts[j + 1] = nexts[j];
+				j--;
+			}
+
+			keys[j + 1]  = k;
+			nexts[j + 1] = n;
+		}
+	}
+
+	private static class Frame{
+
+		public long id;
+
+		public int length;
+
+		public byte[] keys;
+
+		public long[] nexts;
+
+		public int count;
+
+		public int index;
+
+		public Frame parent;
+
+	}
+
+}
@@ -17,12 +17,36 @@
 
 package org.brandao.brcache.collections.treehugemap;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
+import org.brandao.brcache.collections.ByteKey;
 import org.brandao.brcache.collections.ReferenceCollection;
 import org.brandao.brcache.collections.RouletteLock;
 
 /**
+ * Árvore de bytes com compressão de caminho. Cada nó possui um rótulo
+ * com a parte da chave que não é compartilhada com outras chaves. O rótulo
+ * é dividido quando uma nova chave diverge no meio dele.
+ * <p>
+ * A divisão não altera a identificação do nó dividido. É criado um nó
+ * intermediário com o início do rótulo e o nó dividido é substituído por
+ * uma cópia com o restante do rótulo. Uma leitura que percorre o caminho
+ * antigo identifica a divisão pela profundidade do nó e reinicia a busca
+ * pela raiz.
+ * </p>
+ * <p>
+ * Os nós desligados por {@link #detach(ReferenceCollection, ReferenceCollection, Object)}
+ * são excluídos à medida que o cursor avança. Cada desligamento incrementa
+ * um contador. Uma alteração feita com o bloqueio de um nó compara o 
+ * contador com o valor lido no início da busca. Se forem diferentes, o nó 
+ * pode ter sido excluído e a busca é reiniciada pela raiz.
+ * </p>
+ * <p>
+ * A chave pode ser uma <code>String</code>, lida em UTF-8, um 
+ * <code>byte[]</code> ou um <code>ByteBuffer</code> (ver {@link ByteKey}).
+ * </p>
  *
  * @author Brandao
  */
@@ -34,18 +58,25 @@ public class StringTreeNodes<T> implements TreeNodes<T>{
 	
 	private long firstNodeId;
 	
+	private ReferenceCollection<TreeNode<T>> nodes;
+	
+	/**
+	 * Quantidade de partes desligadas da árvore.
+	 */
+	private AtomicLong detached;
+	
 	public StringTreeNodes(){
 		this.locks       = new RouletteLock();
 		this.firstNodeId = -1;
+		this.detached    = new AtomicLong(0);
 	}
 	
 	public TreeMapKey getKey(Object key) {
-    	String strKey = (String)key;
-    	strKey = strKey.toLowerCase();
         StringTreeMapKey k = new StringTreeMapKey();
-        k.index = strKey.toCharArray();
-        k.limit = k.index.length;
-        k.pos   = 0;
+        k.index = ByteKey.valueOf(key);
+        k.limit    = k.index.length();
+        k.pos      = 0;
+        k.detached = this.detached.get();
         return k;
     }
 
@@ -58,21 +89,30 @@ public class StringTreeNodes<T> implements TreeNodes<T>{
 		return node.getValue(values);
     }
     
-    public T setValue(ReferenceCollection<T> values, TreeNode<T> node, T value){
+    public T setValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T value){
     	Lock lock = this.locks.getLock(node.getId());
     	lock.lock();
     	try{
-    		return node.setValue(values, value);
+    		if(this.isDetached((StringTreeMapKey)key))
+    			return null;
+    		
+    		node = this.nodes.get(node.getId());
+    		T result = node.setValue(values, value);
+    		this.nodes.set(node.getId(), node);
+    		return result;
     	}
     	finally{
     		lock.unlock();
     	}
     }
     
-    public boolean replaceValue(ReferenceCollection<T> values, TreeNode<T> node, T oldValue, T value){
+    public boolean replaceValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T oldValue, T value){
     	Lock lock = this.locks.getLock(node.getId());
     	lock.lock();
     	try{
+    		if(this.isDetached((StringTreeMapKey)key))
+    			return false;
+    		
     		return node.replaceValue(values, oldValue, value);
     	}
     	finally{
@@ -80,10 +120,13 @@ public class StringTreeNodes<T> implements TreeNodes<T>{
     	}
     }
 
-    public T replaceValue(ReferenceCollection<T> values, TreeNode<T> node, T value){
+    public T replaceValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T value){
     	Lock lock = this.locks.getLock(node.getId());
     	lock.lock();
     	try{
+    		if(this.isDetached((StringTreeMapKey)key))
+    			return null;
+    		
     		return node.replaceValue(values, value);
     	}
     	finally{
@@ -91,33 +134,51 @@ public class StringTreeNodes<T> implements TreeNodes<T>{
     	}
     }
 
-    public T putIfAbsentValue(ReferenceCollection<T> values, TreeNode<T> node, T value){
+    public T putIfAbsentValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T value){
     	Lock lock = this.locks.getLock(node.getId());
     	lock.lock();
     	try{
-    		return node.putIfAbsentValue(values, value);
+    		if(this.isDetached((StringTreeMapKey)key))
+    			return null;
+    		
+    		node = this.nodes.get(node.getId());
+    		T result = node.putIfAbsentValue(values, value);
+    		this.nodes.set(node.getId(), node);
+    		return result;
     	}
     	finally{
     		lock.unlock();
     	}
     }
     
-    public T removeValue(ReferenceCollection<T> values, TreeNode<T> node) {
+    public T removeValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node) {
     	Lock lock = this.locks.getLock(node.getId());
     	lock.lock();
     	try{
-			return node.removeValue(values);
+    		if(this.isDetached((StringTreeMapKey)key))
+    			return null;
+    		
+    		node = this.nodes.get(node.getId());
+    		T result = node.removeValue(values);
+    		this.nodes.set(node.getId(), node);
+    		return result;
     	}
     	finally{
     		lock.unlock();
     	}
     }
 
-    public boolean removeValue(ReferenceCollection<T> values, TreeNode<T> node, T oldValue) {
+    public boolean removeValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T oldValue) {
     	Lock lock = this.locks.getLock(node.getId());
     	lock.lock();
     	try{
-    		return node.removeValue(values, oldValue);
+    		if(this.isDetached((StringTreeMapKey)key))
+    			return false;
+    		
+    		node = this.nodes.get(node.getId());
+    		boolean result = node.removeValue(values, oldValue);
+    		this.nodes.set(node.getId(), node);
+    		return result;
     	}
     	finally{
     		lock.unlock();
@@ -127,37 +188,276 @@ public class StringTreeNodes<T> implements TreeNodes<T>{
     public TreeNode<T> getNext(ReferenceCollection<TreeNode<T>> nodes, TreeMapKey key, TreeNode<T> node, boolean read) {
         StringTreeMapKey k = (StringTreeMapKey)key;
         
-        char i = k.index[k.pos++];
-        TreeNode<T> next = node.getNext(nodes, i);
+        Byte i = Byte.valueOf((byte)k.index.byteAt(k.pos));
+        AbstractCharNode<T> next = (AbstractCharNode<T>)node.getNext(nodes, i);
         
-        if(next == null && !read){
-        	Lock lock = this.locks.getLock(node.getId());
-        	lock.lock();
-        	try{
-                node = nodes.get(node.getId());
-                next = node.getNext(nodes, i);
-                
-                if(next != null)
-                    return next;
-                
-                CharNode<T> nextNode = new CharNode<T>();
-                
+        if(next != null){
+        	int match = this.match(k, next);
+        	
+        	if(match == -1)
+        		return this.restart(nodes, k);
+        	
+        	if(match == next.getLabel().length){
+        		k.pos += match + 1;
+        		return next;
+        	}
+        }
+        
+        if(read)
+        	return null;
+        
+    	Lock lock = this.locks.getLock(node.getId());
+    	lock.lock();
+    	try{
+    		if(this.isDetached(k))
+    			return this.getFirst(nodes);
+    		
+            node = nodes.get(node.getId());
+            next = (AbstractCharNode<T>)node.getNext(nodes, i);
+            
+            if(next == null){
+            	CharNode4<T> nextNode = new CharNode4<T>();
+            	nextNode.setLabel(k.index.toArray(k.pos + 1, k.limit));
+            	nextNode.setDepth(k.limit);
+            	
                 long id = nodes.insert(nextNode);
                 
                 nextNode.setId(id);
-                next = nextNode;
+                nodes.set(id, nextNode);
                 
                 node.setNext(nodes, i, nextNode);
+                k.pos = k.limit;
+                return nextNode;
+            }
+            
+            Lock nextLock = this.locks.getLock(next.getId());
+            
+            if(nextLock.tryLock()){
+            	try{
+            		return this.split(nodes, k, node, next);
+            	}
+            	finally{
+            		nextLock.unlock();
+            	}
+            }
+    	}
+    	finally{
+    		lock.unlock();
+    	}
+    	
+    	//O nó está bloqueado por outro processo. O bloqueio do pai é liberado e 
+    	//os dois bloqueios são obtidos em ordem. Enquanto o pai estiver 
+    	//liberado, o filho pode ser substituído. Neste caso, a busca continua 
+    	//pelo pai.
+    	long parentId = node.getId();
+    	long nextId   = next.getId();
+    	
+    	this.locks.lock(parentId, nextId);
+    	try{
+    		if(this.isDetached(k))
+    			return this.getFirst(nodes);
+    		
+    		node = nodes.get(parentId);
+    		next = (AbstractCharNode<T>)node.getNext(nodes, i);
+    		
+    		if(next == null || next.getId() != nextId)
+    			return node;
+    		
+    		return this.split(nodes, k, node, next);
+    	}
+    	finally{
+    		this.locks.unlock(parentId, nextId);
+    	}
+        
+    }
+
+    /*
+     * Divide o rótulo do nó no ponto em que a chave diverge. Deve ser executado
+     * com os bloqueios do nó pai e do nó.
+     */
+    private TreeNode<T> split(ReferenceCollection<TreeNode<T>> nodes, 
+    		StringTreeMapKey k, TreeNode<T> parent, AbstractCharNode<T> node){
+    	
+		node = (AbstractCharNode<T>)nodes.get(node.getId());
+    	int match = this.match(k, node);
+    	
+    	if(match == -1)
+    		return this.restart(nodes, k);
+    	
+		byte[] label = node.getLabel();
+		
+    	if(match == label.length){
+    		k.pos += match + 1;
+    		return node;
+    	}
+    	
+    	CharNode4<T> middle = new CharNode4<T>();
+    	middle.setLabel(Arrays.copyOfRange(label, 0, match));
+    	middle.setDepth(k.pos + 1 + match);
+    	
+    	long id = nodes.insert(middle);
+    	middle.setId(id);
+    	middle.putNext(label[match] & 0xff, node.getId());
+    	nodes.set(id, middle);
+    	
+    	AbstractCharNode<T> copy = node.copy(Arrays.copyOfRange(label, match + 1, label.length));
+    	nodes.set(copy.getId(), copy);
+    	
+    	parent.setNext(nodes, Byte.valueOf((byte)k.index.byteAt(k.pos)), middle);
+    	
+		k.pos += match + 1;
+		return middle;
+    }
+    
+    /*
+     * Retorna a quantidade de bytes do rótulo que coincidem com a chave
+     * ou -1 se o nó foi dividido após a leitura do nó pai.
+     */
+    private int match(StringTreeMapKey k, AbstractCharNode<T> node){
+    	byte[] label = node.getLabel();
+    	int start    = k.pos + 1;
+    	
+    	if(start + label.length != node.getDepth())
+    		return -1;
+    	
+    	int max = Math.min(label.length, k.limit - start);
+    	int i   = 0;
+    	
+    	while(i < max && (label[i] & 0xff) == k.index.byteAt(start + i))
+    		i++;
+    	
+    	return i;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public TreeCursor<T> getCursor(ReferenceCollection<TreeNode<T>> nodes, 
+    		ReferenceCollection<T> values, Object prefix){
+    	StringTreeMapKey k = (StringTreeMapKey)this.getKey(prefix);
+    	
+    	if(k.limit == 0)
+    		return new CharNodeCursor<T>(nodes, values, (AbstractCharNode<T>)this.getFirst(nodes), new byte[0]);
+    	
+    	AbstractCharNode<T> node = this.getPrefix(nodes, k);
+    	return new CharNodeCursor<T>(nodes, values, node, this.getPath(k, node));
+    }
+    
+    /*
+     * O nó que contém o prefixo é desligado do pai com o bloqueio do pai. 
+     * Com o bloqueio, o nó não pode ser dividido. Se ele foi dividido antes
+     * do bloqueio, a busca é refeita. O contador é incrementado após o 
+     * desligamento: uma busca que leu o valor novo não alcança os nós 
+     * desligados.
+     */
+    @SuppressWarnings("unchecked")
+    public TreeCursor<T> detach(ReferenceCollection<TreeNode<T>> nodes, 
+    		ReferenceCollection<T> values, Object prefix){
+    	StringTreeMapKey k = (StringTreeMapKey)this.getKey(prefix);
+    	
+    	if(k.limit == 0)
+    		throw new IllegalArgumentException("empty prefix");
+    	
+    	for(;;){
+    		k.pos = 0;
+    		AbstractCharNode<T> node = this.getPrefix(nodes, k);
+    		
+    		if(node == null)
+    			return new CharNodeCursor<T>(nodes, values, null, new byte[0]);
+    		
+    		Byte i    = Byte.valueOf((byte)k.index.byteAt(k.pos));
+        	Lock lock = this.locks.getLock(k.parent);
+        	lock.lock();
+        	try{
+        		TreeNode<T> parent  = nodes.get(k.parent);
+        		TreeNode<T> current = parent.getNext(nodes, i);
+        		
+        		if(current != null && current.getId() == node.getId()){
+        			parent.removeNext(nodes, i);
+        			this.detached.incrementAndGet();
+        			return new CharNodeCursor<T>(nodes, values, this.locks, 
+        					(AbstractCharNode<T>)current, this.getPath(k, (AbstractCharNode<T>)current));
+        		}
         	}
         	finally{
         		lock.unlock();
         	}
+    	}
+    }
+    
+    /*
+     * Obtém o nó mais próximo da raiz cuja chave inicia com o prefixo ou null
+     * se nenhuma chave iniciar com o prefixo. Ao final, k.pos indica o byte 
+     * que liga o nó ao pai e k.parent a identificação do pai.
+     */
+    @SuppressWarnings("unchecked")
+    private AbstractCharNode<T> getPrefix(ReferenceCollection<TreeNode<T>> nodes, StringTreeMapKey k){
+    	TreeNode<T> node = this.getFirst(nodes);
+    	
+    	for(;;){
+    		AbstractCharNode<T> next = 
+    				(AbstractCharNode<T>)node.getNext(nodes, Byte.valueOf((byte)k.index.byteAt(k.pos)));
+    		
+    		if(next == null)
+    			return null;
+    		
+        	int match = this.match(k, next);
         	
-        }
-        
-        return next;
+        	if(match == -1){
+        		node = this.restart(nodes, k);
+        		continue;
+        	}
+        	
+        	int start = k.pos + 1;
+        	int size  = next.getLabel().length;
+        	
+        	if(match < Math.min(size, k.limit - start))
+        		return null;
+        	
+        	if(start + size >= k.limit){
+        		k.parent = node.getId();
+        		return next;
+        	}
+        	
+        	k.pos = start + size;
+        	node  = next;
+    	}
     }
-
+    
+    /*
+     * Obtém a chave do nó encontrado por getPrefix.
+     */
+    private byte[] getPath(StringTreeMapKey k, AbstractCharNode<T> node){
+    	
+    	if(node == null)
+    		return new byte[0];
+    	
+    	byte[] path  = k.index.toArray(0, k.pos + 1);
+    	byte[] label = node.getLabel();
+    	byte[] key   = Arrays.copyOf(path, path.length + label.length);
+    	System.arraycopy(label, 0, key, path.length, label.length);
+    	return key;
+    }
+    
+    /*
+     * Verifica, com o bloqueio de um nó, se uma parte da árvore foi desligada
+     * após o início da busca. Neste caso, a busca é reiniciada pela raiz. A 
+     * raiz nunca é desligada.
+     */
+    private boolean isDetached(StringTreeMapKey k){
+    	long detached = this.detached.get();
+    	
+    	if(k.limit == 0 || k.detached == detached)
+    		return false;
+    	
+    	k.detached = detached;
+    	k.pos      = 0;
+    	return true;
+    }
+    
+    private TreeNode<T> restart(ReferenceCollection<TreeNode<T>> nodes, StringTreeMapKey k){
+    	k.pos = 0;
+    	return this.getFirst(nodes);
+    }
+    
     public TreeNode<T> getFirst(ReferenceCollection<TreeNode<T>> nodes) {
         return this.firstNodeId == -1? null : nodes.get(this.firstNodeId);
     }
@@ -166,19 +466,27 @@ public class StringTreeNodes<T> implements TreeNodes<T>{
         if(!nodes.isEmpty())
             throw new IllegalStateException();
         
-        CharNode<T> node = new CharNode<T>();
+        CharNode4<T> node = new CharNode4<T>();
         node.setId(nodes.insert(node));
         nodes.set(node.getId(), node);
         this.firstNodeId = node.getId();
+        this.nodes       = nodes;
     }
     
     private static class StringTreeMapKey implements TreeMapKey{
         
-        public char[] index;
+        public ByteKey index;
         
         public int pos;
         
         public int limit;
         
+        public long parent;
+        
+        /**
+         * Quantidade de partes desligadas no início da busca.
+         */
+        public long detached;
+        
     }
 }
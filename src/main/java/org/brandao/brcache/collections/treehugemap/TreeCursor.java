@@ -0,0 +1,43 @@
+package org.brandao.brcache.collections.treehugemap;
+
+/**
+ * Percorre, em ordem, os nós de uma parte da árvore. Somente os nós que
+ * possuem valor são visitados. Os nós são obtidos à medida que o cursor
+ * avança.
+ *
+ * @author Brandao
+ *
+ * @param <T> Tipo do valor.
+ */
+public interface TreeCursor<T> {
+
+	/**
+	 * Avança para o próximo nó.
+	 *
+	 * @return <code>false</code> se não existirem mais nós.
+	 */
+	boolean next();
+
+	/**
+	 * Obtém a chave do nó atual.
+	 *
+	 * @return Chave.
+	 */
+	Object getKey();
+
+	/**
+	 * Obtém o nó atual.
+	 *
+	 * @return Nó.
+	 */
+	TreeNode<T> getNode();
+
+	/**
+	 * Obtém o valor do nó atual. Em um cursor sobre nós desligados, é o 
+	 * valor removido do nó.
+	 *
+	 * @return Valor.
+	 */
+	T getValue();
+
+}
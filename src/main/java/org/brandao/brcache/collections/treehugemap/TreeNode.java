@@ -35,6 +35,8 @@ public interface TreeNode<T> extends Serializable{
 
     TreeNode<T> getNext(ReferenceCollection<TreeNode<T>> nodes, Object key);
 
+    void removeNext(ReferenceCollection<TreeNode<T>> nodes, Object key);
+
     T setValue(ReferenceCollection<T> values, T value);
 
     boolean replaceValue(ReferenceCollection<T> values, T oldValue, T value);
@@ -39,16 +39,53 @@ public interface TreeNodes<T> extends Serializable{
     
     T getValue(ReferenceCollection<T> values, TreeNode<T> node);
     
-    T setValue(ReferenceCollection<T> values, TreeNode<T> node, T value);
+    /**
+     * Define o valor de um nó encontrado com a chave. Se uma parte da árvore 
+     * foi desligada após o início da busca, o nó pode ter sido removido. Neste
+     * caso, o valor não é alterado e a busca é reiniciada: 
+     * {@link #isEquals(TreeMapKey, TreeNode)} passa a retornar 
+     * <code>false</code>. O mesmo vale para as demais operações que alteram
+     * o valor.
+     * 
+     * @param values Valores da árvore.
+     * @param key Chave usada na busca.
+     * @param node Nó.
+     * @param value Valor.
+     * @return Valor anterior.
+     */
+    T setValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T value);
 
-    boolean replaceValue(ReferenceCollection<T> values, TreeNode<T> node, T oldValue, T value);
+    boolean replaceValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T oldValue, T value);
 
-    T replaceValue(ReferenceCollection<T> values, TreeNode<T> node, T value);
+    T replaceValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T value);
     
-    T removeValue(ReferenceCollection<T> values, TreeNode<T> node);
+    T removeValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node);
  
-    T putIfAbsentValue(ReferenceCollection<T> values, TreeNode<T> node, T value);
+    T putIfAbsentValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T value);
     
-    boolean removeValue(ReferenceCollection<T> values, TreeNode<T> node, T oldValue);
+    boolean removeValue(ReferenceCollection<T> values, TreeMapKey key, TreeNode<T> node, T oldValue);
+    
+    /**
+     * Cria um cursor sobre os nós cujas chaves iniciam com o prefixo.
+     * 
+     * @param nodes Nós da árvore.
+     * @param values Valores da árvore.
+     * @param prefix Prefixo.
+     * @return Cursor.
+     */
+    TreeCursor<T> getCursor(ReferenceCollection<TreeNode<T>> nodes, 
+    		ReferenceCollection<T> values, Object prefix);
+    
+    /**
+     * Desliga da árvore os nós cujas chaves iniciam com o prefixo. O cursor
+     * remove os valores e os nós desligados à medida que avança.
+     * 
+     * @param nodes Nós da árvore.
+     * @param values Valores da árvore.
+     * @param prefix Prefixo.
+     * @return Cursor sobre os nós desligados.
+     */
+    TreeCursor<T> detach(ReferenceCollection<TreeNode<T>> nodes, 
+    		ReferenceCollection<T> values, Object prefix);
     
 }
@@ -0,0 +1,150 @@
+package org.brandao.brcache.eviction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Base das políticas de remoção. Os itens são registrados em uma tabela 
+ * e em filas de acesso definidas pela implementação. Todas as operações 
+ * são executadas com um único bloqueio. Os acessos são descartados se 
+ * o bloqueio estiver em uso.
+ * 
+ * @author Brandao
+ *
+ */
+abstract class AbstractEvictionPolicy implements EvictionPolicy{
+
+	private final Map<String, EvictionEntry> entries;
+	
+	private final ReentrantLock lock;
+	
+	private volatile long weight;
+	
+	private volatile int size;
+	
+	public AbstractEvictionPolicy(){
+		this.entries = new HashMap<String, EvictionEntry>();
+		this.lock    = new ReentrantLock();
+	}
+	
+	public void insert(String key, long id, long weight){
+		this.lock.lock();
+		try{
+			EvictionEntry e = this.entries.get(key);
+			
+			if(e == null){
+				e = new EvictionEntry(key, id, weight);
+				this.entries.put(key, e);
+				this.weight += weight;
+				this.size++;
+				this.onInsert(e);
+			}
+			else{
+				this.weight += weight - e.weight;
+				e.id = id;
+				e.queue.setWeight(e, weight);
+				this.onAccess(e);
+			}
+		}
+		finally{
+			this.lock.unlock();
+		}
+	}
+
+	public void access(String key, long id){
+		if(!this.lock.tryLock())
+			return;
+		
+		try{
+			EvictionEntry e = this.entries.get(key);
+			if(e != null && e.id == id){
+				this.onAccess(e);
+			}
+		}
+		finally{
+			this.lock.unlock();
+		}
+	}
+
+	public void remove(String key, long id){
+		this.lock.lock();
+		try{
+			EvictionEntry e = this.entries.get(key);
+			if(e != null && e.id == id){
+				this.unregister(e);
+			}
+		}
+		finally{
+			this.lock.unlock();
+		}
+	}
+
+	public EvictionEntry victim(){
+		this.lock.lock();
+		try{
+			EvictionEntry e = this.selectVictim();
+			if(e != null){
+				this.unregister(e);
+			}
+			return e;
+		}
+		finally{
+			this.lock.unlock();
+		}
+	}
+
+	public long getWeight(){
+		return this.weight;
+	}
+
+	public int size(){
+		return this.size;
+	}
+
+	public void clear(){
+		this.lock.lock();
+		try{
+			this.entries.clear();
+			this.weight = 0;
+			this.size   = 0;
+			this.onClear();
+		}
+		finally{
+			this.lock.unlock();
+		}
+	}
+	
+	private void unregister(EvictionEntry e){
+		this.entries.remove(e.key);
+		e.queue.remove(e);
+		e.candidate = false;
+		this.weight -= e.weight;
+		this.size--;
+	}
+	
+	/**
+	 * Inclui um novo item em uma fila.
+	 * 
+	 * @param e Item.
+	 */
+	protected abstract void onInsert(EvictionEntry e);
+	
+	/**
+	 * Reposiciona um item acessado ou substituído.
+	 * 
+	 * @param e Item.
+	 */
+	protected abstract void onAccess(EvictionEntry e);
+	
+	/**
+	 * Seleciona o próximo item a ser removido. O item é retirado da sua 
+	 * fila após a seleção.
+	 * 
+	 * @return Item ou <code>null</code>.
+	 */
+	protected abstract EvictionEntry selectVictim();
+	
+	protected abstract void onClear();
+	
+}
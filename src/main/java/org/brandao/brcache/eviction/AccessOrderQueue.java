@@ -0,0 +1,94 @@
+package org.brandao.brcache.eviction;
+
+/**
+ * Lista duplamente encadeada dos itens em ordem de acesso. O início da 
+ * lista contém o item acessado mais recentemente.
+ * 
+ * @author Brandao
+ *
+ */
+class AccessOrderQueue {
+
+	private EvictionEntry first;
+	
+	private EvictionEntry last;
+	
+	private int size;
+	
+	private long weight;
+	
+	public void addFirst(EvictionEntry e){
+		e.previous = null;
+		e.next     = this.first;
+		e.queue    = this;
+		
+		if(this.first == null)
+			this.last = e;
+		else
+			this.first.previous = e;
+		
+		this.first = e;
+		this.size++;
+		this.weight += e.weight;
+	}
+	
+	public void remove(EvictionEntry e){
+		if(e.previous == null)
+			this.first = e.next;
+		else
+			e.previous.next = e.next;
+		
+		if(e.next == null)
+			this.last = e.previous;
+		else
+			e.next.previous = e.previous;
+		
+		e.previous = null;
+		e.next     = null;
+		e.queue    = null;
+		this.size--;
+		this.weight -= e.weight;
+	}
+	
+	public void moveToFirst(EvictionEntry e){
+		if(this.first != e){
+			this.remove(e);
+			this.addFirst(e);
+		}
+	}
+	
+	/**
+	 * Altera o peso de um item da lista.
+	 * 
+	 * @param e Item.
+	 * @param weight Novo peso.
+	 */
+	public void setWeight(EvictionEntry e, long weight){
+		this.weight += weight - e.weight;
+		e.weight     = weight;
+	}
+	
+	public EvictionEntry getFirst(){
+		return this.first;
+	}
+	
+	public EvictionEntry getLast(){
+		return this.last;
+	}
+	
+	public int size(){
+		return this.size;
+	}
+	
+	public long getWeight(){
+		return this.weight;
+	}
+	
+	public void clear(){
+		this.first  = null;
+		this.last   = null;
+		this.size   = 0;
+		this.weight = 0;
+	}
+	
+}
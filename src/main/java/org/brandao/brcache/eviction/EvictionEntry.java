@@ -0,0 +1,43 @@
+package org.brandao.brcache.eviction;
+
+/**
+ * Item registrado em uma política de remoção.
+ * 
+ * @author Brandao
+ *
+ */
+public class EvictionEntry {
+
+	String key;
+	
+	long id;
+	
+	long weight;
+	
+	EvictionEntry previous;
+	
+	EvictionEntry next;
+	
+	AccessOrderQueue queue;
+	
+	boolean candidate;
+	
+	EvictionEntry(String key, long id, long weight){
+		this.key    = key;
+		this.id     = id;
+		this.weight = weight;
+	}
+	
+	public String getKey() {
+		return key;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public long getWeight() {
+		return weight;
+	}
+	
+}
@@ -0,0 +1,68 @@
+package org.brandao.brcache.eviction;
+
+/**
+ * Define a ordem em que os itens são removidos quando o cache atinge o 
+ * tamanho máximo.
+ * <p>
+ * A política somente registra as chaves e seus pesos. A remoção do item 
+ * é feita pelo cache com o item retornado em {@link #victim()}.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ */
+public interface EvictionPolicy {
+
+	/**
+	 * Registra a inclusão ou a substituição de um item.
+	 * 
+	 * @param key Chave do item.
+	 * @param id Identificação do item.
+	 * @param weight Peso do item.
+	 */
+	void insert(String key, long id, long weight);
+	
+	/**
+	 * Registra o acesso a um item. O acesso pode ser descartado se a 
+	 * política estiver em uso por outro processo.
+	 * 
+	 * @param key Chave do item.
+	 * @param id Identificação do item.
+	 */
+	void access(String key, long id);
+	
+	/**
+	 * Registra a remoção de um item.
+	 * 
+	 * @param key Chave do item.
+	 * @param id Identificação do item.
+	 */
+	void remove(String key, long id);
+	
+	/**
+	 * Seleciona e deixa de registrar o próximo item a ser removido.
+	 * 
+	 * @return Item ou <code>null</code> se não houver itens registrados.
+	 */
+	EvictionEntry victim();
+	
+	/**
+	 * Obtém o peso total dos itens registrados.
+	 * 
+	 * @return Peso.
+	 */
+	long getWeight();
+	
+	/**
+	 * Obtém a quantidade de itens registrados.
+	 * 
+	 * @return Quantidade.
+	 */
+	int size();
+	
+	/**
+	 * Remove todos os itens registrados.
+	 */
+	void clear();
+	
+}
@@ -0,0 +1,128 @@
+package org.brandao.brcache.eviction;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Estima a frequência de acesso das chaves com um count-min sketch de 
+ * quatro linhas e contadores de 4 bits.
+ * <p>
+ * Cada long da tabela contém 16 contadores. Os contadores ficam fora do 
+ * heap. Após uma quantidade de incrementos proporcional ao tamanho da 
+ * tabela, todos os contadores são divididos por dois para que as 
+ * frequências antigas percam importância.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ */
+class FrequencySketch {
+
+	private static final long[] SEED = new long[]{
+		0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+	
+	private static final long RESET_MASK = 0x7777777777777777L;
+	
+	private final ByteBuffer table;
+	
+	private final int tableMask;
+	
+	private final int sampleSize;
+	
+	private int size;
+	
+	/**
+	 * Cria um novo sketch.
+	 * 
+	 * @param capacity Quantidade esperada de chaves. É arredondada para 
+	 * uma potência de 2.
+	 */
+	public FrequencySketch(int capacity){
+		int length      = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		this.table      = ByteBuffer.allocateDirect(length << 3);
+		this.tableMask  = length - 1;
+		this.sampleSize = 10*length;
+	}
+	
+	/**
+	 * Obtém a quantidade de chaves suportadas.
+	 * 
+	 * @return Quantidade.
+	 */
+	public int capacity(){
+		return this.tableMask + 1;
+	}
+	
+	/**
+	 * Obtém a frequência estimada de uma chave.
+	 * 
+	 * @param hash Código hash da chave.
+	 * @return Frequência entre 0 e 15.
+	 */
+	public int frequency(int hash){
+		int h     = spread(hash);
+		int start = (h & 3) << 2;
+		int freq  = 15;
+		
+		for(int i=0;i<4;i++){
+			long value = this.table.getLong(this.indexOf(h, i) << 3);
+			int count  = (int)((value >>> ((start + i) << 2)) & 0xfL);
+			freq       = Math.min(freq, count);
+		}
+		
+		return freq;
+	}
+	
+	/**
+	 * Incrementa a frequência de uma chave.
+	 * 
+	 * @param hash Código hash da chave.
+	 */
+	public void increment(int hash){
+		int h          = spread(hash);
+		int start      = (h & 3) << 2;
+		boolean added  = false;
+		
+		for(int i=0;i<4;i++){
+			int offset = this.indexOf(h, i) << 3;
+			int shift  = (start + i) << 2;
+			long value = this.table.getLong(offset);
+			
+			if(((value >>> shift) & 0xfL) != 0xfL){
+				this.table.putLong(offset, value + (1L << shift));
+				added = true;
+			}
+		}
+		
+		if(added && ++this.size == this.sampleSize){
+			this.reset();
+		}
+	}
+	
+	public void clear(){
+		for(int i=0;i<=this.tableMask;i++){
+			this.table.putLong(i << 3, 0L);
+		}
+		this.size = 0;
+	}
+	
+	private void reset(){
+		for(int i=0;i<=this.tableMask;i++){
+			int offset = i << 3;
+			this.table.putLong(offset, (this.table.getLong(offset) >>> 1) & RESET_MASK);
+		}
+		this.size = this.size >>> 1;
+	}
+	
+	private int indexOf(int item, int i){
+		long hash = (item + SEED[i]) * SEED[i];
+		hash += hash >>> 32;
+		return ((int)hash) & this.tableMask;
+	}
+	
+	private static int spread(int x){
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+	
+}
@@ -0,0 +1,33 @@
+package org.brandao.brcache.eviction;
+
+/**
+ * Remove o item acessado há mais tempo.
+ * 
+ * @author Brandao
+ *
+ */
+public class LRUEvictionPolicy extends AbstractEvictionPolicy{
+
+	private final AccessOrderQueue queue;
+	
+	public LRUEvictionPolicy(){
+		this.queue = new AccessOrderQueue();
+	}
+	
+	protected void onInsert(EvictionEntry e){
+		this.queue.addFirst(e);
+	}
+
+	protected void onAccess(EvictionEntry e){
+		this.queue.moveToFirst(e);
+	}
+
+	protected EvictionEntry selectVictim(){
+		return this.queue.getLast();
+	}
+
+	protected void onClear(){
+		this.queue.clear();
+	}
+
+}
@@ -0,0 +1,136 @@
+package org.brandao.brcache.eviction;
+
+/**
+ * Política W-TinyLFU.
+ * <p>
+ * Os novos itens entram em uma janela LRU com 1% do peso total. Os itens 
+ * que saem da janela passam para a área principal, dividida em período 
+ * de experiência e protegida (80% da área principal). Um item da área de 
+ * experiência acessado novamente passa para a área protegida.
+ * </p>
+ * <p>
+ * Ao selecionar um item para remoção, o último item que saiu da janela 
+ * é comparado com o item acessado há mais tempo na área de experiência. 
+ * Permanece o item com maior frequência estimada pelo 
+ * {@link FrequencySketch}.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ */
+public class TinyLFUEvictionPolicy extends AbstractEvictionPolicy{
+
+	private static final int WINDOW_PERCENT = 1;
+	
+	private static final int PROTECTED_PERCENT = 80;
+	
+	private static final int MIN_CAPACITY = 1024;
+	
+	private final AccessOrderQueue window;
+	
+	private final AccessOrderQueue probation;
+	
+	private final AccessOrderQueue protectedQueue;
+	
+	private FrequencySketch sketch;
+	
+	public TinyLFUEvictionPolicy(){
+		this(MIN_CAPACITY);
+	}
+	
+	/**
+	 * Cria uma nova política.
+	 * 
+	 * @param capacity Quantidade esperada de itens.
+	 */
+	public TinyLFUEvictionPolicy(int capacity){
+		this.window         = new AccessOrderQueue();
+		this.probation      = new AccessOrderQueue();
+		this.protectedQueue = new AccessOrderQueue();
+		this.sketch         = new FrequencySketch(Math.max(capacity, MIN_CAPACITY));
+	}
+	
+	protected void onInsert(EvictionEntry e){
+		//a tabela de frequências acompanha a quantidade de itens.
+		if(this.size() > this.sketch.capacity()){
+			this.sketch = new FrequencySketch(this.sketch.capacity() << 1);
+		}
+		
+		this.sketch.increment(e.key.hashCode());
+		this.window.addFirst(e);
+		this.balanceWindow();
+	}
+
+	protected void onAccess(EvictionEntry e){
+		this.sketch.increment(e.key.hashCode());
+		
+		if(e.queue == this.window){
+			this.window.moveToFirst(e);
+		}
+		else
+		if(e.queue == this.probation){
+			e.candidate = false;
+			this.probation.remove(e);
+			this.protectedQueue.addFirst(e);
+			this.balanceProtected();
+		}
+		else{
+			this.protectedQueue.moveToFirst(e);
+		}
+	}
+
+	protected EvictionEntry selectVictim(){
+		EvictionEntry victim = this.probation.getLast();
+		
+		if(victim == null)
+			victim = this.protectedQueue.getLast();
+		
+		if(victim == null)
+			return this.window.getLast();
+		
+		EvictionEntry candidate = this.probation.getFirst();
+		
+		if(candidate == null || !candidate.candidate || candidate == victim){
+			return victim;
+		}
+		
+		//o candidato somente é admitido se for mais frequente que a vítima.
+		candidate.candidate = false;
+		if(this.sketch.frequency(candidate.key.hashCode()) > 
+				this.sketch.frequency(victim.key.hashCode())){
+			return victim;
+		}
+		else{
+			return candidate;
+		}
+	}
+
+	protected void onClear(){
+		this.window.clear();
+		this.probation.clear();
+		this.protectedQueue.clear();
+		this.sketch.clear();
+	}
+	
+	private void balanceWindow(){
+		long max = this.getWeight() * WINDOW_PERCENT / 100;
+		
+		while(this.window.getWeight() > max && this.window.size() > 1){
+			EvictionEntry e = this.window.getLast();
+			this.window.remove(e);
+			this.probation.addFirst(e);
+			e.candidate = true;
+		}
+	}
+	
+	private void balanceProtected(){
+		long max = (this.getWeight() - this.window.getWeight()) * PROTECTED_PERCENT / 100;
+		
+		while(this.protectedQueue.getWeight() > max && this.protectedQueue.size() > 1){
+			EvictionEntry e = this.protectedQueue.getLast();
+			this.protectedQueue.remove(e);
+			this.probation.addFirst(e);
+		}
+	}
+	
+}
@@ -0,0 +1,184 @@
+package org.brandao.brcache.memory;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Controla o ciclo de vida de uma região da memória.
+ * <p>
+ * Uma região pode ser fixada por vários leitores. A liberação feita por
+ * {@link Memory#release(RegionMemory)} somente devolve a memória ao alocador
+ * quando a última fixação for desfeita. Uma região liberada não pode mais
+ * ser fixada.
+ * </p>
+ * <p>
+ * Uma região obtida de {@link BudgetMemory} continua contabilizada depois 
+ * de ser enviada para o disco. A cópia restaurada é contabilizada no mesmo 
+ * limite e a memória de uma cópia descartada sem liberação é descontada 
+ * quando ela for coletada.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ */
+public abstract class AbstractRegionMemory 
+	implements RegionMemory{
+
+	private static final long serialVersionUID = -4403766001436468062L;
+
+	/**
+	 * Indica que a região foi liberada.
+	 */
+	private static final int RELEASED = 0x80000000;
+	
+	private static final AtomicIntegerFieldUpdater<AbstractRegionMemory> stateUpdater = 
+			AtomicIntegerFieldUpdater.newUpdater(AbstractRegionMemory.class, "state");
+	
+	private static final AtomicReferenceFieldUpdater<AbstractRegionMemory, BudgetMemory> budgetUpdater = 
+			AtomicReferenceFieldUpdater.newUpdater(AbstractRegionMemory.class, BudgetMemory.class, "budget");
+	
+	/**
+	 * Quantidade de fixações e indicador de liberação.
+	 */
+	private transient volatile int state;
+	
+	/**
+	 * Limite que contabiliza a memória da região.
+	 */
+	private transient volatile BudgetMemory budget;
+	
+	public boolean pin(){
+		for(;;){
+			int current = this.state;
+			
+			if((current & RELEASED) != 0)
+				return false;
+			
+			if(stateUpdater.compareAndSet(this, current, current + 1))
+				return true;
+		}
+	}
+	
+	public void unpin(){
+		for(;;){
+			int current = this.state;
+			
+			if((current & ~RELEASED) == 0)
+				throw new IllegalStateException("region not pinned");
+			
+			int value = current - 1;
+			
+			if(stateUpdater.compareAndSet(this, current, value)){
+				if(value == RELEASED)
+					this.freeRegion();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Libera a região. A memória é devolvida ao alocador imediatamente se 
+	 * a região não estiver fixada. Caso contrário, será devolvida quando a 
+	 * última fixação for desfeita.
+	 */
+	void release(){
+		for(;;){
+			int current = this.state;
+			
+			if((current & RELEASED) != 0)
+				return;
+			
+			int value = current | RELEASED;
+			
+			if(stateUpdater.compareAndSet(this, current, value)){
+				if(value == RELEASED)
+					this.freeRegion();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Verifica se a região foi liberada.
+	 * 
+	 * @return <code>true</code> se a região foi liberada. Caso contrário, <code>false</code>.
+	 */
+	public boolean isReleased(){
+		return (this.state & RELEASED) != 0;
+	}
+	
+	private void freeRegion(){
+		synchronized(this){
+			this.free();
+		}
+	}
+	
+	/**
+	 * Devolve a memória da região ao alocador.
+	 */
+	abstract void free();
+	
+	/**
+	 * Indica que a serialização copia os dados da região. Neste caso, 
+	 * uma cópia restaurada ocupa memória própria.
+	 * 
+	 * @return <code>true</code> se os dados são copiados. Caso contrário, <code>false</code>.
+	 */
+	boolean copiesData(){
+		return true;
+	}
+	
+	void setBudget(BudgetMemory value){
+		this.budget = value;
+	}
+	
+	/**
+	 * Desvincula a região do limite.
+	 * 
+	 * @param value Limite.
+	 * @return <code>true</code> se a região estava vinculada ao limite. Caso contrário, <code>false</code>.
+	 */
+	boolean removeBudget(BudgetMemory value){
+		return budgetUpdater.compareAndSet(this, value, null);
+	}
+	
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		BudgetMemory budget = this.budget;
+		stream.writeUTF(budget == null? "" : budget.getId());
+	}
+	
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		String id   = stream.readUTF();
+		this.budget = id.length() == 0? null : BudgetMemory.getBudget(id);
+	}
+	
+	/**
+	 * Contabiliza a cópia restaurada. Executado depois que a subclasse 
+	 * alocou e leu os dados.
+	 */
+	protected Object readResolve(){
+		BudgetMemory budget = this.budget;
+		
+		if(budget != null && this.copiesData())
+			budget.account(this.size());
+		
+		return this;
+	}
+	
+	protected void finalize() throws Throwable{
+		try{
+			//A região foi descartada sem ser liberada. Por exemplo, uma cópia 
+			//enviada para o disco.
+			BudgetMemory budget = this.budget;
+			if(budget != null && this.copiesData() && this.removeBudget(budget))
+				budget.unaccount(this.size());
+		}
+		finally{
+			super.finalize();
+		}
+	}
+	
+}
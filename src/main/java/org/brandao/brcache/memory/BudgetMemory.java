@@ -0,0 +1,344 @@
+package org.brandao.brcache.memory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limita a quantidade de memória alocada por outra estratégia de 
+ * acesso à memória.
+ * <p>
+ * Todas as alocações, realocações e liberações são contabilizadas. Quando 
+ * o limite é atingido, é aplicada a política definida em 
+ * {@link MemoryBudgetPolicy}. A memória de uma região é descontada no 
+ * momento da liberação, mesmo que ela ainda esteja fixada por um leitor.
+ * </p>
+ * <p>
+ * As regiões restauradas do disco também são contabilizadas. Elas não 
+ * aguardam a liberação de memória, mas as próximas alocações aguardam.
+ * </p>
+ * <pre>
+ * ex:
+ *     Memory memory = new BudgetMemory(new HeapMemory(), 512*1024*1024, 
+ *             MemoryBudgetPolicy.BLOCK, 1000);
+ * </pre>
+ * 
+ * @author Brandao
+ *
+ */
+public class BudgetMemory implements Memory{
+
+	/**
+	 * Limites em uso. Usado para contabilizar as regiões restauradas.
+	 */
+	private static final Map<String, BudgetMemory> budgets = 
+			new ConcurrentHashMap<String, BudgetMemory>();
+	
+	private static final AtomicLong sequence = new AtomicLong(0);
+	
+	private final String id;
+	
+	private final Memory memory;
+	
+	private final long budget;
+	
+	private final MemoryBudgetPolicy policy;
+	
+	private final long timeout;
+	
+	private final AtomicLong used;
+	
+	private final AtomicLong peak;
+	
+	private final ReentrantLock lock;
+	
+	private final Condition released;
+	
+	private volatile int waiting;
+	
+	private volatile MemoryReclaimer reclaimer;
+	
+	/**
+	 * Cria um novo limite de memória.
+	 * 
+	 * @param memory Estratégia de acesso à memória.
+	 * @param budget Quantidade máxima de bytes alocados.
+	 * @param policy Política aplicada quando o limite é atingido.
+	 * @param timeout Tempo máximo, em milisegundos, que uma alocação aguarda a 
+	 * liberação de memória.
+	 */
+	public BudgetMemory(Memory memory, long budget, MemoryBudgetPolicy policy, long timeout){
+		
+		if(budget <= 0)
+			throw new IllegalArgumentException("budget: " + budget);
+		
+		this.id       = System.currentTimeMillis() + "-" + sequence.getAndIncrement();
+		this.memory   = memory;
+		this.budget   = budget;
+		this.policy   = policy;
+		this.timeout  = timeout;
+		this.used     = new AtomicLong(0);
+		this.peak     = new AtomicLong(0);
+		this.lock     = new ReentrantLock();
+		this.released = this.lock.newCondition();
+		this.waiting  = 0;
+		budgets.put(this.id, this);
+	}
+	
+	public RegionMemory alloc(long size){
+		this.reserve(size);
+		try{
+			RegionMemory region = this.memory.alloc(size);
+			this.attach(region);
+			return region;
+		}
+		catch(RuntimeException e){
+			this.unreserve(size);
+			throw e;
+		}
+	}
+
+	public void realloc(long size, RegionMemory region){
+		long oldSize = region.size();
+		long delta   = size - oldSize;
+		
+		if(delta > 0)
+			this.reserve(delta);
+		
+		try{
+			this.memory.realloc(size, region);
+		}
+		catch(RuntimeException e){
+			if(delta > 0)
+				this.unreserve(delta);
+			throw e;
+		}
+		
+		if(delta < 0)
+			this.unreserve(-delta);
+	}
+
+	public void alloc(long size, RegionMemory region){
+		this.reserve(size);
+		try{
+			this.memory.alloc(size, region);
+			this.attach(region);
+		}
+		catch(RuntimeException e){
+			this.unreserve(size);
+			throw e;
+		}
+	}
+
+	public void release(RegionMemory region){
+		long size = region.size();
+		this.memory.release(region);
+		
+		//Uma região liberada mais de uma vez é descontada somente uma vez.
+		if(!(region instanceof AbstractRegionMemory) || 
+				((AbstractRegionMemory)region).removeBudget(this))
+			this.unreserve(size);
+	}
+
+	public void destroy(){
+		budgets.remove(this.id);
+		this.memory.destroy();
+	}
+	
+	/**
+	 * Define o responsável por liberar memória na política 
+	 * {@link MemoryBudgetPolicy#EVICT}.
+	 * 
+	 * @param value Responsável pela liberação.
+	 */
+	public void setReclaimer(MemoryReclaimer value){
+		this.reclaimer = value;
+	}
+	
+	public MemoryReclaimer getReclaimer(){
+		return this.reclaimer;
+	}
+	
+	/**
+	 * Obtém a estratégia de acesso à memória limitada.
+	 * 
+	 * @return Estratégia.
+	 */
+	public Memory getMemory(){
+		return this.memory;
+	}
+	
+	/**
+	 * Obtém a quantidade máxima de bytes que podem ser alocados.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getBudget(){
+		return this.budget;
+	}
+	
+	public MemoryBudgetPolicy getPolicy(){
+		return this.policy;
+	}
+	
+	public long getTimeout(){
+		return this.timeout;
+	}
+	
+	/**
+	 * Obtém a quantidade de bytes alocados.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getUsedBytes(){
+		return this.used.get();
+	}
+	
+	/**
+	 * Obtém a maior quantidade de bytes alocados ao mesmo tempo.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getPeakBytes(){
+		return this.peak.get();
+	}
+	
+	/**
+	 * Contabiliza memória obtida fora deste gerenciador, como as tabelas de
+	 * um índice. Não aguarda a liberação de memória, pois ela já foi obtida.
+	 *
+	 * @param size Quantidade de bytes.
+	 */
+	public void charge(long size){
+		this.account(size);
+	}
+
+	/**
+	 * Desconta a memória contabilizada com {@link #charge(long)}.
+	 *
+	 * @param size Quantidade de bytes.
+	 */
+	public void discharge(long size){
+		this.unreserve(size);
+	}
+
+	String getId(){
+		return this.id;
+	}
+	
+	static BudgetMemory getBudget(String id){
+		return budgets.get(id);
+	}
+	
+	/**
+	 * Contabiliza uma região restaurada do disco sem aguardar a liberação 
+	 * de memória.
+	 * 
+	 * @param size Quantidade de bytes.
+	 */
+	void account(long size){
+		this.updatePeak(this.used.addAndGet(size));
+	}
+	
+	/**
+	 * Desconta uma região descartada sem liberação.
+	 * 
+	 * @param size Quantidade de bytes.
+	 */
+	void unaccount(long size){
+		this.unreserve(size);
+	}
+	
+	private void attach(RegionMemory region){
+		if(region instanceof AbstractRegionMemory)
+			((AbstractRegionMemory)region).setBudget(this);
+	}
+	
+	private void reserve(long size){
+		
+		if(this.tryReserve(size))
+			return;
+		
+		if(size > this.budget)
+			throw new MemoryExhaustedException("allocation exceeds memory budget: " + size + " > " + this.budget);
+		
+		switch(this.policy){
+			case FAIL:
+				throw new MemoryExhaustedException("memory budget exhausted: " + this.used.get() + " + " + size + " > " + this.budget);
+			case EVICT:
+				MemoryReclaimer reclaimer = this.reclaimer;
+				if(reclaimer != null){
+					reclaimer.reclaim(this.used.get() + size - this.budget);
+					if(this.tryReserve(size))
+						return;
+				}
+				this.await(size);
+				break;
+			default:
+				this.await(size);
+		}
+	}
+	
+	private boolean tryReserve(long size){
+		for(;;){
+			long current = this.used.get();
+			long value   = current + size;
+			
+			if(value > this.budget)
+				return false;
+			
+			if(this.used.compareAndSet(current, value)){
+				this.updatePeak(value);
+				return true;
+			}
+		}
+	}
+	
+	private void await(long size){
+		long nanos = TimeUnit.MILLISECONDS.toNanos(this.timeout);
+		
+		this.lock.lock();
+		try{
+			this.waiting++;
+			while(!this.tryReserve(size)){
+				if(nanos <= 0)
+					throw new MemoryExhaustedException("memory budget exhausted: timeout " + this.timeout + "ms");
+				nanos = this.released.awaitNanos(nanos);
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new MemoryExhaustedException("memory budget exhausted: interrupted", e);
+		}
+		finally{
+			this.waiting--;
+			this.lock.unlock();
+		}
+	}
+	
+	private void unreserve(long size){
+		this.used.addAndGet(-size);
+		
+		if(this.waiting > 0){
+			this.lock.lock();
+			try{
+				this.released.signalAll();
+			}
+			finally{
+				this.lock.unlock();
+			}
+		}
+	}
+	
+	private void updatePeak(long value){
+		for(;;){
+			long current = this.peak.get();
+			if(value <= current || this.peak.compareAndSet(current, value))
+				return;
+		}
+	}
+	
+}
@@ -0,0 +1,167 @@
+package org.brandao.brcache.memory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Região da memória representada por um {@link ByteBuffer}.
+ * <p>
+ * Todas as operações usam cópias do buffer, de modo que a posição e o 
+ * limite do buffer original nunca são alterados.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ */
+public abstract class ByteBufferRegionMemory 
+	extends AbstractRegionMemory{
+
+	private static final long serialVersionUID = 2356085447744290441L;
+
+	/**
+	 * Tamanho do buffer usado na cópia entre regiões de tipos diferentes.
+	 */
+	private static final int COPY_BUFFER_SIZE = 8192;
+	
+	transient ByteBuffer buffer;
+
+	transient long length;
+	
+	public long size(){
+		return this.length;
+	}
+	
+	public byte get(long off){
+		
+		if(off >= this.length)
+			throw new IndexOutOfBoundsException(off + " >= " + this.length);
+		
+		return this.buffer.get((int)off);
+	}
+	
+	public ByteBuffer getByteBuffer(long off, int len){
+		
+		if(off + len > this.length)
+			throw new IndexOutOfBoundsException((off + len) + " > " + this.length);
+		
+		ByteBuffer view = this.buffer.asReadOnlyBuffer();
+		view.limit((int)(off + len));
+		view.position((int)off);
+		return view.slice();
+	}
+	
+	public int read(long thisOff, byte[] buf, int off, int len){
+		
+		if(thisOff >= this.length)
+			return -1;
+		
+		int max = (int)(this.length - thisOff);
+		max     = max > len? len : max;
+		
+		ByteBuffer src = this.buffer.duplicate();
+		src.position((int)thisOff);
+		src.get(buf, off, max);
+		return max;
+	}
+	
+	public long read(long thisOff, RegionMemory buf, long off, long len){
+		
+		if(thisOff >= this.length)
+			return -1;
+		
+		long max = this.length - thisOff;
+		max      = max > len? len : max;
+		
+		if(buf instanceof ByteBufferRegionMemory){
+			ByteBufferRegionMemory dest = (ByteBufferRegionMemory)buf;
+			
+			if(off + max > dest.length)
+				throw new IndexOutOfBoundsException((off + max) + " > " + dest.length);
+			
+			ByteBuffer src = this.buffer.duplicate();
+			src.limit((int)(thisOff + max));
+			src.position((int)thisOff);
+			
+			ByteBuffer dst = dest.buffer.duplicate();
+			dst.position((int)off);
+			dst.put(src);
+		}
+		else{
+			byte[] tmp = new byte[(int)Math.min(COPY_BUFFER_SIZE, max)];
+			long copied = 0;
+			
+			while(copied < max){
+				int copy = (int)Math.min(tmp.length, max - copied);
+				this.read(thisOff + copied, tmp, 0, copy);
+				buf.write(off + copied, tmp, 0, copy);
+				copied += copy;
+			}
+		}
+		
+		return max;
+	}
+	
+	public void write(long thisOff, byte[] buf, int off, int len){
+		
+		if(len == 0)
+			return;
+		
+		if(thisOff + len > this.length)
+			throw new IndexOutOfBoundsException((thisOff + len) + " > " + this.length);
+		
+		ByteBuffer dst = this.buffer.duplicate();
+		dst.position((int)thisOff);
+		dst.put(buf, off, len);
+	}
+
+	public void write(long thisOff, ByteBuffer buf){
+		
+		int len = buf.remaining();
+		
+		if(len == 0)
+			return;
+		
+		if(thisOff + len > this.length)
+			throw new IndexOutOfBoundsException((thisOff + len) + " > " + this.length);
+		
+		ByteBuffer dst = this.buffer.duplicate();
+		dst.position((int)thisOff);
+		dst.put(buf.duplicate());
+	}
+	
+	public void write(long thisOff, RegionMemory buf, long off, long len){
+		
+		if(len == 0)
+			return;
+		
+		if(thisOff + len > this.length)
+			throw new IndexOutOfBoundsException((thisOff + len) + " > " + this.length);
+		
+		if(buf instanceof ByteBufferRegionMemory){
+			ByteBufferRegionMemory origin = (ByteBufferRegionMemory)buf;
+			
+			if(off + len > origin.length)
+				throw new IndexOutOfBoundsException((off + len) + " > " + origin.length);
+			
+			ByteBuffer src = origin.buffer.duplicate();
+			src.limit((int)(off + len));
+			src.position((int)off);
+			
+			ByteBuffer dst = this.buffer.duplicate();
+			dst.position((int)thisOff);
+			dst.put(src);
+		}
+		else{
+			byte[] tmp = new byte[(int)Math.min(COPY_BUFFER_SIZE, len)];
+			long copied = 0;
+			
+			while(copied < len){
+				int copy = (int)Math.min(tmp.length, len - copied);
+				buf.read(off + copied, tmp, 0, copy);
+				this.write(thisOff + copied, tmp, 0, copy);
+				copied += copy;
+			}
+		}
+		
+	}
+	
+}
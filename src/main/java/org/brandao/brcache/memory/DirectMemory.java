@@ -0,0 +1,92 @@
+package org.brandao.brcache.memory;
+
+/**
+ * Gerencia a memória usada no cache.
+ * <p>
+ * Os dados são gravados fora do heap, em buffers obtidos com 
+ * <code>ByteBuffer.allocateDirect</code>. As regiões são fatias de chunks
+ * compartilhados, divididos em classes de tamanho. Não depende de 
+ * <code>sun.misc.Unsafe</code>.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ */
+public class DirectMemory implements Memory{
+
+	/**
+	 * Alocador compartilhado pelas regiões.
+	 */
+	static final DirectSlabAllocator allocator = new DirectSlabAllocator();
+	
+	public RegionMemory alloc(long size){
+		DirectRegionMemory r = new DirectRegionMemory();
+		r.allocate(size);
+		return r;
+	}
+
+	public void realloc(long size, RegionMemory region){
+		DirectRegionMemory r = (DirectRegionMemory)region;
+		synchronized(r){
+			r.reallocate(size);
+		}
+	}
+	
+	public void alloc(long size, RegionMemory region){
+		DirectRegionMemory r = (DirectRegionMemory)region;
+		if(r.buffer != null)
+			throw new IllegalStateException();
+		
+		r.allocate(size);
+	}
+	
+	public void release(RegionMemory region){
+		DirectRegionMemory r = (DirectRegionMemory)region;
+		r.release();
+	}
+	
+	/**
+	 * Obtém a quantidade de bytes reservados pelo alocador.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getReservedBytes(){
+		return allocator.getReservedBytes();
+	}
+
+	/**
+	 * Obtém a quantidade de bytes ocupados pelos slots em uso.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getAllocatedBytes(){
+		return allocator.getAllocatedBytes();
+	}
+	
+	/**
+	 * Obtém a quantidade de bytes solicitados nas alocações em uso.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getUsedBytes(){
+		return allocator.getUsedBytes();
+	}
+	
+	/**
+	 * Obtém a fragmentação da memória reservada pelo alocador.
+	 * 
+	 * @return Fragmentação entre 0 e 1.
+	 * @see SlabAllocator#getFragmentation()
+	 */
+	public double getFragmentation(){
+		return allocator.getFragmentation();
+	}
+	
+	/**
+	 * O alocador é compartilhado por todas as instâncias. Não há recursos a 
+	 * liberar.
+	 */
+	public void destroy(){
+	}
+	
+}
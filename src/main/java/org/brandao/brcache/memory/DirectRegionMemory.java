@@ -0,0 +1,118 @@
+package org.brandao.brcache.memory;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Região da memória fora do heap obtida de {@link DirectMemory}.
+ * 
+ * @author Brandao
+ *
+ */
+public class DirectRegionMemory 
+	extends ByteBufferRegionMemory{
+
+	private static final long serialVersionUID = -3040326036549719394L;
+
+	/**
+	 * Slot do alocador. Tem o valor -1 quando a região foi alocada diretamente.
+	 */
+	long slot;
+	
+	DirectRegionMemory(){
+		this.slot = -1;
+	}
+	
+	void allocate(long size){
+		DirectSlabAllocator allocator = DirectMemory.allocator;
+		
+		if(size <= allocator.getMaxSlotSize()){
+			this.slot   = allocator.allocate((int)size);
+			this.buffer = allocator.getBuffer(this.slot);
+		}
+		else{
+			this.slot   = -1;
+			this.buffer = ByteBuffer.allocateDirect((int)size);
+		}
+		
+		this.length = size;
+	}
+	
+	void reallocate(long size){
+		
+		if(size <= this.buffer.capacity()){
+			if(this.slot != -1)
+				DirectMemory.allocator.resize((int)this.length, (int)size);
+			this.length = size;
+			return;
+		}
+		
+		ByteBuffer oldBuffer = this.buffer;
+		long oldSlot         = this.slot;
+		long oldLength       = this.length;
+		
+		this.allocate(size);
+		
+		ByteBuffer src = oldBuffer.duplicate();
+		src.limit((int)oldLength);
+		src.position(0);
+		ByteBuffer dst = this.buffer.duplicate();
+		dst.position(0);
+		dst.put(src);
+		
+		if(oldSlot != -1)
+			DirectMemory.allocator.free(oldSlot, (int)oldLength);
+	}
+	
+	void free(){
+		
+		if(this.buffer == null)
+			return;
+		
+		if(this.slot != -1)
+			DirectMemory.allocator.free(this.slot, (int)this.length);
+		
+		this.buffer = null;
+	}
+	
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		stream.writeLong(this.length);
+		byte[] b = new byte[9024];
+		int off  = 0;
+		int len;
+		while(off < this.length && (len = this.read(off, b, 0, b.length)) > 0){
+			stream.write(b, 0, len);
+			off += len;
+		}
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		this.allocate(stream.readLong());
+		int len;
+		int thisOff = 0;
+		byte[] b    = new byte[9024];
+		while(thisOff < this.length){
+			int maxLen = (int)Math.min(b.length, this.length - thisOff);
+			len = stream.read(b, 0, maxLen);
+			if(len <= 0){
+				break;
+			}
+			this.write(thisOff, b, 0, len);
+			thisOff += len;
+		}
+	}
+	
+	protected void finalize() throws Throwable{
+		try{
+			synchronized(this){
+				this.free();
+			}
+		}
+		finally{
+			super.finalize();
+		}
+	}
+	
+}
@@ -0,0 +1,60 @@
+package org.brandao.brcache.memory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Alocador de memória por classes de tamanho que usa chunks
+ * alocados com {@link ByteBuffer#allocateDirect(int)}.
+ *
+ * @author Brandao
+ *
+ */
+class DirectSlabAllocator extends SlabAllocator{
+
+	/**
+	 * Tamanho padrão dos chunks.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024*1024;
+
+	/**
+	 * Chunks.
+	 */
+	private volatile ByteBuffer[] buffers;
+
+	public DirectSlabAllocator(){
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public DirectSlabAllocator(int chunkSize){
+		super(chunkSize);
+		this.buffers = new ByteBuffer[16];
+	}
+
+	protected void createChunk(int index, int size){
+		ByteBuffer[] buffers = this.buffers;
+
+		if(index >= buffers.length){
+			ByteBuffer[] newBuffers = new ByteBuffer[buffers.length << 1];
+			System.arraycopy(buffers, 0, newBuffers, 0, buffers.length);
+			buffers = newBuffers;
+		}
+
+		buffers[index] = ByteBuffer.allocateDirect(size);
+		this.buffers   = buffers;
+	}
+
+	/**
+	 * Obtém o buffer de um slot.
+	 *
+	 * @param slot Identificação do slot.
+	 * @return Buffer.
+	 */
+	public ByteBuffer getBuffer(long slot){
+		ByteBuffer chunk = this.buffers[(int)(slot >>> 32)].duplicate();
+		int offset       = (int)(slot & 0xffffffffL);
+		chunk.limit(offset + this.getSlotSize(slot));
+		chunk.position(offset);
+		return chunk.slice();
+	}
+
+}
@@ -2,58 +2,89 @@ package org.brandao.brcache.memory;
 
 /**
  * Gerencia a memória usada no cache.
+ * <p>
+ * As regiões são fatias de grandes arrays compartilhados, divididos em 
+ * classes de tamanho.
+ * </p>
  * 
  * @author Brandao
  *
  */
 public class HeapMemory implements Memory{
 
+	/**
+	 * Alocador compartilhado pelas regiões.
+	 */
+	static final HeapSlabAllocator allocator = new HeapSlabAllocator();
+	
 	public RegionMemory alloc(long size) {
-		byte[][] segs = HeapMemoryUtil.alloc(size);
-		return new HeapRegionMemory(segs, (int)HeapMemoryUtil.segmentSize, (int)size);
+		HeapRegionMemory r = new HeapRegionMemory();
+		r.allocate(size);
+		return r;
 	}
 
 	public void realloc(long size, RegionMemory region){
 		HeapRegionMemory r = (HeapRegionMemory)region;
-		byte[][] segs      = r.segments;
-		byte[][] newSegs   = HeapMemoryUtil.alloc(size);
-		
-		if(newSegs.length > segs.length){
-			System.arraycopy(segs, 0, newSegs, 0, segs.length);
-			HeapMemoryUtil.free(segs);
-			r.segments    = newSegs;
-			r.segmentSize = (int)HeapMemoryUtil.segmentSize;
+		synchronized(r){
+			r.reallocate(size);
 		}
-		else{
-			System.arraycopy(segs, 0, newSegs, 0, newSegs.length);
-			HeapMemoryUtil.free(segs);
-		}
-		
 	}
 	
 	public void alloc(long size, RegionMemory region) {
 		HeapRegionMemory r = (HeapRegionMemory)region;
-		if(r.segments != null)
+		if(r.array != null)
 			throw new IllegalStateException();
-		allocSegments(size, r);
+		
+		r.allocate(size);
 	}
 	
 	public void release(RegionMemory region){
 		HeapRegionMemory r = (HeapRegionMemory)region;
-		if(r.segments == null)
-			return;
-		
-		HeapMemoryUtil.free(r.segments);
-		r.segments = null;
- 	}
-	
-	private HeapRegionMemory allocSegments(long size, HeapRegionMemory region){
-		byte[][] allocSegs = HeapMemoryUtil.alloc(size);
-		region.length      = size;
-		region.segments    = allocSegs;
-		region.segmentSize = HeapMemoryUtil.segmentSize;
-		return region;
+		r.release();
 	}
 	
+	/**
+	 * Obtém a quantidade de bytes reservados pelo alocador.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getReservedBytes(){
+		return allocator.getReservedBytes();
+	}
 
+	/**
+	 * Obtém a quantidade de bytes ocupados pelos slots em uso.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getAllocatedBytes(){
+		return allocator.getAllocatedBytes();
+	}
+	
+	/**
+	 * Obtém a quantidade de bytes solicitados nas alocações em uso.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getUsedBytes(){
+		return allocator.getUsedBytes();
+	}
+	
+	/**
+	 * Obtém a fragmentação da memória reservada pelo alocador.
+	 * 
+	 * @return Fragmentação entre 0 e 1.
+	 * @see SlabAllocator#getFragmentation()
+	 */
+	public double getFragmentation(){
+		return allocator.getFragmentation();
+	}
+	
+	/**
+	 * O alocador é compartilhado por todas as instâncias. Não há recursos a 
+	 * liberar.
+	 */
+	public void destroy(){
+	}
+	
 }
@@ -3,25 +3,39 @@ package org.brandao.brcache.memory;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 
-public class HeapRegionMemory implements RegionMemory{
+/**
+ * Região da memória no heap. É uma fatia (array, deslocamento, tamanho)
+ * de um chunk de {@link HeapMemory}.
+ * 
+ * @author Brandao
+ *
+ */
+public class HeapRegionMemory extends AbstractRegionMemory{
 
 	private static final long serialVersionUID = -8225524015808420667L;
 
-	byte[][] segments;
+	transient byte[] array;
 
-	int segmentSize;
+	transient int offset;
 	
-	long length;
+	transient long length;
 	
-	public HeapRegionMemory(byte[][] segments, int segmentSize, int length){
-		this.segments    = segments;
-		this.segmentSize = segmentSize;
-		this.length      = length;
+	/**
+	 * Slot do alocador. Tem o valor -1 quando a região foi alocada diretamente.
+	 */
+	transient long slot;
+	
+	HeapRegionMemory(){
+		this.slot = -1;
 	}
 	
-	byte[][] getSegments(){
-		return segments;
+	public HeapRegionMemory(byte[] array, int offset, int length){
+		this.array  = array;
+		this.offset = offset;
+		this.length = length;
+		this.slot   = -1;
 	}
 	
 	public long size(){
@@ -34,157 +48,35 @@ public class HeapRegionMemory implements RegionMemory{
 			throw new IndexOutOfBoundsException(offset + " >= " + this.length);
 		}
 		
-		int seg = (int)(offset / this.segmentSize); 
-		int off = (int)(offset % this.segmentSize);
-		
-		return this.segments[seg][off];
+		return this.array[this.offset + (int)offset];
 	}
 
+	public ByteBuffer getByteBuffer(long off, int len){
+		
+		if(off + len > this.length)
+			throw new IndexOutOfBoundsException((off + len) + " > " + this.length);
+		
+		return ByteBuffer.wrap(this.array, this.offset + (int)off, len).slice().asReadOnlyBuffer();
+	}
+	
 	public int read(long thisOff, byte[] buf, int off, int len){
 
 		if(thisOff >= this.length)
 			return -1;
 		
 		len = (int)(thisOff + len > this.length? this.length - thisOff : len);
-		
-		int thisSegmentId    = (int)(thisOff/this.segmentSize);
-		byte[] thisCurrent   = this.segments[thisSegmentId];
-		int thisSegmentLimit = thisCurrent.length;
-		int thisSegmentOff   = (int)(thisOff%this.segmentSize);
-		int read             = 0;
-		int totalRead        = 0;
-    	int maxOff           = off + len;
-    	int needRead         = 0;
-    	int maxRead          = 0;
-		int maxThisLen       = 0;
-		
-    	while(off < maxOff && thisOff < this.length){
-
-	    	if(thisSegmentOff >= thisSegmentLimit){
-	    		thisSegmentId    = (int)(thisOff/this.segmentSize);
-	    		thisCurrent      = this.segments[thisSegmentId];
-	    		thisSegmentOff   = (int)(thisOff%this.segmentSize);
-	    		thisSegmentLimit = thisCurrent.length;
-	    	}
-    		
-	    	maxThisLen = (int)(this.length - thisOff);
-	    	needRead   = maxOff - off;
-	    	maxRead    = thisSegmentLimit - thisSegmentOff;
-	    	
-	    	if(needRead > maxThisLen)
-	    		needRead = maxThisLen;
-	    	
-	    	if(needRead > maxRead)
-	    		read = maxRead;
-	    	else
-	    		read = needRead;
-    		
-    		System.arraycopy(thisCurrent, thisSegmentOff, buf, off, read);
-
-    		totalRead      += read;
-    		thisSegmentOff += read;
-	    	off            += read;
-	    	thisOff        += read;
-    		
-    	}
-    	
-    	return totalRead;
+		System.arraycopy(this.array, this.offset + (int)thisOff, buf, off, len);
+		return len;
 	}
 	
-	public long read(long thisOff, RegionMemory b, long off, long len){
-		HeapRegionMemory buf = (HeapRegionMemory)b; 
+	public long read(long thisOff, RegionMemory buf, long off, long len){
+		
 		if(thisOff >= this.length)
 			return -1;
 		
-		int totalRead     = 0;
-		byte[][] segments = buf.segments;
-		int segmentSize   = buf.segmentSize;
-		
-		int thisSegmentId    = (int)(thisOff/this.segmentSize);
-		byte[] thisCurrent   = this.segments[thisSegmentId];
-		int thisSegmentLimit = thisCurrent.length;
-		int thisSegmentOff   = (int)(thisOff%this.segmentSize);
-		
-		int segmentId    = (int)(off/segmentSize);
-		byte[] current   = segments[segmentId];
-		int segmentLimit = current.length;
-		int segmentOff   = (int)(off%segmentSize);
-		
-    	long maxOff       = off + len;
-    	
-    	int transferLen   = 0;
-    	int needRead      = 0;
-    	int maxRead       = 0;
-		int maxThisLen    = 0;
-		int read          = 0;
-				
-		long maxLen       = 0;
-    	int needWrite     = 0;
-    	int maxWrite      = 0;
-		int write         = 0;
-		
-    	while(off < maxOff){
-
-	    	if(thisSegmentOff >= thisSegmentLimit){
-	    		thisSegmentId    = (int)(thisOff/this.segmentSize);
-	    		thisCurrent      = this.segments[thisSegmentId];
-	    		thisSegmentOff   = (int)(thisOff%this.segmentSize);
-	    		thisSegmentLimit = thisCurrent.length;
-	    	}
-
-	    	if(segmentOff >= segmentLimit){
-	    		segmentId    = (int)(off/segmentSize);
-	    		current      = segments[segmentId];
-	    		segmentOff   = (int)(off % segmentSize);
-	    		segmentLimit = current.length;
-	    	}
-	    	
-	    	transferLen = (int)(maxOff - off);
-	    	
-	    	maxThisLen  = (int)(this.length - thisOff);
-	    	needRead    = transferLen;
-	    	maxRead     = thisSegmentLimit - thisSegmentOff;
-	    	
-	    	if(needRead > maxThisLen)
-	    		needRead = maxThisLen;
-	    	
-	    	if(needRead > maxRead)
-	    		read = maxRead;
-	    	else
-	    		read = needRead;
-
-	    	maxLen    = buf.length - off;
-	    	needWrite = transferLen;
-	    	maxWrite  = segmentLimit - segmentOff;
-	    	
-	    	if(needWrite > maxLen)
-	    		throw new IndexOutOfBoundsException(needWrite + " > " + maxLen);
-	    	
-	    	if(needWrite > maxWrite)
-	    		write = maxWrite;
-	    	else
-	    		write = needWrite;
-	    	
-	    	int copy;
-	    	
-    		if(maxWrite > maxRead)
-    			copy = read;
-    		else
-    			copy = write;
-
-    		if(copy == 0)
-    			break;
-    		
-    		System.arraycopy(thisCurrent, thisSegmentOff, current, segmentOff, copy);
-
-    		thisOff        += copy;
-    		off            += copy;
-    		thisSegmentOff += copy;
-    		segmentOff     += copy;
-    		totalRead      += copy;
-    	}
-    	
-    	return totalRead;
+		len = thisOff + len > this.length? this.length - thisOff : len;
+		buf.write(off, this.array, this.offset + (int)thisOff, (int)len);
+		return len;
 	}
 	
 	public void write(long thisOff, byte[] buf, int off, int len){
@@ -192,144 +84,111 @@ public class HeapRegionMemory implements RegionMemory{
 		if(len == 0)
 			return;
 		
-		long maxThisOff = this.length;
-		int maxOff      = off + len;
-
-		if(maxOff > buf.length)
-			throw new IndexOutOfBoundsException(maxOff + " > " + buf.length);
+		if(off + len > buf.length)
+			throw new IndexOutOfBoundsException((off + len) + " > " + buf.length);
 		
-		int thisSegmentIndex = (int)(thisOff/this.segmentSize);
-		int thisSegmentOff   = (int)(thisOff%this.segmentSize);
-		byte[] thisSegment   = this.segments[thisSegmentIndex]; 
-		int maxThisSegment   = thisSegment.length; 
+		if(thisOff + len > this.length)
+			throw new IndexOutOfBoundsException((thisOff + len) + " > " + this.length);
 		
-    	while(off < maxOff){
-
-	    	if(thisSegmentOff >= maxThisSegment){
-	    		thisSegmentIndex = (int)(thisOff/this.segmentSize);
-	    		thisSegmentOff   = (int)(thisOff%this.segmentSize);
-	    		thisSegment      = this.segments[thisSegmentIndex]; 
-	    		maxThisSegment   = thisSegment.length; 
-	    	}
-    		
-	    	int maxRead   = maxOff - off;
-	    	long maxWrite = maxThisOff - thisOff;
-	    	
-	    	if(maxRead > maxWrite)
-	    		throw new IndexOutOfBoundsException(maxOff + " > " + maxThisOff);
-	    	
-	    	int maxSegmentWrite = maxThisSegment - thisSegmentOff;
-	    	int copy;
-	    	
-	    	if(maxRead > maxSegmentWrite)
-	    		copy = maxSegmentWrite;
-	    	else
-	    		copy = maxRead;
-
-    		System.arraycopy(buf, off, thisSegment, thisSegmentOff, copy);
-	    	
-    		thisSegmentOff += copy;
-    		off            += copy;
-    		thisOff        += copy;
-    	}
+		System.arraycopy(buf, off, this.array, this.offset + (int)thisOff, len);
 	}
 
-	public void write(long thisOff, RegionMemory b, long off, long len){
-		HeapRegionMemory buf = (HeapRegionMemory)b; 
+	public void write(long thisOff, ByteBuffer buf){
+		
+		int len = buf.remaining();
 		
 		if(len == 0)
 			return;
 		
-		long maxThisOff = this.length;
-		long maxOff     = off + len;
-
-		if(maxOff > buf.length)
-			throw new IndexOutOfBoundsException(maxOff + " > " + buf.length);
+		if(thisOff + len > this.length)
+			throw new IndexOutOfBoundsException((thisOff + len) + " > " + this.length);
 		
-		int thisSegmentIndex = (int)(thisOff/this.segmentSize);
-		int thisSegmentOff   = (int)(thisOff%this.segmentSize);
-		byte[] thisSegment   = this.segments[thisSegmentIndex]; 
-		int maxThisSegment   = thisSegment.length; 
-
-		int bufSegmentIndex = (int)(off/this.segmentSize);
-		int bufSegmentOff   = (int)(off%this.segmentSize);
-		byte[] bufSegment   = buf.segments[bufSegmentIndex]; 
-		int maxBufSegment   = bufSegment.length; 
+		buf.duplicate().get(this.array, this.offset + (int)thisOff, len);
+	}
+	
+	public void write(long thisOff, RegionMemory buf, long off, long len){
 		
-    	while(off < maxOff){
-
-	    	if(thisSegmentOff >= maxThisSegment){
-	    		thisSegmentIndex = (int)(thisOff/this.segmentSize);
-	    		thisSegmentOff   = (int)(thisOff%this.segmentSize);
-	    		thisSegment      = this.segments[thisSegmentIndex]; 
-	    		maxThisSegment   = thisSegment.length; 
-	    	}
-
-	    	if(bufSegmentOff >= maxBufSegment){
-	    		bufSegmentIndex = (int)(off/this.segmentSize);
-	    		bufSegmentOff   = (int)(off%this.segmentSize);
-	    		bufSegment      = buf.segments[bufSegmentIndex]; 
-	    		maxBufSegment   = bufSegment.length; 
-	    	}
-	    	
-	    	int maxRead   = (int)(maxOff - off);
-	    	long maxWrite = maxThisOff - thisOff;
-	    	
-	    	if(maxRead > maxWrite)
-	    		throw new IndexOutOfBoundsException(maxOff + " > " + maxThisOff);
-	    	
-	    	int maxSegmentWrite = maxThisSegment - thisSegmentOff;
-	    	int copy;
-	    	
-	    	if(maxRead > maxSegmentWrite)
-	    		copy = maxSegmentWrite;
-	    	else
-	    		copy = maxRead;
-
-    		System.arraycopy(bufSegment, bufSegmentOff, thisSegment, thisSegmentOff, copy);
-	    	
-    		bufSegmentOff  += copy;
-    		thisSegmentOff += copy;
-    		off            += copy;
-    		thisOff        += copy;
-    	}
-
-    	
+		if(len == 0)
+			return;
+		
+		if(off + len > buf.size())
+			throw new IndexOutOfBoundsException((off + len) + " > " + buf.size());
+		
+		if(thisOff + len > this.length)
+			throw new IndexOutOfBoundsException((thisOff + len) + " > " + this.length);
+		
+		buf.read(off, this.array, this.offset + (int)thisOff, (int)len);
+	}
+	
+	void allocate(long size){
+		HeapSlabAllocator allocator = HeapMemory.allocator;
+		
+		if(size <= allocator.getMaxSlotSize()){
+			this.slot   = allocator.allocate((int)size);
+			this.array  = allocator.getArray(this.slot);
+			this.offset = allocator.getOffset(this.slot);
+		}
+		else{
+			this.slot   = -1;
+			this.array  = new byte[(int)size];
+			this.offset = 0;
+		}
+		
+		this.length = size;
+	}
+	
+	void reallocate(long size){
+		
+		long capacity = 
+			this.slot == -1? 
+				this.array.length - this.offset : 
+				HeapMemory.allocator.getSlotSize(this.slot);
+		
+		if(size <= capacity){
+			if(this.slot != -1)
+				HeapMemory.allocator.resize((int)this.length, (int)size);
+			this.length = size;
+			return;
+		}
+		
+		byte[] oldArray = this.array;
+		int oldOffset   = this.offset;
+		long oldSlot    = this.slot;
+		long oldLength  = this.length;
+		
+		this.allocate(size);
+		System.arraycopy(oldArray, oldOffset, this.array, this.offset, (int)oldLength);
+		
+		if(oldSlot != -1)
+			HeapMemory.allocator.free(oldSlot, (int)oldLength);
+	}
+	
+	void free(){
+		
+		if(this.array == null)
+			return;
+		
+		if(this.slot != -1)
+			HeapMemory.allocator.free(this.slot, (int)this.length);
+		
+		this.array = null;
 	}
 	
 	private void writeObject(ObjectOutputStream stream) throws IOException {
 		stream.writeLong(this.length);
-		stream.writeInt(this.segmentSize);
-		for(byte[] b: this.segments){
-			stream.write(b);
-		}
+		stream.write(this.array, this.offset, (int)this.length);
     }
 
     private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
-		this.length      = stream.readLong();
-		this.segments    = HeapMemoryUtil.alloc(length);
-		this.segmentSize = HeapMemoryUtil.segmentSize;
-		int segmentSize  = stream.readInt();
-		
-		int len;
-		int thisOff = 0;
-		byte[] b    = new byte[segmentSize];
-		
-		while(thisOff < this.length){
-			len = stream.read(b, 0, b.length);
-			int maxLen = (int)Math.min(b.length, this.length - thisOff);
-			this.write(thisOff, b, 0, maxLen);
-			thisOff += len;
-			if(len == 0){
-				break;
-			}
-				
-		}
+    	this.allocate(stream.readLong());
+    	stream.readFully(this.array, this.offset, (int)this.length);
     }
 	
     protected void finalize() throws Throwable{
     	try{
-    		HeapMemoryUtil.free(this.segments);
+    		synchronized(this){
+    			this.free();
+    		}
     	}
     	finally{
     		super.finalize();
@@ -0,0 +1,64 @@
+package org.brandao.brcache.memory;
+
+/**
+ * Alocador de memória por classes de tamanho que usa chunks
+ * no heap.
+ *
+ * @author Brandao
+ *
+ */
+class HeapSlabAllocator extends SlabAllocator{
+
+	/**
+	 * Tamanho padrão dos chunks.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024*1024;
+
+	/**
+	 * Chunks.
+	 */
+	private volatile byte[][] arrays;
+
+	public HeapSlabAllocator(){
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public HeapSlabAllocator(int chunkSize){
+		super(chunkSize);
+		this.arrays = new byte[16][];
+	}
+
+	protected void createChunk(int index, int size){
+		byte[][] arrays = this.arrays;
+
+		if(index >= arrays.length){
+			byte[][] newArrays = new byte[arrays.length << 1][];
+			System.arraycopy(arrays, 0, newArrays, 0, arrays.length);
+			arrays = newArrays;
+		}
+
+		arrays[index] = new byte[size];
+		this.arrays   = arrays;
+	}
+
+	/**
+	 * Obtém o chunk de um slot.
+	 *
+	 * @param slot Identificação do slot.
+	 * @return Chunk.
+	 */
+	public byte[] getArray(long slot){
+		return this.arrays[(int)(slot >>> 32)];
+	}
+
+	/**
+	 * Obtém o deslocamento de um slot dentro do seu chunk.
+	 *
+	 * @param slot Identificação do slot.
+	 * @return Deslocamento.
+	 */
+	public int getOffset(long slot){
+		return (int)(slot & 0xffffffffL);
+	}
+
+}
@@ -0,0 +1,191 @@
+package org.brandao.brcache.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.brandao.brcache.collections.Collections;
+
+/**
+ * Gerencia a memória usada no cache.
+ * <p>
+ * Os dados são gravados em janelas mapeadas ({@link java.nio.MappedByteBuffer})
+ * de um arquivo na pasta de dados. A paginação fica a cargo do sistema 
+ * operacional, permitindo manter mais dados do que a memória física disponível.
+ * </p>
+ * <p>
+ * Uma região serializada guarda somente a referência do seu slot no arquivo. 
+ * Ao ser restaurada, ela volta a apontar para os mesmos dados, sem cópia.
+ * A memória de uma região somente é devolvida por {@link #release(RegionMemory)}.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ */
+public class MappedMemory implements Memory{
+
+	/**
+	 * Alocadores em uso. Usado para restaurar as regiões serializadas.
+	 */
+	private static final Map<String, MappedSlabAllocator> allocators = 
+			new ConcurrentHashMap<String, MappedSlabAllocator>();
+	
+	private static final AtomicLong sequence = new AtomicLong(0);
+	
+	private volatile MappedSlabAllocator allocator;
+	
+	private String rootPath;
+	
+	private int chunkSize;
+	
+	public MappedMemory(){
+		this.chunkSize = MappedSlabAllocator.DEFAULT_CHUNK_SIZE;
+	}
+	
+	public RegionMemory alloc(long size){
+		MappedRegionMemory r = new MappedRegionMemory();
+		r.allocate(this.getAllocator(), size);
+		return r;
+	}
+
+	public void realloc(long size, RegionMemory region){
+		MappedRegionMemory r = (MappedRegionMemory)region;
+		synchronized(r){
+			r.reallocate(size);
+		}
+	}
+
+	public void alloc(long size, RegionMemory region){
+		MappedRegionMemory r = (MappedRegionMemory)region;
+		if(r.buffer != null)
+			throw new IllegalStateException();
+		
+		r.allocate(this.getAllocator(), size);
+	}
+
+	public void release(RegionMemory region){
+		MappedRegionMemory r = (MappedRegionMemory)region;
+		r.release();
+	}
+
+	/**
+	 * Define a pasta onde o arquivo mapeado será criado.
+	 * 
+	 * @param value Pasta.
+	 */
+	public void setRootPath(String value){
+		this.rootPath = value;
+	}
+	
+	public String getRootPath(){
+		return this.rootPath;
+	}
+	
+	/**
+	 * Define o tamanho das janelas mapeadas.
+	 * 
+	 * @param value Tamanho.
+	 */
+	public void setChunkSize(int value){
+		if(this.allocator != null)
+			throw new IllegalStateException("memory already in use");
+		
+		this.chunkSize = value;
+	}
+	
+	public int getChunkSize(){
+		return this.chunkSize;
+	}
+	
+	/**
+	 * Obtém a quantidade de bytes mapeados.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getReservedBytes(){
+		MappedSlabAllocator allocator = this.allocator;
+		return allocator == null? 0 : allocator.getReservedBytes();
+	}
+
+	/**
+	 * Obtém a quantidade de bytes solicitados nas alocações em uso.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getUsedBytes(){
+		MappedSlabAllocator allocator = this.allocator;
+		return allocator == null? 0 : allocator.getUsedBytes();
+	}
+	
+	/**
+	 * Obtém a fragmentação do arquivo mapeado.
+	 * 
+	 * @return Fragmentação entre 0 e 1.
+	 * @see SlabAllocator#getFragmentation()
+	 */
+	public double getFragmentation(){
+		MappedSlabAllocator allocator = this.allocator;
+		return allocator == null? 0.0 : allocator.getFragmentation();
+	}
+	
+	/**
+	 * Obtém o arquivo mapeado.
+	 * 
+	 * @return Arquivo ou <code>null</code> se ainda não foi criado.
+	 */
+	File getFile(){
+		MappedSlabAllocator allocator = this.allocator;
+		return allocator == null? null : allocator.getFile();
+	}
+	
+	/**
+	 * Fecha e apaga o arquivo mapeado. As regiões não podem mais ser usadas.
+	 */
+	public synchronized void destroy(){
+		if(this.allocator != null){
+			allocators.remove(this.allocator.getId());
+			this.allocator.destroy();
+			this.allocator = null;
+		}
+	}
+	
+	private MappedSlabAllocator getAllocator(){
+		MappedSlabAllocator allocator = this.allocator;
+		
+		if(allocator != null)
+			return allocator;
+		
+		synchronized(this){
+			
+			if(this.allocator != null)
+				return this.allocator;
+			
+			File path = this.rootPath == null? Collections.getPath() : new File(this.rootPath);
+			
+			if(!path.exists())
+				path.mkdirs();
+			
+			String id = System.currentTimeMillis() + "-" + sequence.getAndIncrement();
+			File file = new File(path, "memory-" + id + ".map");
+			
+			try{
+				allocator = new MappedSlabAllocator(id, file, this.chunkSize);
+			}
+			catch(IOException e){
+				throw new IllegalStateException("fail create mapped file: " + file, e);
+			}
+			
+			file.deleteOnExit();
+			allocators.put(id, allocator);
+			this.allocator = allocator;
+			return allocator;
+		}
+	}
+	
+	static MappedSlabAllocator getAllocator(String id){
+		return allocators.get(id);
+	}
+	
+}
@@ -0,0 +1,193 @@
+package org.brandao.brcache.memory;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Região da memória obtida de {@link MappedMemory}.
+ * <p>
+ * A serialização guarda somente a referência do slot e a sua geração. As 
+ * fixações são compartilhadas por todas as instâncias que apontam para o 
+ * mesmo slot. Uma instância de uma geração anterior não consegue fixar o 
+ * slot, mesmo que ele tenha sido entregue a outra região.
+ * </p>
+ * <p>
+ * Uma região maior que o maior slot do alocador é alocada diretamente 
+ * fora do arquivo, assim como em {@link DirectMemory}. Neste caso, os 
+ * dados são serializados junto com a região.
+ * </p>
+ * 
+ * @author Brandao
+ *
+ */
+public class MappedRegionMemory 
+	extends ByteBufferRegionMemory{
+
+	private static final long serialVersionUID = 1795497658305618849L;
+
+	transient MappedSlabAllocator allocator;
+	
+	/**
+	 * Slot do alocador. Tem o valor -1 quando a região foi alocada diretamente.
+	 */
+	transient long slot;
+	
+	/**
+	 * Geração do slot no momento da alocação.
+	 */
+	transient int generation;
+	
+	/**
+	 * Indica que o slot foi liberado.
+	 */
+	transient boolean released;
+	
+	MappedRegionMemory(){
+		this.slot = -1;
+	}
+	
+	void allocate(MappedSlabAllocator allocator, long size){
+		
+		this.allocator = allocator;
+		this.released  = false;
+		
+		if(size <= allocator.getMaxSlotSize()){
+			this.slot       = allocator.allocate((int)size);
+			this.generation = allocator.getGeneration(this.slot);
+			this.buffer     = allocator.getBuffer(this.slot);
+		}
+		else{
+			this.slot   = -1;
+			this.buffer = ByteBuffer.allocateDirect((int)size);
+		}
+		
+		this.length = size;
+	}
+	
+	void reallocate(long size){
+		
+		if(size <= this.buffer.capacity()){
+			if(this.slot != -1)
+				this.allocator.resize((int)this.length, (int)size);
+			this.length = size;
+			return;
+		}
+		
+		MappedRegionMemory old = new MappedRegionMemory();
+		old.allocator  = this.allocator;
+		old.slot       = this.slot;
+		old.generation = this.generation;
+		old.buffer     = this.buffer;
+		old.length     = this.length;
+		
+		this.allocate(this.allocator, size);
+		this.write(0, old, 0, old.length);
+		old.release();
+	}
+	
+	public boolean pin(){
+		synchronized(this){
+			if(this.slot != -1){
+				if(this.released)
+					return false;
+				
+				return this.allocator.pin(this.slot, this.generation);
+			}
+		}
+		
+		return super.pin();
+	}
+	
+	public void unpin(){
+		if(this.slot != -1)
+			this.allocator.unpin(this.slot, (int)this.length);
+		else
+			super.unpin();
+	}
+	
+	void release(){
+		synchronized(this){
+			if(this.slot != -1){
+				if(this.released)
+					return;
+				
+				//O slot somente é devolvido quando a última fixação for desfeita.
+				this.released = true;
+				this.allocator.release(this.slot, this.generation, (int)this.length);
+				return;
+			}
+		}
+		
+		super.release();
+	}
+	
+	public boolean isReleased(){
+		if(this.slot != -1)
+			return this.released || this.allocator.isReleased(this.slot, this.generation);
+		
+		return super.isReleased();
+	}
+	
+	void free(){
+		//Somente as regiões alocadas diretamente são liberadas por aqui.
+		this.buffer = null;
+	}
+	
+	boolean copiesData(){
+		//As cópias de um slot apontam para os mesmos dados.
+		return this.slot == -1;
+	}
+	
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		stream.writeUTF(this.allocator.getId());
+		stream.writeLong(this.slot);
+		stream.writeLong(this.length);
+		
+		if(this.slot != -1){
+			stream.writeInt(this.generation);
+			return;
+		}
+		
+		byte[] b = new byte[9024];
+		int off  = 0;
+		int len;
+		while(off < this.length && (len = this.read(off, b, 0, b.length)) > 0){
+			stream.write(b, 0, len);
+			off += len;
+		}
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		String id      = stream.readUTF();
+		this.slot      = stream.readLong();
+		this.length    = stream.readLong();
+		this.allocator = MappedMemory.getAllocator(id);
+		
+		if(this.allocator == null)
+			throw new InvalidObjectException("mapped memory not found: " + id);
+		
+		if(this.slot != -1){
+			this.generation = stream.readInt();
+			this.buffer     = this.allocator.getBuffer(this.slot);
+			return;
+		}
+		
+		this.buffer = ByteBuffer.allocateDirect((int)this.length);
+		int len;
+		int thisOff = 0;
+		byte[] b    = new byte[9024];
+		while(thisOff < this.length){
+			int maxLen = (int)Math.min(b.length, this.length - thisOff);
+			len = stream.read(b, 0, maxLen);
+			if(len <= 0){
+				break;
+			}
+			this.write(thisOff, b, 0, len);
+			thisOff += len;
+		}
+	}
+	
+}
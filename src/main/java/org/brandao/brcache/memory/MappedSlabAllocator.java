@@ -0,0 +1,277 @@
+package org.brandao.brcache.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Alocador de memória por classes de tamanho que usa janelas
+ * mapeadas de um arquivo.
+ * <p>
+ * Os slots sobrevivem à serialização das regiões. Por isso, as fixações 
+ * são registradas por slot, e não por instância de região.
+ * </p>
+ * <p>
+ * Cada slot tem uma geração, incrementada quando ele é liberado. Uma 
+ * cópia antiga de uma região não consegue fixar ou liberar o slot depois 
+ * que ele foi entregue a outra região.
+ * </p>
+ *
+ * @author Brandao
+ *
+ */
+class MappedSlabAllocator extends SlabAllocator{
+
+	/**
+	 * Tamanho padrão dos chunks.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8*1024*1024;
+
+	/**
+	 * Quantidade de faixas da tabela de fixações.
+	 */
+	private static final int PIN_STRIPES = 64;
+	
+	/**
+	 * Identificação do alocador.
+	 */
+	private final String id;
+	
+	/**
+	 * Arquivo mapeado.
+	 */
+	private final File file;
+	
+	private final RandomAccessFile randomAccessFile;
+	
+	private final FileChannel channel;
+	
+	/**
+	 * Janelas mapeadas.
+	 */
+	private volatile MappedByteBuffer[] buffers;
+
+	/**
+	 * Fixações por slot, divididas em faixas.
+	 */
+	private final PinStripe[] pins;
+	
+	public MappedSlabAllocator(String id, File file, int chunkSize) throws IOException{
+		super(chunkSize);
+		this.id               = id;
+		this.file             = file;
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		this.channel          = this.randomAccessFile.getChannel();
+		this.buffers          = new MappedByteBuffer[16];
+		this.pins             = new PinStripe[PIN_STRIPES];
+		
+		for(int i=0;i<PIN_STRIPES;i++)
+			this.pins[i] = new PinStripe();
+	}
+
+	protected void createChunk(int index, int size){
+		MappedByteBuffer[] buffers = this.buffers;
+
+		if(index >= buffers.length){
+			MappedByteBuffer[] newBuffers = new MappedByteBuffer[buffers.length << 1];
+			System.arraycopy(buffers, 0, newBuffers, 0, buffers.length);
+			buffers = newBuffers;
+		}
+
+		try{
+			buffers[index] = this.channel.map(FileChannel.MapMode.READ_WRITE, (long)index*size, size);
+		}
+		catch(IOException e){
+			throw new IllegalStateException("fail map " + this.file, e);
+		}
+		
+		this.buffers = buffers;
+	}
+
+	/**
+	 * Obtém o buffer de um slot.
+	 *
+	 * @param slot Identificação do slot.
+	 * @return Buffer.
+	 */
+	public ByteBuffer getBuffer(long slot){
+		ByteBuffer chunk = this.buffers[(int)(slot >>> 32)].duplicate();
+		int offset       = (int)(slot & 0xffffffffL);
+		chunk.limit(offset + this.getSlotSize(slot));
+		chunk.position(offset);
+		return chunk.slice();
+	}
+
+	/**
+	 * Obtém a geração atual de um slot.
+	 * 
+	 * @param slot Identificação do slot.
+	 * @return Geração.
+	 */
+	public int getGeneration(long slot){
+		PinStripe stripe = this.getPinStripe(slot);
+		
+		synchronized(stripe){
+			return stripe.getGeneration(slot);
+		}
+	}
+	
+	/**
+	 * Verifica se um slot foi liberado depois de uma geração.
+	 * 
+	 * @param slot Identificação do slot.
+	 * @param generation Geração obtida na alocação.
+	 * @return <code>true</code> se o slot foi liberado.
+	 */
+	public boolean isReleased(long slot, int generation){
+		return this.getGeneration(slot) != generation;
+	}
+	
+	/**
+	 * Fixa um slot.
+	 * 
+	 * @param slot Identificação do slot.
+	 * @param generation Geração obtida na alocação.
+	 * @return <code>false</code> se o slot foi liberado.
+	 */
+	public boolean pin(long slot, int generation){
+		PinStripe stripe = this.getPinStripe(slot);
+		Long key         = slot;
+		
+		synchronized(stripe){
+			if(stripe.getGeneration(key) != generation)
+				return false;
+			
+			int[] count = stripe.pins.get(key);
+			
+			if(count == null)
+				stripe.pins.put(key, new int[]{1});
+			else
+				count[0]++;
+			
+			return true;
+		}
+	}
+	
+	/**
+	 * Desfaz uma fixação de um slot. Se o slot foi liberado, ele é 
+	 * devolvido ao alocador quando a última fixação for desfeita.
+	 * 
+	 * @param slot Identificação do slot.
+	 * @param size Quantidade de bytes solicitada na alocação.
+	 */
+	public void unpin(long slot, int size){
+		PinStripe stripe = this.getPinStripe(slot);
+		Long key         = slot;
+		
+		synchronized(stripe){
+			int[] count = stripe.pins.get(key);
+			
+			if(count == null)
+				throw new IllegalStateException("region not pinned");
+			
+			if(--count[0] > 0)
+				return;
+			
+			stripe.pins.remove(key);
+			
+			if(!stripe.released.remove(key))
+				return;
+		}
+		
+		this.free(slot, size);
+	}
+	
+	/**
+	 * Libera um slot. Se o slot estiver fixado, ele somente é devolvido 
+	 * ao alocador quando a última fixação for desfeita.
+	 * 
+	 * @param slot Identificação do slot.
+	 * @param generation Geração obtida na alocação.
+	 * @param size Quantidade de bytes solicitada na alocação.
+	 */
+	public void release(long slot, int generation, int size){
+		PinStripe stripe = this.getPinStripe(slot);
+		Long key         = slot;
+		
+		synchronized(stripe){
+			//O slot já foi liberado por outra cópia da região.
+			if(stripe.getGeneration(key) != generation)
+				return;
+			
+			stripe.generations.put(key, new int[]{generation + 1});
+			
+			if(stripe.pins.containsKey(key)){
+				stripe.released.add(key);
+				return;
+			}
+		}
+		
+		this.free(slot, size);
+	}
+	
+	public String getId(){
+		return this.id;
+	}
+	
+	public File getFile(){
+		return this.file;
+	}
+	
+	/**
+	 * Fecha e apaga o arquivo mapeado.
+	 */
+	public void destroy(){
+		try{
+			this.channel.close();
+			this.randomAccessFile.close();
+		}
+		catch(IOException e){
+			throw new IllegalStateException(e);
+		}
+		finally{
+			this.buffers = new MappedByteBuffer[0];
+			this.file.delete();
+		}
+	}
+	
+	private PinStripe getPinStripe(long slot){
+		int hash = (int)(slot ^ (slot >>> 32));
+		return this.pins[(hash ^ (hash >>> 16)) & (PIN_STRIPES - 1)];
+	}
+	
+	/**
+	 * Faixa da tabela de fixações.
+	 */
+	private static final class PinStripe{
+		
+		/**
+		 * Fixações por slot.
+		 */
+		final Map<Long, int[]> pins = new HashMap<Long, int[]>();
+		
+		/**
+		 * Slots liberados que ainda estão fixados.
+		 */
+		final Set<Long> released = new HashSet<Long>();
+		
+		/**
+		 * Gerações dos slots que já foram liberados.
+		 */
+		final Map<Long, int[]> generations = new HashMap<Long, int[]>();
+		
+		int getGeneration(Long slot){
+			int[] generation = this.generations.get(slot);
+			return generation == null? 0 : generation[0];
+		}
+		
+	}
+	
+}
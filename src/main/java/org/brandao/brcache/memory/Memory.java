@@ -32,10 +32,17 @@ public interface Memory {
 	void alloc(long size, RegionMemory region);
 	
 	/**
-	 * Libera uma região da memória.
+	 * Libera uma região da memória. Se a região estiver fixada, a memória
+	 * somente é devolvida quando a última fixação for desfeita.
 	 * 
 	 * @param region Região da memória.
 	 */
 	void release(RegionMemory region);
 	
+	/**
+	 * Libera os recursos usados pela memória. As regiões alocadas não podem 
+	 * mais ser usadas.
+	 */
+	void destroy();
+	
 }
@@ -0,0 +1,27 @@
+package org.brandao.brcache.memory;
+
+/**
+ * Descreve as políticas aplicadas quando o limite de memória é atingido.
+ * 
+ * @author Brandao
+ *
+ */
+public enum MemoryBudgetPolicy {
+
+	/**
+	 * A alocação aguarda a liberação de memória até o tempo limite.
+	 */
+	BLOCK,
+	
+	/**
+	 * É solicitada a remoção de itens do cache. Se não for liberada memória 
+	 * suficiente, a alocação aguarda até o tempo limite.
+	 */
+	EVICT,
+	
+	/**
+	 * A alocação falha imediatamente.
+	 */
+	FAIL;
+	
+}
@@ -0,0 +1,21 @@
+package org.brandao.brcache.memory;
+
+/**
+ * Lançada quando não há memória disponível para uma alocação.
+ * 
+ * @author Brandao
+ *
+ */
+public class MemoryExhaustedException extends RuntimeException{
+
+	private static final long serialVersionUID = -6302226372574420197L;
+
+	public MemoryExhaustedException(String message){
+		super(message);
+	}
+	
+	public MemoryExhaustedException(String message, Throwable cause){
+		super(message, cause);
+	}
+	
+}
@@ -0,0 +1,19 @@
+package org.brandao.brcache.memory;
+
+/**
+ * Libera memória quando o limite de {@link BudgetMemory} é atingido.
+ * 
+ * @author Brandao
+ *
+ */
+public interface MemoryReclaimer {
+
+	/**
+	 * Tenta liberar uma quantidade de memória.
+	 * 
+	 * @param size Quantidade de bytes necessária.
+	 * @return Quantidade de bytes liberados.
+	 */
+	long reclaim(long size);
+	
+}
@@ -1,6 +1,7 @@
 package org.brandao.brcache.memory;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 public interface RegionMemory extends Serializable{
 
@@ -14,6 +15,40 @@ public interface RegionMemory extends Serializable{
 
 	void write(long thisOff, RegionMemory buf, long off, long len);
 
+	/**
+	 * Escreve na região os bytes restantes de um buffer. A posição do 
+	 * buffer não é alterada.
+	 * 
+	 * @param thisOff Posição inicial na região.
+	 * @param buf Buffer de origem.
+	 */
+	void write(long thisOff, ByteBuffer buf);
+
 	byte get(long off);
 	
+	/**
+	 * Obtém uma visão somente leitura de parte da região. Quando a região 
+	 * não pode ser representada por um {@link ByteBuffer}, é retornada 
+	 * uma cópia dos dados.
+	 * 
+	 * @param off Posição inicial na região.
+	 * @param len Quantidade de bytes.
+	 * @return Buffer com posição 0 e limite <code>len</code>.
+	 */
+	ByteBuffer getByteBuffer(long off, int len);
+	
+	/**
+	 * Fixa a região. Enquanto estiver fixada, a memória da região não 
+	 * será devolvida ao alocador, mesmo que ela seja liberada.
+	 * 
+	 * @return <code>true</code> se a região foi fixada. <code>false</code> 
+	 * se a região já foi liberada.
+	 */
+	boolean pin();
+	
+	/**
+	 * Desfaz uma fixação da região.
+	 */
+	void unpin();
+	
 }
@@ -0,0 +1,369 @@
+package org.brandao.brcache.memory;
+
+import java.util.Arrays;
+
+/**
+ * Alocador de memória por classes de tamanho.
+ * <p>
+ * A memória é reservada em grandes blocos (chunks). Cada chunk é dedicado
+ * a uma classe de tamanho e dividido em slots de mesmo tamanho. Os slots
+ * livres ficam em listas separadas por classe e por faixa (stripe),
+ * evitando a disputa entre threads.
+ * </p>
+ * <p>
+ * Um slot é identificado por um valor <code>long</code> formado pelo
+ * índice do chunk (32 bits superiores) e pelo deslocamento dentro do chunk
+ * (32 bits inferiores). A forma como o chunk é obtido é definida pela
+ * implementação.
+ * </p>
+ *
+ * @author Brandao
+ *
+ */
+abstract class SlabAllocator {
+
+	/**
+	 * Menor tamanho de slot.
+	 */
+	public static final int MIN_SLOT_SIZE = 16;
+
+	/**
+	 * Quantidade de classes entre duas potências de dois.
+	 */
+	private static final int CLASS_STEPS = 4;
+
+	/**
+	 * Tamanho dos chunks.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * Tamanho dos slots de cada classe.
+	 */
+	private final int[] classes;
+
+	/**
+	 * Listas de slots livres por classe e faixa.
+	 */
+	private final FreeList[][] freeLists;
+
+	/**
+	 * Quantidade de faixas.
+	 */
+	private final int stripes;
+
+	/**
+	 * Classe de cada chunk.
+	 */
+	private volatile int[] chunkClasses;
+
+	/**
+	 * Quantidade de chunks.
+	 */
+	private int chunks;
+
+	/**
+	 * Quantidade de bytes reservados.
+	 */
+	private volatile long reservedBytes;
+
+	public SlabAllocator(int chunkSize){
+		this.chunkSize    = chunkSize;
+		this.classes      = createClasses(chunkSize >> 3);
+		this.stripes      = getStripes();
+		this.freeLists    = new FreeList[this.classes.length][this.stripes];
+		this.chunkClasses = new int[16];
+		this.chunks       = 0;
+
+		for(int i=0;i<this.freeLists.length;i++){
+			for(int k=0;k<this.stripes;k++){
+				this.freeLists[i][k] = new FreeList();
+			}
+		}
+	}
+
+	/**
+	 * Cria o chunk de memória.
+	 *
+	 * @param index Índice do chunk.
+	 * @param size Tamanho do chunk.
+	 */
+	protected abstract void createChunk(int index, int size);
+
+	/**
+	 * Aloca um slot.
+	 *
+	 * @param size Quantidade de bytes.
+	 * @return Identificação do slot.
+	 */
+	public long allocate(int size){
+
+		if(size > this.getMaxSlotSize())
+			throw new IllegalArgumentException(size + " > " + this.getMaxSlotSize());
+
+		int classIndex      = this.getClassIndex(size);
+		int stripe          = this.getStripe();
+		FreeList[] lists    = this.freeLists[classIndex];
+		FreeList freeList   = lists[stripe];
+		long slot           = freeList.poll();
+
+		for(int i=1;slot == -1 && i<this.stripes;i++){
+			slot = lists[(stripe + i) % this.stripes].poll();
+		}
+
+		if(slot == -1)
+			slot = this.carve(classIndex, freeList);
+
+		freeList.allocated(this.classes[classIndex], size);
+		return slot;
+	}
+
+	/**
+	 * Devolve um slot para a lista de slots livres.
+	 *
+	 * @param slot Identificação do slot.
+	 * @param size Quantidade de bytes solicitada na alocação.
+	 */
+	public void free(long slot, int size){
+		int classIndex    = this.chunkClasses[(int)(slot >>> 32)];
+		FreeList freeList = this.freeLists[classIndex][this.getStripe()];
+		freeList.push(slot);
+		freeList.allocated(-this.classes[classIndex], -size);
+	}
+
+	/**
+	 * Atualiza a quantidade de bytes usados de um slot.
+	 *
+	 * @param oldSize Quantidade anterior.
+	 * @param newSize Nova quantidade.
+	 */
+	public void resize(int oldSize, int newSize){
+		this.freeLists[0][this.getStripe()].allocated(0, newSize - oldSize);
+	}
+
+	/**
+	 * Obtém o tamanho do slot.
+	 *
+	 * @param slot Identificação do slot.
+	 * @return Tamanho.
+	 */
+	public int getSlotSize(long slot){
+		return this.classes[this.chunkClasses[(int)(slot >>> 32)]];
+	}
+
+	/**
+	 * Obtém o tamanho do slot usado para uma quantidade de bytes.
+	 *
+	 * @param size Quantidade de bytes.
+	 * @return Tamanho.
+	 */
+	public int getSlotSize(int size){
+		return this.classes[this.getClassIndex(size)];
+	}
+
+	/**
+	 * Obtém o maior tamanho de slot. Alocações maiores não podem ser
+	 * feitas pelo alocador.
+	 *
+	 * @return Tamanho.
+	 */
+	public int getMaxSlotSize(){
+		return this.classes[this.classes.length - 1];
+	}
+
+	public int getChunkSize(){
+		return this.chunkSize;
+	}
+
+	/**
+	 * Obtém a quantidade de bytes reservados nos chunks.
+	 *
+	 * @return Quantidade.
+	 */
+	public long getReservedBytes(){
+		return this.reservedBytes;
+	}
+
+	/**
+	 * Obtém a quantidade de bytes ocupados pelos slots em uso.
+	 *
+	 * @return Quantidade.
+	 */
+	public long getAllocatedBytes(){
+		long value = 0;
+		for(FreeList[] lists: this.freeLists){
+			for(FreeList list: lists){
+				value += list.allocatedBytes;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Obtém a quantidade de bytes solicitados nas alocações em uso.
+	 *
+	 * @return Quantidade.
+	 */
+	public long getUsedBytes(){
+		long value = 0;
+		for(FreeList[] lists: this.freeLists){
+			for(FreeList list: lists){
+				value += list.usedBytes;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Obtém a fragmentação interna. É a fração dos slots em uso que
+	 * não foi solicitada nas alocações.
+	 *
+	 * @return Fragmentação entre 0 e 1.
+	 */
+	public double getInternalFragmentation(){
+		long allocated = this.getAllocatedBytes();
+		return allocated == 0? 0.0 : 1.0 - (double)this.getUsedBytes()/allocated;
+	}
+
+	/**
+	 * Obtém a fragmentação externa. É a fração da memória reservada que
+	 * está em slots livres.
+	 *
+	 * @return Fragmentação entre 0 e 1.
+	 */
+	public double getExternalFragmentation(){
+		long reserved = this.reservedBytes;
+		return reserved == 0? 0.0 : 1.0 - (double)this.getAllocatedBytes()/reserved;
+	}
+
+	/**
+	 * Obtém a fragmentação total. É a fração da memória reservada que não
+	 * foi solicitada nas alocações.
+	 *
+	 * @return Fragmentação entre 0 e 1.
+	 */
+	public double getFragmentation(){
+		long reserved = this.reservedBytes;
+		return reserved == 0? 0.0 : 1.0 - (double)this.getUsedBytes()/reserved;
+	}
+
+	private synchronized long carve(int classIndex, FreeList freeList){
+
+		long slot = freeList.poll();
+
+		if(slot != -1)
+			return slot;
+
+		int index = this.chunks;
+
+		this.createChunk(index, this.chunkSize);
+
+		int[] chunkClasses = this.chunkClasses;
+
+		if(index >= chunkClasses.length)
+			chunkClasses = Arrays.copyOf(chunkClasses, chunkClasses.length << 1);
+
+		chunkClasses[index] = classIndex;
+		this.chunkClasses   = chunkClasses;
+		this.chunks++;
+		this.reservedBytes += this.chunkSize;
+
+		int slotSize  = this.classes[classIndex];
+		int quantity  = this.chunkSize / slotSize;
+		long[] slots  = new long[quantity - 1];
+		long base     = ((long)index) << 32;
+
+		for(int i=1;i<quantity;i++){
+			slots[i-1] = base | ((long)i*slotSize);
+		}
+
+		freeList.pushAll(slots);
+		return base;
+	}
+
+	private int getClassIndex(int size){
+		int index = Arrays.binarySearch(this.classes, size);
+		return index < 0? -(index + 1) : index;
+	}
+
+	private int getStripe(){
+		return (int)(Thread.currentThread().getId() % this.stripes);
+	}
+
+	private static int getStripes(){
+		int processors = Runtime.getRuntime().availableProcessors();
+		int stripes    = 1;
+
+		while(stripes < processors && stripes < 64)
+			stripes <<= 1;
+
+		return stripes;
+	}
+
+	private static int[] createClasses(int maxSlotSize){
+		int[] classes = new int[64];
+		int count     = 0;
+		int size      = MIN_SLOT_SIZE;
+
+		while(size < 8*MIN_SLOT_SIZE){
+			classes[count++] = size;
+			size += MIN_SLOT_SIZE;
+		}
+
+		while(size <= maxSlotSize){
+			int step = size / CLASS_STEPS;
+			for(int i=0;i<CLASS_STEPS && size <= maxSlotSize;i++){
+				if(count == classes.length)
+					classes = Arrays.copyOf(classes, count << 1);
+				classes[count++] = size;
+				size += step;
+			}
+		}
+
+		return Arrays.copyOf(classes, count);
+	}
+
+	/**
+	 * Lista de slots livres.
+	 */
+	private static class FreeList{
+
+		private long[] slots;
+
+		private int size;
+
+		private long allocatedBytes;
+
+		private long usedBytes;
+
+		public FreeList(){
+			this.slots = new long[16];
+			this.size  = 0;
+		}
+
+		public synchronized long poll(){
+			return this.size == 0? -1 : this.slots[--this.size];
+		}
+
+		public synchronized void push(long slot){
+			if(this.size == this.slots.length)
+				this.slots = Arrays.copyOf(this.slots, this.size << 1);
+			this.slots[this.size++] = slot;
+		}
+
+		public synchronized void pushAll(long[] values){
+			int newSize = this.size + values.length;
+			if(newSize > this.slots.length)
+				this.slots = Arrays.copyOf(this.slots, Math.max(newSize, this.size << 1));
+			System.arraycopy(values, 0, this.slots, this.size, values.length);
+			this.size = newSize;
+		}
+
+		public synchronized void allocated(long allocated, long used){
+			this.allocatedBytes += allocated;
+			this.usedBytes      += used;
+		}
+
+	}
+
+}
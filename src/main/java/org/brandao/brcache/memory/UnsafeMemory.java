@@ -2,24 +2,35 @@ package org.brandao.brcache.memory;
 
 /**
  * Gerencia a memória usada no cache.
+ * <p>
+ * As regiões são obtidas de um alocador por classes de tamanho. Somente
+ * as regiões maiores que o maior slot são alocadas diretamente.
+ * </p>
  * 
  * @author Brandao
  *
  */
 public class UnsafeMemory implements Memory{
 
+	/**
+	 * Alocador compartilhado pelas regiões.
+	 */
+	static final UnsafeSlabAllocator allocator = new UnsafeSlabAllocator();
+	
 	public UnsafeMemory(){
 	}
 	
 	public RegionMemory alloc(long size){
-		long address = UnsafeMemoryUtil.alloc(size);
-		return new UnsafeRegionMemory(address, size);
+		UnsafeRegionMemory r = new UnsafeRegionMemory();
+		r.allocate(size);
+		return r;
 	}
 
 	public void realloc(long size, RegionMemory region) {
 		UnsafeRegionMemory r = (UnsafeRegionMemory)region;
-		long address         = UnsafeMemoryUtil.realloc(r.address, size);
-		r.address            = address;
+		synchronized(r){
+			r.reallocate(size);
+		}
 	}
 	
 	public void alloc(long size, RegionMemory region){
@@ -27,18 +38,56 @@ public class UnsafeMemory implements Memory{
 		if(r.address != null)
 			throw new IllegalStateException();
 		
-		long address = UnsafeMemoryUtil.alloc(size);
-		r.address = address;
+		r.allocate(size);
 	}
 	
 	public void release(RegionMemory region){
-		synchronized(region){
-			UnsafeRegionMemory r = (UnsafeRegionMemory)region;
-			if(r.address == null)
-				return;
-			UnsafeMemoryUtil.free(r.address);
-			r.address = null;
-		}
- 	}
+		UnsafeRegionMemory r = (UnsafeRegionMemory)region;
+		r.release();
+	}
+
+	/**
+	 * Obtém a quantidade de bytes reservados pelo alocador.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getReservedBytes(){
+		return allocator.getReservedBytes();
+	}
 
+	/**
+	 * Obtém a quantidade de bytes ocupados pelos slots em uso.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getAllocatedBytes(){
+		return allocator.getAllocatedBytes();
+	}
+	
+	/**
+	 * Obtém a quantidade de bytes solicitados nas alocações em uso.
+	 * 
+	 * @return Quantidade.
+	 */
+	public long getUsedBytes(){
+		return allocator.getUsedBytes();
+	}
+	
+	/**
+	 * Obtém a fragmentação da memória reservada pelo alocador.
+	 * 
+	 * @return Fragmentação entre 0 e 1.
+	 * @see SlabAllocator#getFragmentation()
+	 */
+	public double getFragmentation(){
+		return allocator.getFragmentation();
+	}
+	
+	/**
+	 * O alocador é compartilhado por todas as instâncias. Não há recursos a 
+	 * liberar.
+	 */
+	public void destroy(){
+	}
+	
 }
@@ -4,9 +4,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 
 public class UnsafeRegionMemory 
-	implements RegionMemory{
+	extends AbstractRegionMemory{
 
 	private static final long serialVersionUID = 5941866368711530651L;
 
@@ -14,9 +15,25 @@ public class UnsafeRegionMemory
 
 	long length;
 	
+	/**
+	 * Slot do alocador. Tem o valor -1 quando a região foi alocada diretamente.
+	 */
+	long slot;
+	
+	/**
+	 * Quantidade de bytes disponíveis na região.
+	 */
+	long capacity;
+	
+	UnsafeRegionMemory(){
+		this.slot = -1;
+	}
+	
 	public UnsafeRegionMemory(long address, Long length) {
-		this.address = address;
-		this.length  = length;
+		this.address  = address;
+		this.length   = length;
+		this.slot     = -1;
+		this.capacity = length;
 	}
 
 	public long size(){
@@ -32,6 +49,19 @@ public class UnsafeRegionMemory
 		return UnsafeMemoryUtil.getByte(this.address, off);
 	}
 	
+	/**
+	 * A memória não é acessível por um {@link ByteBuffer}. É retornada uma cópia.
+	 */
+	public ByteBuffer getByteBuffer(long off, int len){
+		
+		if(off + len > this.length)
+			throw new IndexOutOfBoundsException((off + len) + " > " + this.length);
+		
+		byte[] tmp = new byte[len];
+		UnsafeMemoryUtil.arrayCopy(this.address, off, tmp, 0, len);
+		return ByteBuffer.wrap(tmp).asReadOnlyBuffer();
+	}
+	
 	public int read(long thisOff, byte[] buf, int off, int len){
 		
 		int max = (int)(this.length - thisOff);
@@ -84,6 +114,31 @@ public class UnsafeRegionMemory
 		//}
 	}
 
+	public void write(long thisOff, ByteBuffer buf){
+		
+		int len = buf.remaining();
+		
+		if(thisOff + len > this.length)
+			throw new IndexOutOfBoundsException((thisOff + len) + " > " + this.length);
+		
+		if(buf.hasArray()){
+			UnsafeMemoryUtil.arrayCopy(buf.array(), buf.arrayOffset() + buf.position(), 
+					this.address, thisOff, len);
+		}
+		else{
+			ByteBuffer src = buf.duplicate();
+			byte[] tmp     = new byte[Math.min(len, 8192)];
+			long off       = thisOff;
+			
+			while(src.hasRemaining()){
+				int copy = Math.min(tmp.length, src.remaining());
+				src.get(tmp, 0, copy);
+				UnsafeMemoryUtil.arrayCopy(tmp, 0, this.address, off, copy);
+				off += copy;
+			}
+		}
+	}
+	
 	public void write(long thisOff, RegionMemory buf, long off, long len){
 		
 		long max = (this.length - thisOff);
@@ -116,9 +171,60 @@ public class UnsafeRegionMemory
 		
     }
 
+    void allocate(long size){
+    	UnsafeSlabAllocator allocator = UnsafeMemory.allocator;
+    	
+    	if(size <= allocator.getMaxSlotSize()){
+    		this.slot     = allocator.allocate((int)size);
+    		this.address  = allocator.getAddress(this.slot);
+    		this.capacity = allocator.getSlotSize(this.slot);
+    	}
+    	else{
+    		this.slot     = -1;
+    		this.address  = UnsafeMemoryUtil.alloc(size);
+    		this.capacity = size;
+    	}
+    	
+    	this.length = size;
+    }
+    
+    void reallocate(long size){
+    	
+    	if(size <= this.capacity){
+    		if(this.slot != -1)
+    			UnsafeMemory.allocator.resize((int)this.length, (int)size);
+    		this.length = size;
+    		return;
+    	}
+    	
+    	long oldAddress = this.address;
+    	long oldSlot    = this.slot;
+    	long oldLength  = this.length;
+    	
+    	this.allocate(size);
+    	UnsafeMemoryUtil.arrayCopy(oldAddress, 0, this.address, 0, oldLength);
+    	
+    	if(oldSlot != -1)
+    		UnsafeMemory.allocator.free(oldSlot, (int)oldLength);
+    	else
+    		UnsafeMemoryUtil.free(oldAddress);
+    }
+    
+    void free(){
+    	
+    	if(this.address == null)
+    		return;
+    	
+    	if(this.slot != -1)
+    		UnsafeMemory.allocator.free(this.slot, (int)this.length);
+    	else
+    		UnsafeMemoryUtil.free(this.address);
+    	
+    	this.address = null;
+    }
+    
     private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
-    	this.length  = stream.readLong();
-    	this.address = UnsafeMemoryUtil.alloc(length);
+    	this.allocate(stream.readLong());
 		int len;
 		int thisOff = 0;
 		byte[] b = new byte[9024];
@@ -137,10 +243,7 @@ public class UnsafeRegionMemory
     protected void finalize() throws Throwable{
     	try{
     		synchronized(this){
-    			if(this.address != null){
-	    			UnsafeMemoryUtil.free(this.address);
-	    			this.address = null;
-    			}
+    			this.free();
     		}
     	}
     	finally{
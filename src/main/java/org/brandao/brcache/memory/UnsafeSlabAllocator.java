@@ -0,0 +1,54 @@
+package org.brandao.brcache.memory;
+
+/**
+ * Alocador de memória por classes de tamanho que usa chunks
+ * alocados com <code>sun.misc.Unsafe</code>.
+ *
+ * @author Brandao
+ *
+ */
+class UnsafeSlabAllocator extends SlabAllocator{
+
+	/**
+	 * Tamanho padrão dos chunks.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024*1024;
+
+	/**
+	 * Endereço dos chunks.
+	 */
+	private volatile long[] addresses;
+
+	public UnsafeSlabAllocator(){
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public UnsafeSlabAllocator(int chunkSize){
+		super(chunkSize);
+		this.addresses = new long[16];
+	}
+
+	protected void createChunk(int index, int size){
+		long[] addresses = this.addresses;
+
+		if(index >= addresses.length){
+			long[] newAddresses = new long[addresses.length << 1];
+			System.arraycopy(addresses, 0, newAddresses, 0, addresses.length);
+			addresses = newAddresses;
+		}
+
+		addresses[index] = UnsafeMemoryUtil.alloc(size);
+		this.addresses   = addresses;
+	}
+
+	/**
+	 * Obtém o endereço de um slot.
+	 *
+	 * @param slot Identificação do slot.
+	 * @return Endereço.
+	 */
+	public long getAddress(long slot){
+		return this.addresses[(int)(slot >>> 32)] + (slot & 0xffffffffL);
+	}
+
+}
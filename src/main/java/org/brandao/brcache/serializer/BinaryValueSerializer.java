@@ -0,0 +1,329 @@
+package org.brandao.brcache.serializer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codificação binária compacta dos valores.
+ * <p>
+ * Cada valor é precedido por um byte que identifica o seu tipo. Os tipos
+ * primitivos, <code>String</code> e <code>byte[]</code> são codificados
+ * sem descritores de classe. Os inteiros usam tamanho variável. As classes
+ * registradas com {@link #register(int, Class, ValueCodec)} são
+ * identificadas por um número. Os demais valores usam a serialização
+ * padrão do Java.
+ * </p>
+ * <pre>
+ * ex:
+ *     BinaryValueSerializer serializer = new BinaryValueSerializer();
+ *     serializer.register(1, Point.class, new PointCodec());
+ *     cache.setValueSerializer(serializer);
+ * </pre>
+ *
+ * @author Brandao
+ *
+ */
+public class BinaryValueSerializer implements ValueSerializer{
+
+	private static final int NULL       = 0;
+
+	private static final int TRUE       = 1;
+
+	private static final int FALSE      = 2;
+
+	private static final int BYTE       = 3;
+
+	private static final int SHORT      = 4;
+
+	private static final int CHAR       = 5;
+
+	private static final int INT        = 6;
+
+	private static final int LONG       = 7;
+
+	private static final int FLOAT      = 8;
+
+	private static final int DOUBLE     = 9;
+
+	private static final int STRING     = 10;
+
+	private static final int BYTES      = 11;
+
+	private static final int REGISTERED = 12;
+
+	private static final int JAVA       = 13;
+
+	private static final String CHARSET = "UTF-8";
+
+	private static final Map<Class<?>, Integer> TYPES;
+
+	static{
+		TYPES = new HashMap<Class<?>, Integer>();
+		TYPES.put(Boolean.class,   TRUE);
+		TYPES.put(Byte.class,      BYTE);
+		TYPES.put(Short.class,     SHORT);
+		TYPES.put(Character.class, CHAR);
+		TYPES.put(Integer.class,   INT);
+		TYPES.put(Long.class,      LONG);
+		TYPES.put(Float.class,     FLOAT);
+		TYPES.put(Double.class,    DOUBLE);
+		TYPES.put(String.class,    STRING);
+		TYPES.put(byte[].class,    BYTES);
+	}
+
+	private Map<Class<?>, Registration> classes;
+
+	private Map<Integer, Registration> ids;
+
+	public BinaryValueSerializer(){
+		this.classes = new ConcurrentHashMap<Class<?>, Registration>();
+		this.ids     = new ConcurrentHashMap<Integer, Registration>();
+	}
+
+	/**
+	 * Registra uma classe. O número deve ser o mesmo em todas as instâncias
+	 * que leem os valores.
+	 *
+	 * @param id Número da classe.
+	 * @param type Classe.
+	 * @param codec Codificador dos valores da classe.
+	 */
+	public synchronized <T> void register(int id, Class<T> type, ValueCodec<T> codec){
+
+		if(id < 0)
+			throw new IllegalArgumentException("id: " + id);
+
+		if(this.ids.containsKey(id) || this.classes.containsKey(type))
+			throw new IllegalArgumentException("already registered: " + id + ", " + type.getName());
+
+		Registration registration = new Registration(id, codec);
+		this.ids.put(id, registration);
+		this.classes.put(type, registration);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void writeObject(Object value, OutputStream out) throws IOException {
+
+		if(value == null){
+			out.write(NULL);
+			return;
+		}
+
+		byte[] buf   = new byte[11];
+		Integer type = TYPES.get(value.getClass());
+
+		if(type == null){
+			Registration registration = this.classes.get(value.getClass());
+
+			if(registration != null){
+				int len = putVarLong(buf, putByte(buf, 0, REGISTERED), registration.id);
+				out.write(buf, 0, len);
+
+				DataOutputStream dout =
+						new DataOutputStream(new BufferedOutputStream(out, 512));
+				((ValueCodec<Object>)registration.codec).write(value, dout);
+				dout.flush();
+			}
+			else{
+				out.write(JAVA);
+				ObjectOutputStream oout = new ObjectOutputStream(out);
+				oout.writeObject(value);
+				oout.flush();
+			}
+			return;
+		}
+
+		int len;
+
+		switch(type){
+		case TRUE:
+			len = putByte(buf, 0, ((Boolean)value).booleanValue()? TRUE : FALSE);
+			break;
+		case BYTE:
+			len = putByte(buf, putByte(buf, 0, BYTE), ((Byte)value).byteValue());
+			break;
+		case SHORT:
+			len = putFixed(buf, putByte(buf, 0, SHORT), ((Short)value).shortValue(), 2);
+			break;
+		case CHAR:
+			len = putFixed(buf, putByte(buf, 0, CHAR), ((Character)value).charValue(), 2);
+			break;
+		case INT:
+			len = putVarLong(buf, putByte(buf, 0, INT), zigZag(((Integer)value).intValue()));
+			break;
+		case LONG:
+			len = putVarLong(buf, putByte(buf, 0, LONG), zigZag(((Long)value).longValue()));
+			break;
+		case FLOAT:
+			len = putFixed(buf, putByte(buf, 0, FLOAT), Float.floatToIntBits((Float)value), 4);
+			break;
+		case DOUBLE:
+			len = putFixed(buf, putByte(buf, 0, DOUBLE), Double.doubleToLongBits((Double)value), 8);
+			break;
+		default:
+			byte[] data = type == STRING? ((String)value).getBytes(CHARSET) : (byte[])value;
+			len = putVarLong(buf, putByte(buf, 0, type), data.length);
+			out.write(buf, 0, len);
+			out.write(data, 0, data.length);
+			return;
+		}
+
+		out.write(buf, 0, len);
+	}
+
+	public Object readObject(InputStream in) throws IOException, ClassNotFoundException {
+
+		int tag = in.read();
+
+		switch(tag){
+		case -1:
+			throw new EOFException();
+		case NULL:
+			return null;
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case BYTE:
+			return Byte.valueOf((byte)readFixed(in, 1));
+		case SHORT:
+			return Short.valueOf((short)readFixed(in, 2));
+		case CHAR:
+			return Character.valueOf((char)readFixed(in, 2));
+		case INT:
+			return Integer.valueOf((int)unZigZag(readVarLong(in)));
+		case LONG:
+			return Long.valueOf(unZigZag(readVarLong(in)));
+		case FLOAT:
+			return Float.valueOf(Float.intBitsToFloat((int)readFixed(in, 4)));
+		case DOUBLE:
+			return Double.valueOf(Double.longBitsToDouble(readFixed(in, 8)));
+		case STRING:
+			return new String(readBytes(in), CHARSET);
+		case BYTES:
+			return readBytes(in);
+		case REGISTERED:
+			int id = (int)readVarLong(in);
+			Registration registration = this.ids.get(id);
+
+			if(registration == null)
+				throw new ClassNotFoundException("class not registered: " + id);
+
+			return registration.codec.read(new DataInputStream(in));
+		case JAVA:
+			ObjectInputStream oin = new ObjectInputStream(in);
+			return oin.readObject();
+		default:
+			throw new StreamCorruptedException("invalid type: " + tag);
+		}
+	}
+
+	private static long zigZag(long value){
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value){
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static int putByte(byte[] buf, int off, int value){
+		buf[off] = (byte)value;
+		return off + 1;
+	}
+
+	private static int putFixed(byte[] buf, int off, long value, int size){
+		for(int i=size-1;i>=0;i--){
+			buf[off++] = (byte)(value >>> (i << 3));
+		}
+		return off;
+	}
+
+	private static int putVarLong(byte[] buf, int off, long value){
+		while((value & ~0x7FL) != 0){
+			buf[off++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buf[off++] = (byte)value;
+		return off;
+	}
+
+	private static long readFixed(InputStream in, int size) throws IOException{
+		long value = 0;
+		for(int i=0;i<size;i++){
+			value = (value << 8) | readByte(in);
+		}
+		return value;
+	}
+
+	private static long readVarLong(InputStream in) throws IOException{
+		long value = 0;
+		int shift  = 0;
+		int b;
+
+		do{
+			if(shift > 63)
+				throw new StreamCorruptedException("invalid varint");
+
+			b      = readByte(in);
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		}while((b & 0x80) != 0);
+
+		return value;
+	}
+
+	private static byte[] readBytes(InputStream in) throws IOException{
+		long len = readVarLong(in);
+
+		if(len < 0 || len > Integer.MAX_VALUE)
+			throw new StreamCorruptedException("invalid length: " + len);
+
+		byte[] data = new byte[(int)len];
+		int off     = 0;
+
+		while(off < data.length){
+			int read = in.read(data, off, data.length - off);
+
+			if(read == -1)
+				throw new EOFException();
+
+			off += read;
+		}
+
+		return data;
+	}
+
+	private static int readByte(InputStream in) throws IOException{
+		int b = in.read();
+
+		if(b == -1)
+			throw new EOFException();
+
+		return b;
+	}
+
+	private static class Registration{
+
+		public final int id;
+
+		public final ValueCodec<?> codec;
+
+		public Registration(int id, ValueCodec<?> codec){
+			this.id    = id;
+			this.codec = codec;
+		}
+
+	}
+
+}
@@ -0,0 +1,33 @@
+package org.brandao.brcache.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * Usa a serialização padrão do Java. Os valores devem implementar
+ * {@link Serializable}.
+ *
+ * @author Brandao
+ *
+ */
+public class JavaValueSerializer
+	implements ValueSerializer, Serializable{
+
+	private static final long serialVersionUID = 2470873541734460411L;
+
+	public void writeObject(Object value, OutputStream out) throws IOException {
+		ObjectOutputStream oout = new ObjectOutputStream(out);
+		oout.writeObject(value);
+		oout.flush();
+	}
+
+	public Object readObject(InputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream oin = new ObjectInputStream(in);
+		return oin.readObject();
+	}
+
+}
@@ -0,0 +1,35 @@
+package org.brandao.brcache.serializer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Codifica os valores de uma classe registrada em
+ * {@link BinaryValueSerializer}.
+ *
+ * @author Brandao
+ *
+ * @param <T> Classe do valor.
+ */
+public interface ValueCodec<T> {
+
+	/**
+	 * Escreve os campos do valor.
+	 *
+	 * @param value Valor.
+	 * @param out Destino.
+	 * @throws IOException Lançada se ocorrer uma falha ao escrever o valor.
+	 */
+	void write(T value, DataOutput out) throws IOException;
+
+	/**
+	 * Lê os campos de um valor.
+	 *
+	 * @param in Origem.
+	 * @return Valor.
+	 * @throws IOException Lançada se ocorrer uma falha ao ler o valor.
+	 */
+	T read(DataInput in) throws IOException;
+
+}
@@ -0,0 +1,38 @@
+package org.brandao.brcache.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Converte os valores do cache em bytes e vice-versa.
+ * <p>
+ * A implementação é definida na configuração do cache com a propriedade
+ * <code>value_serializer</code>.
+ * </p>
+ *
+ * @author Brandao
+ *
+ */
+public interface ValueSerializer {
+
+	/**
+	 * Escreve o valor no fluxo. O fluxo não deve ser fechado.
+	 *
+	 * @param value Valor.
+	 * @param out Fluxo.
+	 * @throws IOException Lançada se ocorrer uma falha ao escrever o valor.
+	 */
+	void writeObject(Object value, OutputStream out) throws IOException;
+
+	/**
+	 * Lê um valor do fluxo.
+	 *
+	 * @param in Fluxo.
+	 * @return Valor.
+	 * @throws IOException Lançada se ocorrer uma falha ao ler o valor.
+	 * @throws ClassNotFoundException Lançada se a classe do valor não for encontrada.
+	 */
+	Object readObject(InputStream in) throws IOException, ClassNotFoundException;
+
+}
@@ -4,6 +4,7 @@ import org.brandao.brcache.BRCacheConfig;
 import org.brandao.brcache.CacheConstants;
 import org.brandao.brcache.Configuration;
 import org.brandao.brcache.collections.DiskSwapper;
+import org.brandao.brcache.memory.MappedMemory;
 
 class BRCacheTransactionConfig extends BRCacheConfig{
 
@@ -25,15 +26,24 @@ class BRCacheTransactionConfig extends BRCacheConfig{
         this.dataPageSize        = config.getLong("transaction_data_page_size",			"512b");
         this.dataSwapFactor      = config.getDouble("transaction_data_swap_factor",		"0.2");
         this.maxSizeEntry        = config.getLong("transaction_max_size_entry",			"16k");
+        this.dataInlineSize      = config.getInt("transaction_data_inline_size",		"32");
         this.maxSizeKey          = config.getInt("max_size_key",						"48");
         this.swapperThread       = 1;
         this.dataPath            = config.getString("data_path",			"/var/brcache") + "/tx";
         this.swapper         = this.createSwapper(config.getString(CacheConstants.SWAPPER_TYPE,"file"), classLoader);
         this.memory          = this.createMemory(config.getString(CacheConstants.MEMORY_ACCESS_TYPE,"heap"), classLoader);
+        this.valueSerializer = this.createValueSerializer(config.getString(CacheConstants.VALUE_SERIALIZER,"java"), classLoader);
+        this.accessTimeGranularity = config.getLong(CacheConstants.ACCESS_TIME_GRANULARITY,"1000");
+        this.expirationInterval    = config.getLong(CacheConstants.EXPIRATION_INTERVAL,"1000");
+        this.indexEngine           = config.getString(CacheConstants.INDEX_ENGINE,"tree");
         
         if(this.swapper instanceof DiskSwapper){
         	((DiskSwapper)this.swapper).setRootPath(this.dataPath);
         }
+        
+        if(this.memory instanceof MappedMemory){
+        	((MappedMemory)this.memory).setRootPath(this.dataPath);
+        }
     }
 	
 }
@@ -3,6 +3,7 @@ package org.brandao.brcache.tx;
 import org.brandao.brcache.Configuration;
 import org.brandao.brcache.collections.Swapper;
 import org.brandao.brcache.memory.Memory;
+import org.brandao.brcache.serializer.ValueSerializer;
 
 class BRCacheTransactionConfigWrapper extends BRCacheTransactionConfig{
 
@@ -140,6 +141,14 @@ class BRCacheTransactionConfigWrapper extends BRCacheTransactionConfig{
 		wrapper.setSwapper(swapper);
 	}
 
+	public int getDataInlineSize() {
+		return wrapper.getDataInlineSize();
+	}
+
+	public void setDataInlineSize(int dataInlineSize) {
+		wrapper.setDataInlineSize(dataInlineSize);
+	}
+
 	public Memory getMemory() {
 		return wrapper.getMemory();
 	}
@@ -147,5 +156,13 @@ class BRCacheTransactionConfigWrapper extends BRCacheTransactionConfig{
 	public void setMemory(Memory memory) {
 		this.wrapper.setMemory(memory);
 	}
+
+	public ValueSerializer getValueSerializer() {
+		return wrapper.getValueSerializer();
+	}
+
+	public void setValueSerializer(ValueSerializer valueSerializer) {
+		this.wrapper.setValueSerializer(valueSerializer);
+	}
 	
 }
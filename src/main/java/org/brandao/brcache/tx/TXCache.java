@@ -21,6 +21,8 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.concurrent.Future;
 
 import org.brandao.brcache.BasicCache;
 import org.brandao.brcache.Cache;
@@ -555,6 +557,20 @@ public class TXCache
 		}
     }	
     
+    /**
+     * A consulta por prefixo não é suportada em transações.
+     */
+    public Iterator<String> keys(String prefix){
+		throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * A remoção por prefixo não é suportada em transações.
+     */
+    public Future<Integer> removeByPrefix(String prefix) throws StorageException{
+		throw new UnsupportedOperationException();
+    }
+    
     /**
      * Obtém a quantidade de itens recuperados.
      * @return Quantidade de itens recuperados.
@@ -603,6 +619,30 @@ public class TXCache
         return this.cache.getCountRemovedData();
     }
 
+    /**
+     * Obtém a quantidade de itens removidos pela política de remoção.
+     * @return Quantidade de itens removidos.
+     */
+    public long getCountEvicted() {
+        return this.cache.getCountEvicted();
+    }
+
+    /**
+     * Obtém a quantidade de itens armazenados.
+     * @return Quantidade de itens.
+     */
+    public long getLiveEntries() {
+        return this.cache.getLiveEntries();
+    }
+
+    /**
+     * Obtém a quantidade de bytes dos itens armazenados.
+     * @return Quantidade de bytes.
+     */
+    public long getLiveBytes() {
+        return this.cache.getLiveBytes();
+    }
+
     /* métodos internos */
     
     private Object executeMethodInTX(Method method, 
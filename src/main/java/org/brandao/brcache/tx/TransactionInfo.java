@@ -4,8 +4,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -172,10 +170,7 @@ class TransactionInfo implements Serializable {
 			String key, Object value, long timeToLive, long timeToIdle) throws StorageException {
 		try{
 			ByteArrayOutputStream bout = new ByteArrayOutputStream();
-			ObjectOutputStream oout = new ObjectOutputStream(bout);
-			oout.writeObject(value);
-			oout.flush();
-			oout.close();
+			cache.getValueSerializer().writeObject(value, bout);
 			return this.putStream(
 				manager, cache, key, new ByteArrayInputStream(bout.toByteArray()), 
 				timeToLive, timeToIdle);
@@ -224,8 +219,12 @@ class TransactionInfo implements Serializable {
 		try{
 			InputStream in = this.getStream(manager, cache, key, forUpdate);
 			if(in != null){
-				ObjectInputStream oin = new ObjectInputStream(in);
-				return oin.readObject();
+				try{
+					return cache.getValueSerializer().readObject(in);
+				}
+				finally{
+					in.close();
+				}
 			}
 			else
 				return null;
@@ -292,7 +291,13 @@ class TransactionInfo implements Serializable {
     		else{
         		this.manageItem(manager, cache, key, this.timeout);
     			this.updated.add(key);
-    			return cache.getStream(key) != null;
+    			InputStream in = cache.getStream(key);
+    			
+    			if(in == null)
+    				return false;
+    			
+    			in.close();
+    			return true;
     		}
     	}
 		catch(CacheException e){
@@ -0,0 +1,45 @@
+package org.brandao.brcache;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class AccessTimeBufferTest extends TestCase{
+
+	private static final String KEY = "teste";
+	
+	public void testRemoveKeepsNewerAccess(){
+		AccessTimeBuffer buffer = new AccessTimeBuffer(0);
+		long now                = System.currentTimeMillis();
+		
+		DataMap map = new DataMap();
+		map.setId(1);
+		map.setTimeToIdle(1000);
+		buffer.access(KEY, map, now);
+		
+		AccessTimeBuffer.Access access = pending(buffer);
+		assertSame(map, access.getMap());
+		
+		//o item foi lido de novo antes da remoção do acesso aplicado.
+		DataMap map2 = new DataMap();
+		map2.setId(1);
+		map2.setTimeToIdle(1000);
+		buffer.access(KEY, map2, now + 100);
+		
+		assertFalse(buffer.remove(KEY, access));
+		assertSame(map2, pending(buffer).getMap());
+		
+		assertTrue(buffer.remove(KEY, pending(buffer)));
+		assertFalse(buffer.getPending().iterator().hasNext());
+	}
+	
+	private static AccessTimeBuffer.Access pending(AccessTimeBuffer buffer){
+		Iterator<Map.Entry<String, AccessTimeBuffer.Access>> i = buffer.getPending().iterator();
+		Map.Entry<String, AccessTimeBuffer.Access> e           = i.next();
+		assertEquals(KEY, e.getKey());
+		assertFalse(i.hasNext());
+		return e.getValue();
+	}
+	
+}
@@ -1,12 +1,19 @@
 package org.brandao.brcache;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
+import org.brandao.brcache.memory.DirectMemory;
 import org.brandao.brcache.memory.Memory;
 import org.brandao.brcache.memory.RegionMemory;
 import org.brandao.brcache.memory.UnsafeMemory;
@@ -116,5 +123,94 @@ public class CacheInputStreamTest extends TestCase{
 		}
 		assertTrue(Arrays.equals(dta, out.toByteArray()));
 	}
+
+	public void testWriteToChannel() throws IOException{
+		byte[] dta = new byte[1030];
+		r.nextBytes(dta);
+		
+		CacheInputStream in = new CacheInputStream(c, null, this.createBlocks(new DirectMemory(), dta, 256));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(dta.length, in.writeTo(Channels.newChannel(out)));
+		assertTrue(Arrays.equals(dta, out.toByteArray()));
+	}
+	
+	public void testTransferToGatheringChannel() throws IOException{
+		byte[] dta = new byte[1030];
+		r.nextBytes(dta);
+		
+		File file = File.createTempFile("brcache", ".tmp");
+		file.deleteOnExit();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try{
+			FileChannel channel = raf.getChannel();
+			CacheInputStream in = new CacheInputStream(c, null, this.createBlocks(memory, dta, 256));
+			
+			long sent = 0;
+			while(sent < 1000){
+				sent += in.transferTo(10 + sent, 1000 - sent, channel);
+			}
+			
+			ByteBuffer result = ByteBuffer.allocate(1000);
+			channel.read(result, 0);
+			assertTrue(Arrays.equals(Arrays.copyOfRange(dta, 10, 1010), result.array()));
+		}
+		finally{
+			raf.close();
+		}
+	}
+	
+	public void testWriteToAfterEndOfStream() throws Exception{
+		byte[] dta = new byte[4096];
+		r.nextBytes(dta);
+		c.putStream("key", new ByteArrayInputStream(dta), 0, 0);
+		
+		CacheInputStream in = (CacheInputStream)c.getStream("key");
+		byte[] b = new byte[1024];
+		while(in.read(b) != -1);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		in.writeTo(out);
+		in.close();
+		assertTrue(Arrays.equals(dta, out.toByteArray()));
+	}
+	
+	public void testReadAfterClose() throws Exception{
+		byte[] dta = new byte[4096];
+		r.nextBytes(dta);
+		c.putStream("key", new ByteArrayInputStream(dta), 0, 0);
+		
+		CacheInputStream in = (CacheInputStream)c.getStream("key");
+		in.close();
+		
+		try{
+			in.read(new byte[10], 0, 10);
+			fail("expected IOException");
+		}
+		catch(IOException e){
+		}
+		
+		try{
+			in.writeTo(new ByteArrayOutputStream());
+			fail("expected IOException");
+		}
+		catch(IOException e){
+		}
+	}
+	
+	private Block[] createBlocks(Memory memory, byte[] dta, int blockLen){
+		List<Block> blocks = new ArrayList<Block>();
+		int maxLen         = dta.length;
+		int off            = 0;
+		for(int i=0;maxLen > 0;i++){
+			int len = maxLen > blockLen? blockLen : maxLen;
+			RegionMemory r = memory.alloc(len);
+			r.write(0, dta, off, len);
+			blocks.add(new Block(0, i, r, len));
+			
+			off    += len;
+			maxLen -= len;
+		}
+		return blocks.toArray(new Block[]{});
+	}
 	
 }
@@ -1,6 +1,18 @@
 package org.brandao.brcache;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.brandao.brcache.memory.BudgetMemory;
+import org.brandao.brcache.serializer.BinaryValueSerializer;
 
 import junit.framework.TestCase;
 
@@ -124,6 +136,323 @@ public class CacheTest extends TestCase{
 		TestCase.assertTrue(cache.remove(KEY, VALUE));
 	}
 
+	public void testRemoveWhileReading() throws StorageException, RecoverException, IOException, ClassNotFoundException{
+		Cache cache = new Cache();
+		cache.put(KEY, VALUE, 0, 0);
+		InputStream in = cache.getStream(KEY);
+		TestCase.assertTrue(cache.remove(KEY));
+		TestCase.assertNull(cache.get(KEY));
+		TestCase.assertEquals(VALUE, CacheTestHelper.toObject(in));
+		in.close();
+	}
+	
+	public void testPutStreamShortReads() throws StorageException, RecoverException, IOException{
+		Cache cache = new Cache();
+		byte[] value = new byte[3000];
+		for(int i=0;i<value.length;i++){
+			value[i] = (byte)i;
+		}
+		
+		//o fluxo entrega no máximo 7 bytes por leitura.
+		InputStream in = new ByteArrayInputStream(value){
+			public synchronized int read(byte[] b, int off, int len){
+				return super.read(b, off, Math.min(len, 7));
+			}
+		};
+		
+		cache.putStream(KEY, in, 0, 0);
+		
+		InputStream stream = cache.getStream(KEY);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[100];
+		int read;
+		while((read = stream.read(buf)) != -1){
+			out.write(buf, 0, read);
+		}
+		stream.close();
+		
+		TestCase.assertTrue(Arrays.equals(value, out.toByteArray()));
+	}
+	
+	public void testInlineValue() throws StorageException, RecoverException, IOException{
+		BRCacheConfig config = new BRCacheConfig(new Configuration());
+		config.setDataInlineSize(16);
+		Cache cache = new Cache(config);
+		
+		byte[] small = new byte[]{1, 2, 3, 4, 5};
+		byte[] large = new byte[17];
+		
+		cache.putStream(KEY, new ByteArrayInputStream(small), 0, 0);
+		cache.putStream(VALUE, new ByteArrayInputStream(large), 0, 0);
+		
+		CacheInputStream in = (CacheInputStream)cache.getStream(KEY);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		in.writeTo(out);
+		in.close();
+		TestCase.assertTrue(Arrays.equals(small, out.toByteArray()));
+		
+		in = (CacheInputStream)cache.getStream(VALUE);
+		out = new ByteArrayOutputStream();
+		in.writeTo(out);
+		in.close();
+		TestCase.assertTrue(Arrays.equals(large, out.toByteArray()));
+		
+		TestCase.assertTrue(cache.remove(KEY));
+		TestCase.assertNull(cache.getStream(KEY));
+	}
+	
+	public void testPutBuffers() throws StorageException, RecoverException, IOException{
+		Cache cache = new Cache();
+		byte[] value = new byte[3000];
+		for(int i=0;i<value.length;i++){
+			value[i] = (byte)i;
+		}
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(1500);
+		direct.put(value, 1000, 1500).flip();
+		ByteBuffer[] buffers = new ByteBuffer[]{
+			ByteBuffer.wrap(value, 0, 1000),
+			direct,
+			ByteBuffer.wrap(value, 2500, 500).asReadOnlyBuffer()
+		};
+		
+		cache.putBuffers(KEY, buffers, 0, 0);
+		TestCase.assertEquals(1500, direct.remaining());
+		
+		CacheBuffers result = cache.getBuffers(KEY);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try{
+			TestCase.assertEquals(value.length, result.getSize());
+			for(ByteBuffer buffer: result.getBuffers()){
+				byte[] tmp = new byte[buffer.remaining()];
+				buffer.get(tmp);
+				out.write(tmp);
+			}
+		}
+		finally{
+			result.close();
+		}
+		
+		TestCase.assertTrue(Arrays.equals(value, out.toByteArray()));
+		TestCase.assertNull(cache.getBuffers(VALUE));
+	}
+	
+	public void testPutStreamWithLength() throws StorageException, RecoverException, IOException{
+		Cache cache = new Cache();
+		byte[] value = new byte[2500];
+		for(int i=0;i<value.length;i++){
+			value[i] = (byte)i;
+		}
+		
+		TestCase.assertFalse(cache.putStream(KEY, new ByteArrayInputStream(value), value.length, 0, 0));
+		
+		CacheInputStream in = (CacheInputStream)cache.getStream(KEY);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		in.writeTo(out);
+		in.close();
+		TestCase.assertTrue(Arrays.equals(value, out.toByteArray()));
+	}
+
+	public void testEntryWithSeveralExtents() throws StorageException, RecoverException, IOException{
+		Cache cache = new Cache();
+		byte[][] values = new byte[4][];
+		for(int k=0;k<values.length;k++){
+			values[k] = new byte[k == 3? 10000 : 4000];
+			for(int i=0;i<values[k].length;i++){
+				values[k][i] = (byte)(i + k);
+			}
+		}
+
+		for(int k=0;k<3;k++){
+			cache.putStream("key" + k, new ByteArrayInputStream(values[k]), values[k].length, 0, 0);
+		}
+
+		CacheInputStream in = (CacheInputStream)cache.getStream("key0");
+		long[] removed = in.getMap().getExtents();
+		in.close();
+		TestCase.assertEquals(2, removed.length);
+		TestCase.assertTrue(cache.remove("key0"));
+
+		//reutiliza os blocos liberados e reserva novos após o último item.
+		cache.putStream("key3", new ByteArrayInputStream(values[3]), values[3].length, 0, 0);
+
+		in = (CacheInputStream)cache.getStream("key3");
+		long[] extents = in.getMap().getExtents();
+		TestCase.assertTrue(extents.length > 2);
+		TestCase.assertEquals(removed[0], extents[0]);
+		TestCase.assertEquals(removed[1], extents[1]);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		in.writeTo(out);
+		in.close();
+		TestCase.assertTrue(Arrays.equals(values[3], out.toByteArray()));
+
+		for(int k=1;k<3;k++){
+			in = (CacheInputStream)cache.getStream("key" + k);
+			out = new ByteArrayOutputStream();
+			in.writeTo(out);
+			in.close();
+			TestCase.assertTrue(Arrays.equals(values[k], out.toByteArray()));
+		}
+	}
+
+	public void testPutStreamWithLengthTooLarge() throws StorageException{
+		BRCacheConfig config = new BRCacheConfig(new Configuration());
+		config.setMaxSizeEntry(1024);
+		Cache cache = new Cache(config);
+		
+		InputStream in = new InputStream(){
+			public int read(){
+				throw new IllegalStateException("stream must not be read");
+			}
+		};
+		
+		try{
+			cache.putStream(KEY, in, 2048, 0, 0);
+			fail("expected StorageException");
+		}
+		catch(StorageException e){
+			TestCase.assertEquals(CacheErrors.ERROR_1007, e.getError());
+		}
+	}
+	
+	public void testPutStreamWithLengthTruncated() throws StorageException{
+		Cache cache = new Cache();
+		try{
+			cache.putStream(KEY, new ByteArrayInputStream(new byte[1500]), 3000, 0, 0);
+			fail("expected StorageException");
+		}
+		catch(StorageException e){
+			TestCase.assertEquals(CacheErrors.ERROR_1014, e.getError());
+		}
+		TestCase.assertNull(cache.getStream(KEY));
+		
+		//os endereços reservados e não preenchidos devem ser reutilizados.
+		TestCase.assertFalse(cache.putStream(KEY, new ByteArrayInputStream(new byte[3000]), 3000, 0, 0));
+		TestCase.assertNotNull(cache.getStream(KEY));
+	}
+	
+	public void testOpenOutputStream() throws StorageException, RecoverException, IOException{
+		Cache cache = new Cache();
+		byte[] value = new byte[2500];
+		for(int i=0;i<value.length;i++){
+			value[i] = (byte)i;
+		}
+		
+		CacheOutputStream out = cache.openOutputStream(KEY, 0, 0);
+		out.write(value, 0, 1000);
+		out.write(value[1000]);
+		out.write(value, 1001, value.length - 1001);
+		TestCase.assertNull(cache.getStream(KEY));
+		out.close();
+		TestCase.assertFalse(out.isReplaced());
+		
+		CacheInputStream in = (CacheInputStream)cache.getStream(KEY);
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		in.writeTo(bout);
+		in.close();
+		TestCase.assertTrue(Arrays.equals(value, bout.toByteArray()));
+	}
+	
+	public void testOpenOutputStreamCancel() throws StorageException, RecoverException, IOException{
+		Cache cache = new Cache();
+		cache.put(KEY, VALUE, 0, 0);
+		
+		CacheOutputStream out = cache.openOutputStream(KEY, 0, 0);
+		out.write(new byte[3000]);
+		out.cancel();
+		out.close();
+		
+		TestCase.assertEquals(VALUE, cache.get(KEY));
+	}
+	
+	public void testBinaryValueSerializer() throws StorageException, RecoverException{
+		Configuration configuration = new Configuration();
+		configuration.setProperty(CacheConstants.VALUE_SERIALIZER, "binary");
+		Cache cache = new Cache(new BRCacheConfig(configuration));
+		TestCase.assertTrue(cache.getValueSerializer() instanceof BinaryValueSerializer);
+		
+		cache.put(KEY, VALUE, 0, 0);
+		TestCase.assertEquals(VALUE, cache.get(KEY));
+		TestCase.assertEquals(VALUE, cache.putIfAbsent(KEY, 10L, 0, 0));
+		TestCase.assertTrue(cache.replace(KEY, 10L, 0, 0));
+		TestCase.assertEquals(10L, cache.get(KEY));
+	}
+
+	public void testBinaryValueSerializerNegativeValues() throws StorageException, RecoverException{
+		//dados em linha e em blocos.
+		testBinaryValueSerializerNegativeValues("64");
+		testBinaryValueSerializerNegativeValues("0");
+	}
+	
+	private void testBinaryValueSerializerNegativeValues(String inlineSize) throws StorageException, RecoverException{
+		Configuration configuration = new Configuration();
+		configuration.setProperty(CacheConstants.VALUE_SERIALIZER, "binary");
+		configuration.setProperty(CacheConstants.DATA_INLINE_SIZE, inlineSize);
+		Cache cache = new Cache(new BRCacheConfig(configuration));
+		
+		Object[] values = new Object[]{
+				Short.valueOf((short)-300),
+				Short.valueOf(Short.MIN_VALUE),
+				Integer.valueOf(-128),
+				Integer.valueOf(-1),
+				Integer.valueOf(Integer.MIN_VALUE),
+				Long.valueOf(-1L),
+				Long.valueOf(Long.MIN_VALUE),
+				Float.valueOf(-1.5f),
+				Double.valueOf(Math.PI),
+				Double.valueOf(-Double.MAX_VALUE)
+		};
+		
+		for(int i=0;i<values.length;i++){
+			cache.put(KEY + i, values[i], 0, 0);
+			TestCase.assertEquals(values[i], cache.get(KEY + i));
+		}
+		
+		byte[] bytes = new byte[]{(byte)0xff, 0, (byte)0x80, 0x7f, (byte)0xff};
+		cache.put(KEY, bytes, 0, 0);
+		TestCase.assertTrue(Arrays.equals(bytes, (byte[])cache.get(KEY)));
+	}
+	
+	public void testAsync() throws Exception{
+		Cache cache = new Cache();
+		try{
+			TestCase.assertFalse(cache.putAsync(KEY, VALUE, 0, 0).get());
+			TestCase.assertEquals(VALUE, cache.getAsync(KEY).get());
+			
+			InputStream in = cache.getStreamAsync(KEY).get();
+			TestCase.assertNotNull(in);
+			in.close();
+			
+			TestCase.assertTrue(cache.removeAsync(KEY).get());
+			TestCase.assertNull(cache.getAsync(KEY).get());
+		}
+		finally{
+			cache.getExecutor().shutdown();
+		}
+	}
+	
+	public void testBatch() throws StorageException, RecoverException{
+		Cache cache = new Cache();
+		Map<String, Object> values = new HashMap<String, Object>();
+		for(int i=0;i<100;i++){
+			values.put(KEY + i, i % 2 == 0? VALUE + i : new byte[3000 + i]);
+		}
+		
+		cache.putAll(values, 0, 0);
+		
+		Map<String, Object> result = cache.getAll(Arrays.asList(KEY + 0, KEY + 1, KEY + 98, "none"));
+		TestCase.assertEquals(3, result.size());
+		TestCase.assertEquals(VALUE + 0, result.get(KEY + 0));
+		TestCase.assertEquals(3001, ((byte[])result.get(KEY + 1)).length);
+		TestCase.assertEquals(VALUE + 98, result.get(KEY + 98));
+		
+		TestCase.assertEquals(2, cache.removeAll(Arrays.asList(KEY + 0, KEY + 1, "none")));
+		TestCase.assertNull(cache.get(KEY + 0));
+		TestCase.assertNull(cache.get(KEY + 1));
+		TestCase.assertEquals(98, cache.getAll(values.keySet()).size());
+	}
+	
 	public void testRemove() throws StorageException, RecoverException{
 		Cache cache = new Cache();
 		
@@ -198,6 +527,223 @@ public class CacheTest extends TestCase{
 		assertNull(cache.get(KEY));
 	}
 
+	public void testTimeToIdleFrequentAccess() throws InterruptedException{
+		Cache cache = new Cache();
+		cache.put(KEY, VALUE, 0, 400);
+		for(int i=0;i<30;i++){
+			assertEquals(cache.get(KEY), VALUE);
+			Thread.sleep(50);
+		}
+		Thread.sleep(600);
+		assertNull(cache.get(KEY));
+	}
+
+	public void testExpirationWithoutAccess() throws StorageException, RecoverException, InterruptedException{
+		BRCacheConfig config = new BRCacheConfig(new Configuration());
+		config.setExpirationInterval(100);
+		Cache cache = new Cache(config);
+		cache.put(KEY, VALUE, 200, 0);
+		cache.put(KEY + "2", VALUE, 0, 200);
+		cache.put(KEY + "3", VALUE, 0, 0);
+		Thread.sleep(1000);
+		assertEquals(2, cache.getCountRemoved());
+		assertEquals(VALUE, cache.get(KEY + "3"));
+	}
+
+	public void testEvictionMaxEntries() throws StorageException, RecoverException{
+		BRCacheConfig config = new BRCacheConfig(new Configuration());
+		config.setEvictionPolicy("lru");
+		config.setEvictionMaxEntries(10);
+		Cache cache = new Cache(config);
+		
+		for(int i=0;i<30;i++){
+			cache.put(KEY + i, VALUE, 0, 0);
+			cache.get(KEY + 0);
+		}
+		
+		assertEquals(20, cache.getCountEvicted());
+		assertEquals(VALUE, cache.get(KEY + 0));
+		assertEquals(VALUE, cache.get(KEY + 29));
+		assertNull(cache.get(KEY + 1));
+	}
+
+	public void testSize() throws StorageException{
+		Cache cache = new Cache();
+		assertTrue(cache.isEmpty());
+		
+		cache.putStream(KEY, new ByteArrayInputStream(new byte[100]), 0, 0);
+		cache.putStream(KEY + "2", new ByteArrayInputStream(new byte[2000]), 0, 0);
+		cache.putStream(KEY, new ByteArrayInputStream(new byte[300]), 0, 0);
+		cache.putIfAbsent(KEY + "3", VALUE, 0, 0);
+		cache.remove(KEY + "3");
+		
+		assertEquals(2, cache.size());
+		assertEquals(2300, cache.getLiveBytes());
+		
+		cache.remove(KEY);
+		cache.remove(KEY + "2");
+		assertTrue(cache.isEmpty());
+		assertEquals(0, cache.getLiveBytes());
+	}
+
+	public void testClearReleasesMemoryBudget() throws StorageException{
+		Configuration configuration = new Configuration();
+		configuration.setProperty(CacheConstants.MEMORY_BUDGET, String.valueOf(1024*1024));
+		configuration.setProperty(CacheConstants.MEMORY_BUDGET_POLICY, "fail");
+		BRCacheConfig config = new BRCacheConfig(configuration);
+		BudgetMemory memory  = (BudgetMemory)config.getMemory();
+		Cache cache          = new Cache(config);
+		
+		for(int i=0;i<100;i++)
+			cache.putStream(KEY + i, new ByteArrayInputStream(new byte[4000]), 0, 0);
+		
+		assertTrue(memory.getUsedBytes() >= 400000);
+		
+		cache.clear();
+		assertEquals(0, memory.getUsedBytes());
+		assertTrue(cache.isEmpty());
+		
+		for(int i=0;i<200;i++)
+			cache.putStream(KEY + i, new ByteArrayInputStream(new byte[4000]), 0, 0);
+	}
+	
+	public void testSharedPrefix() throws StorageException, RecoverException{
+		Cache cache = new Cache();
+		String[] keys = new String[]{
+				"tenant:1:session:abc", "tenant:1:session:abd", 
+				"tenant:1:session", "tenant:2:session:abc", "t"};
+		
+		for(String key: keys)
+			cache.put(key, key, 0, 0);
+		
+		for(String key: keys)
+			assertEquals(key, cache.get(key));
+		
+		assertNull(cache.get("tenant:1:session:ab"));
+		assertNull(cache.get("tenant:1:"));
+		assertNull(cache.get("tenant:1:session:abcd"));
+		assertNull(cache.get("tenant:3:session:abc"));
+	}
+	
+	public void testUnicodeKeys() throws StorageException, RecoverException{
+		Cache cache = new Cache();
+		String[] keys = new String[]{
+				"chave", "Chave", "CHAVE", "chave com espaço", "ação", "açaí", 
+				"\u6771\u4eac", "\ud83d\ude00", "\ud83d\ude01", "\t\n"};
+		
+		for(String key: keys)
+			cache.put(key, key, 0, 0);
+		
+		for(String key: keys)
+			assertEquals(key, cache.get(key));
+		
+		assertNull(cache.get("cha"));
+		assertNull(cache.get("a\u00e7"));
+	}
+	
+	public void testHashIndex() throws StorageException, RecoverException{
+		BRCacheConfig config = new BRCacheConfig(new Configuration());
+		config.setIndexEngine("hash");
+		Cache cache = new Cache(config);
+		
+		for(int i=0;i<1000;i++)
+			cache.put(KEY + i, VALUE + i, 0, 0);
+		
+		for(int i=0;i<1000;i+=2)
+			assertTrue(cache.remove(KEY + i));
+		
+		assertTrue(cache.replace(KEY + 1, VALUE + 1, VALUE, 0, 0));
+		assertNull(cache.putIfAbsent(KEY + 0, VALUE, 0, 0));
+		
+		assertEquals(VALUE, cache.get(KEY + 0));
+		assertEquals(VALUE, cache.get(KEY + 1));
+		assertNull(cache.get(KEY + 2));
+		
+		for(int i=3;i<1000;i+=2)
+			assertEquals(VALUE + i, cache.get(KEY + i));
+		
+		assertEquals(501, cache.size());
+	}
+	
+	public void testRemoveByPrefix() throws StorageException, RecoverException, 
+		InterruptedException, ExecutionException{
+		Cache cache = new Cache();
+		
+		for(int t=0;t<10;t++){
+			for(int i=0;i<100;i++)
+				cache.put("tenant" + t + ":" + i, VALUE + i, 0, 0);
+		}
+		
+		int count = 0;
+		String last = "";
+		for(Iterator<String> i = cache.keys("tenant3:");i.hasNext();){
+			String key = i.next();
+			assertTrue(key.startsWith("tenant3:"));
+			assertTrue(key.compareTo(last) > 0);
+			last = key;
+			count++;
+		}
+		assertEquals(100, count);
+		
+		assertEquals(Integer.valueOf(100), cache.removeByPrefix("tenant3:").get());
+		
+		for(int i=0;i<100;i++){
+			assertNull(cache.get("tenant3:" + i));
+			assertEquals(VALUE + i, cache.get("tenant4:" + i));
+		}
+		
+		assertFalse(cache.keys("tenant3").hasNext());
+		assertEquals(900, cache.size());
+		
+		cache.put("tenant3:0", VALUE, 0, 0);
+		assertEquals(VALUE, cache.get("tenant3:0"));
+	}
+	
+	public void testRemoveByPrefixThread() throws StorageException, 
+		InterruptedException, ExecutionException{
+		int before = countThreads("brcache_purge");
+		Cache cache = new Cache();
+		
+		for(int t=0;t<10;t++){
+			for(int i=0;i<10;i++)
+				cache.put("tenant" + t + ":" + i, VALUE + i, 0, 0);
+			
+			assertEquals(Integer.valueOf(10), cache.removeByPrefix("tenant" + t + ":").get());
+		}
+		
+		//as remoções compartilham o mesmo processo.
+		assertEquals(before + 1, countThreads("brcache_purge"));
+		assertEquals(0, cache.size());
+		
+		cache.destroy();
+		for(int i=0;i<100 && countThreads("brcache_purge") > before;i++)
+			Thread.sleep(50);
+		
+		assertEquals(before, countThreads("brcache_purge"));
+	}
+	
+	private static int countThreads(String name){
+		int count = 0;
+		for(Thread thread: Thread.getAllStackTraces().keySet()){
+			if(thread.isAlive() && name.equals(thread.getName()))
+				count++;
+		}
+		return count;
+	}
+	
+	public void testPrefixWithHashIndex() throws StorageException{
+		BRCacheConfig config = new BRCacheConfig(new Configuration());
+		config.setIndexEngine("hash");
+		Cache cache = new Cache(config);
+		
+		try{
+			cache.removeByPrefix("tenant");
+			fail();
+		}
+		catch(UnsupportedOperationException e){
+		}
+	}
+	
 	public void testNegativeTimeToIdle() throws InterruptedException{
 		try{
 			Cache cache = new Cache();
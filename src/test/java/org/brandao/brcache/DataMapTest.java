@@ -0,0 +1,33 @@
+package org.brandao.brcache;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class DataMapTest extends TestCase{
+
+	public void testAddExtent(){
+		DataMap map = new DataMap();
+		assertNull(map.getExtents());
+
+		map.addExtent(0x100, 1);
+		map.addExtent(0x200, 1);
+		map.addExtent(0x300, 2);
+		assertTrue(Arrays.equals(new long[]{0x100, 4}, map.getExtents()));
+
+		//mesma posição, outra lista.
+		map.addExtent(0x501, 1);
+		assertTrue(Arrays.equals(new long[]{0x100, 4, 0x501, 1}, map.getExtents()));
+
+		map.addExtent(0x601, 3);
+		assertTrue(Arrays.equals(new long[]{0x100, 4, 0x501, 4}, map.getExtents()));
+
+		//não consecutivo.
+		map.addExtent(0x1001, 1);
+		map.addExtent(0x0f01, 1);
+		assertTrue(Arrays.equals(
+				new long[]{0x100, 4, 0x501, 4, 0x1001, 1, 0x0f01, 1},
+				map.getExtents()));
+	}
+
+}
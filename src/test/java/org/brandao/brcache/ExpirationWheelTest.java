@@ -0,0 +1,90 @@
+package org.brandao.brcache;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class ExpirationWheelTest extends TestCase{
+
+	private static final long MINUTE = 60*1000L;
+	
+	private static final long DAY    = 24*60*MINUTE;
+	
+	public void testAdvance(){
+		ExpirationWheel wheel = new ExpirationWheel();
+		long now = System.currentTimeMillis();
+		
+		wheel.schedule("a", 1, now + 250);
+		wheel.schedule("b", 2, now + 10*MINUTE);
+		assertEquals(2, wheel.size());
+		
+		assertNull(wheel.advance(now + 100));
+		assertEquals(set("a"), keys(wheel.advance(now + 400)));
+		assertNull(wheel.advance(now + 9*MINUTE));
+		assertEquals(set("b"), keys(wheel.advance(now + 10*MINUTE + 200)));
+		assertEquals(0, wheel.size());
+	}
+
+	public void testNeverBeforeExpiration(){
+		ExpirationWheel wheel = new ExpirationWheel();
+		long now = System.currentTimeMillis();
+		long[] delays = new long[]{1, 99, 100, 6400, 6401, 409600, 2*DAY};
+		
+		for(int i=0;i<delays.length;i++){
+			wheel.schedule(String.valueOf(i), i, now + delays[i]);
+		}
+		
+		Set<String> expired = new HashSet<String>();
+		for(int i=0;i<delays.length;i++){
+			long[] times = new long[]{now + delays[i], now + delays[i] + 2*ExpirationWheel.TICK};
+			for(long time: times){
+				for(String key: keys(wheel.advance(time))){
+					assertTrue(now + delays[Integer.parseInt(key)] < time);
+					expired.add(key);
+				}
+			}
+			assertTrue(expired.contains(String.valueOf(i)));
+		}
+	}
+
+	public void testOverflow(){
+		ExpirationWheel wheel = new ExpirationWheel();
+		long now = System.currentTimeMillis();
+		
+		wheel.schedule("a", 1, now + 30*DAY);
+		assertNull(wheel.advance(now + 29*DAY));
+		assertEquals(set("a"), keys(wheel.advance(now + 30*DAY + 200)));
+	}
+	
+	public void testReschedule(){
+		ExpirationWheel wheel = new ExpirationWheel();
+		long now = System.currentTimeMillis();
+		
+		wheel.schedule("a", 1, now + 100);
+		ExpirationWheel.Entry e = wheel.advance(now + 300);
+		assertEquals("a", e.getKey());
+		
+		wheel.schedule(e, now + 1000);
+		assertNull(wheel.advance(now + 900));
+		assertEquals(set("a"), keys(wheel.advance(now + 1200)));
+	}
+	
+	private Set<String> keys(ExpirationWheel.Entry e){
+		Set<String> result = new HashSet<String>();
+		while(e != null){
+			result.add(e.getKey());
+			e = e.getNext();
+		}
+		return result;
+	}
+	
+	private Set<String> set(String ... values){
+		Set<String> result = new HashSet<String>();
+		for(String value: values){
+			result.add(value);
+		}
+		return result;
+	}
+	
+}
@@ -0,0 +1,45 @@
+package org.brandao.brcache.collections;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ByteKeyTest extends TestCase{
+
+	public void testUTF8() throws UnsupportedEncodingException{
+		Random random = new Random(1);
+		
+		for(int n=0;n<1000;n++){
+			char[] chars = new char[random.nextInt(20)];
+			for(int i=0;i<chars.length;i++){
+				switch(random.nextInt(4)){
+				case 0:
+					chars[i] = (char)random.nextInt(0x80);
+					break;
+				case 1:
+					chars[i] = (char)random.nextInt(0x800);
+					break;
+				case 2:
+					chars[i] = (char)(0xd800 + random.nextInt(0x800));
+					break;
+				default:
+					chars[i] = (char)random.nextInt(0x10000);
+				}
+			}
+			
+			String value    = new String(chars);
+			byte[] expected = value.getBytes("UTF-8");
+			ByteKey key     = ByteKey.valueOf(value);
+			
+			assertEquals(expected.length, key.length());
+			
+			for(int i=0;i<expected.length;i++)
+				assertEquals(expected[i] & 0xff, key.byteAt(i));
+			
+			for(int i=expected.length-1;i>=0;i--)
+				assertEquals(expected[i] & 0xff, key.byteAt(i));
+		}
+	}
+	
+}
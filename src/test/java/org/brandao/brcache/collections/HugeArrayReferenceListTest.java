@@ -0,0 +1,92 @@
+package org.brandao.brcache.collections;
+
+import junit.framework.TestCase;
+
+public class HugeArrayReferenceListTest extends TestCase{
+
+	public void testReserveReusesFreedAddresses(){
+		HugeArrayReferenceList<Long> list = new HugeArrayReferenceList<Long>();
+		int[] reserved = new int[1];
+
+		try{
+			long first = list.reserve(8, reserved);
+			assertEquals(8, reserved[0]);
+
+			for(int i=0;i<8;i++)
+				list.put(first + ((long)i << 8), Long.valueOf(i));
+
+			for(int i=2;i<5;i++)
+				assertTrue(list.remove(first + ((long)i << 8)));
+
+			//reutiliza somente a sequência liberada.
+			long second = list.reserve(8, reserved);
+			assertEquals(first + (2L << 8), second);
+			assertEquals(3, reserved[0]);
+
+			for(int i=0;i<3;i++)
+				list.put(second + ((long)i << 8), Long.valueOf(100 + i));
+
+			//não há mais posições livres. Usa posições novas.
+			long third = list.reserve(8, reserved);
+			assertEquals(first + (8L << 8), third);
+			assertEquals(8, reserved[0]);
+
+			for(int i=0;i<8;i++)
+				list.put(third + ((long)i << 8), Long.valueOf(200 + i));
+
+			Long[] dest = new Long[8];
+			list.get(first, dest, 0, 8);
+
+			long[] expected = new long[]{0, 1, 100, 101, 102, 5, 6, 7};
+			for(int i=0;i<8;i++)
+				assertEquals(Long.valueOf(expected[i]), dest[i]);
+
+			list.get(third, dest, 0, 8);
+			for(int i=0;i<8;i++)
+				assertEquals(Long.valueOf(200 + i), dest[i]);
+		}
+		finally{
+			list.destroy();
+		}
+	}
+
+	public void testGetRange(){
+		HugeArrayReferenceList<Long> list = new HugeArrayReferenceList<Long>();
+		int[] reserved = new int[1];
+
+		try{
+			//ocupa vários segmentos da lista.
+			int count  = 100;
+			long first = list.reserve(count, reserved);
+			assertEquals(count, reserved[0]);
+
+			for(int i=0;i<count;i++)
+				list.put(first + ((long)i << 8), Long.valueOf(i));
+
+			assertTrue(list.remove(first + (50L << 8)));
+
+			Long[] dest = new Long[count + 2];
+			list.get(first, dest, 1, count);
+
+			assertNull(dest[0]);
+			assertNull(dest[count + 1]);
+
+			for(int i=0;i<count;i++){
+				if(i == 50)
+					assertNull(dest[i + 1]);
+				else
+					assertEquals(Long.valueOf(i), dest[i + 1]);
+			}
+
+			//leitura parcial a partir do meio.
+			dest = new Long[10];
+			list.get(first + (25L << 8), dest, 0, 10);
+			for(int i=0;i<10;i++)
+				assertEquals(Long.valueOf(25 + i), dest[i]);
+		}
+		finally{
+			list.destroy();
+		}
+	}
+
+}
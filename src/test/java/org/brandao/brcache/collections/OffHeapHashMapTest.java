@@ -0,0 +1,153 @@
+package org.brandao.brcache.collections;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.brandao.brcache.memory.BudgetMemory;
+import org.brandao.brcache.memory.HeapMemory;
+import org.brandao.brcache.memory.MemoryBudgetPolicy;
+
+import junit.framework.TestCase;
+
+public class OffHeapHashMapTest extends TestCase{
+
+	private static class LongSerializer implements BufferSerializer<Long>{
+
+		private static final long serialVersionUID = 1L;
+
+		public int size(Long value) {
+			return 8;
+		}
+
+		public void write(ByteBuffer buffer, int offset, Long value) {
+			buffer.putLong(offset, value);
+		}
+
+		public Long read(ByteBuffer buffer, int offset) {
+			return buffer.getLong(offset);
+		}
+		
+	}
+	
+	public void testPutGetRemove(){
+		OffHeapHashMap<Long> map = new OffHeapHashMap<Long>(new LongSerializer(), 4);
+		
+		for(long i=0;i<10000;i++)
+			assertNull(map.put("key" + i, i));
+		
+		assertEquals(10000, map.size());
+		
+		for(long i=0;i<10000;i+=3)
+			assertEquals(Long.valueOf(i), map.remove("key" + i));
+		
+		for(long i=0;i<10000;i++){
+			if(i % 3 == 0)
+				assertNull(map.get("key" + i));
+			else
+				assertEquals(Long.valueOf(i), map.get("key" + i));
+		}
+		
+		assertNull(map.get("KEY1"));
+		assertEquals(Long.valueOf(1), map.get("key1".getBytes()));
+		assertEquals(Long.valueOf(2), map.get(ByteBuffer.wrap("key2".getBytes())));
+		assertEquals(Long.valueOf(1), map.put(ByteKey.valueOf("key1".getBytes()), Long.valueOf(1)));
+		
+		assertFalse(map.remove("key1", Long.valueOf(2)));
+		assertTrue(map.replace("key1", Long.valueOf(1), Long.valueOf(-1)));
+		assertEquals(Long.valueOf(-1), map.putIfAbsent("key1", Long.valueOf(5)));
+		assertTrue(map.remove("key1", Long.valueOf(-1)));
+		assertFalse(map.containsKey("key1"));
+		
+		map.clear();
+		assertTrue(map.isEmpty());
+	}
+
+	public void testRandomOperations(){
+		OffHeapHashMap<Long> map = new OffHeapHashMap<Long>(new LongSerializer(), 1);
+		Map<String, Long> expected = new HashMap<String, Long>();
+		Random random = new Random(1);
+		
+		for(int i=0;i<100000;i++){
+			String key = "k" + random.nextInt(2000);
+			long value = random.nextLong();
+			
+			if(random.nextBoolean())
+				assertEquals(expected.put(key, value), map.put(key, value));
+			else
+				assertEquals(expected.remove(key), map.remove(key));
+		}
+		
+		assertEquals(expected.size(), map.size());
+		
+		for(Map.Entry<String, Long> e: expected.entrySet())
+			assertEquals(e.getValue(), map.get(e.getKey()));
+	}
+	
+
+	public void testViews(){
+		OffHeapHashMap<Long> map = new OffHeapHashMap<Long>(new LongSerializer(), 4);
+		Set<String> keys = new HashSet<String>();
+		
+		for(long i=0;i<1000;i++){
+			map.put("key\u00e7" + i, i);
+			keys.add("key\u00e7" + i);
+		}
+		
+		assertEquals(keys, new HashSet<String>(map.keySet()));
+		assertEquals(1000, map.values().size());
+		assertTrue(map.keySet().contains("key\u00e71"));
+		assertTrue(map.values().contains(Long.valueOf(2)));
+		
+		long sum = 0;
+		for(Long value: map.values())
+			sum += value;
+		assertEquals(999*1000/2, sum);
+		
+		for(Map.Entry<String, Long> e: map.entrySet())
+			assertEquals("key\u00e7" + e.getValue(), e.getKey());
+		
+		Iterator<Map.Entry<String, Long>> i = map.entrySet().iterator();
+		while(i.hasNext()){
+			if(i.next().getValue() % 2 == 0)
+				i.remove();
+		}
+		
+		assertEquals(500, map.size());
+		assertNull(map.get("key\u00e70"));
+		assertEquals(Long.valueOf(1), map.get("key\u00e71"));
+		
+		assertTrue(map.keySet().remove("key\u00e71"));
+		assertFalse(map.containsKey("key\u00e71"));
+		
+		map.entrySet().clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.keySet().iterator().hasNext());
+	}
+	
+	public void testMemoryBudget(){
+		BudgetMemory budget = 
+				new BudgetMemory(new HeapMemory(), 64*1024*1024, MemoryBudgetPolicy.FAIL, 0);
+		OffHeapHashMap<Long> map = new OffHeapHashMap<Long>(new LongSerializer(), 4, budget);
+		
+		long empty = budget.getUsedBytes();
+		assertTrue(empty > 0);
+		
+		for(long i=0;i<10000;i++)
+			map.put("key" + i, i);
+		
+		assertTrue(budget.getUsedBytes() > empty);
+		
+		map.clear();
+		assertEquals(empty, budget.getUsedBytes());
+		
+		map.destroy();
+		assertEquals(0, budget.getUsedBytes());
+		budget.destroy();
+	}
+	
+}
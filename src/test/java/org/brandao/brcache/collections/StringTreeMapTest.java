@@ -0,0 +1,234 @@
+package org.brandao.brcache.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+public class StringTreeMapTest extends TestCase{
+
+	private static final String[] KEYS =
+			new String[]{"tenant2:b", "tenant1:ab", "ten", "tenant10:x", "tenant1:a", "tenant1:", "other"};
+
+	private StringTreeMap<String> createMap(){
+		StringTreeMap<String> map =
+				new StringTreeMap<String>(null, 10000, 0.25, 0.03, null, 1, 1, 10000, 0.25, 0.03, null, 1, 1);
+
+		for(String key: KEYS)
+			map.put(key, "value_" + key);
+
+		return map;
+	}
+
+	private static <T> List<T> toList(Iterator<T> i){
+		List<T> result = new ArrayList<T>();
+		while(i.hasNext())
+			result.add(i.next());
+		return result;
+	}
+
+	public void testKeys(){
+		StringTreeMap<String> map = this.createMap();
+
+		assertEquals(
+				Arrays.asList("tenant10:x", "tenant1:", "tenant1:a", "tenant1:ab"),
+				toList(map.keys("tenant1")));
+
+		assertEquals(
+				Arrays.asList("tenant1:a", "tenant1:ab"),
+				toList(map.keys("tenant1:a")));
+
+		//o prefixo termina no meio do rótulo de um nó.
+		assertEquals(
+				Arrays.asList("tenant10:x", "tenant1:", "tenant1:a", "tenant1:ab", "tenant2:b"),
+				toList(map.keys("tena")));
+
+		assertEquals(
+				Arrays.asList("other", "ten", "tenant10:x", "tenant1:", "tenant1:a", "tenant1:ab", "tenant2:b"),
+				toList(map.keys("")));
+
+		assertTrue(toList(map.keys("tenant3")).isEmpty());
+		assertTrue(toList(map.keys("tenant1:abc")).isEmpty());
+	}
+
+	public void testEntries(){
+		StringTreeMap<String> map = this.createMap();
+		map.remove("tenant1:a");
+
+		Iterator<Map.Entry<String, String>> i = map.entries("tenant1:");
+
+		Map.Entry<String, String> e = i.next();
+		assertEquals("tenant1:", e.getKey());
+		assertEquals("value_tenant1:", e.getValue());
+
+		e = i.next();
+		assertEquals("tenant1:ab", e.getKey());
+		assertEquals("value_tenant1:ab", e.getValue());
+
+		assertFalse(i.hasNext());
+	}
+
+	public void testRemoveByPrefix(){
+		StringTreeMap<String> map = this.createMap();
+
+		List<Map.Entry<String, String>> removed = toList(map.removeByPrefix("tenant1"));
+
+		assertEquals(4, removed.size());
+		assertEquals("tenant10:x", removed.get(0).getKey());
+		assertEquals("value_tenant10:x", removed.get(0).getValue());
+
+		assertNull(map.get("tenant1:"));
+		assertNull(map.get("tenant1:ab"));
+		assertNull(map.get("tenant10:x"));
+		assertEquals("value_ten", map.get("ten"));
+		assertEquals("value_tenant2:b", map.get("tenant2:b"));
+		assertTrue(toList(map.keys("tenant1")).isEmpty());
+
+		assertNull(map.put("tenant1:a", "new"));
+		assertEquals("new", map.get("tenant1:a"));
+
+		assertTrue(toList(map.removeByPrefix("tenant3")).isEmpty());
+	}
+
+	public void testConcurrentSplit() throws InterruptedException{
+		final StringTreeMap<String> map =
+				new StringTreeMap<String>(null, 10000, 0.25, 0.03, null, 1, 1, 10000, 0.25, 0.03, null, 1, 1);
+		final int threads         = 8;
+		final int keys            = 2000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] workers = new Thread[threads];
+
+		for(int t=0;t<threads;t++){
+			final int id = t;
+			workers[t] = new Thread(){
+				public void run(){
+					try{
+						start.await();
+						//as chaves das threads compartilham e dividem os mesmos rótulos.
+						for(int i=0;i<keys;i++){
+							String key = "tenant:" + (i*threads + id);
+							map.put(key, "value_" + key);
+							map.put(key + ":" + id, "value_" + key + ":" + id);
+						}
+					}
+					catch(Throwable e){
+						synchronized(errors){
+							errors.add(e);
+						}
+					}
+				}
+			};
+			workers[t].start();
+		}
+
+		start.countDown();
+		for(Thread worker: workers)
+			worker.join();
+
+		assertTrue(errors.toString(), errors.isEmpty());
+
+		for(int t=0;t<threads;t++){
+			for(int i=0;i<keys;i++){
+				String key = "tenant:" + (i*threads + t);
+				assertEquals("value_" + key, map.get(key));
+				assertEquals("value_" + key + ":" + t, map.get(key + ":" + t));
+			}
+		}
+
+		assertEquals(threads*keys*2, toList(map.keys("tenant:")).size());
+	}
+
+	public void testRemoveByPrefixReleasesNodes(){
+		StringTreeMap<String> map = this.createMap();
+
+		for(int i=0;i<1000;i++)
+			map.put("tenant3:" + i, "value_" + i);
+
+		long length = map.getNodesLength();
+
+		assertEquals(1000, toList(map.removeByPrefix("tenant3")).size());
+
+		//os nós excluídos são reutilizados.
+		for(int i=0;i<1000;i++)
+			assertNull(map.put("tenant3:" + i, "new_" + i));
+
+		assertEquals(length, map.getNodesLength());
+
+		for(int i=0;i<1000;i++)
+			assertEquals("new_" + i, map.get("tenant3:" + i));
+
+		for(String key: KEYS)
+			assertEquals("value_" + key, map.get(key));
+	}
+
+	public void testRemoveByPrefixWithConcurrentPuts() throws InterruptedException{
+		final StringTreeMap<String> map =
+				new StringTreeMap<String>(null, 10000, 0.25, 0.03, null, 1, 1, 10000, 0.25, 0.03, null, 1, 1);
+		final int threads            = 4;
+		final int puts               = 5000;
+		final List<String> released  = new ArrayList<String>();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] workers             = new Thread[threads];
+
+		for(int t=0;t<threads;t++){
+			final int id = t;
+			workers[t] = new Thread(){
+				public void run(){
+					try{
+						for(int i=0;i<puts;i++){
+							String old = map.put("tenant:" + (i % 100) + ":" + id, id + ":" + i);
+							if(old != null){
+								synchronized(released){
+									released.add(old);
+								}
+							}
+						}
+					}
+					catch(Throwable e){
+						synchronized(errors){
+							errors.add(e);
+						}
+					}
+				}
+			};
+			workers[t].start();
+		}
+
+		boolean alive = true;
+		while(alive){
+			alive = false;
+			for(Thread worker: workers)
+				alive = alive || worker.isAlive();
+
+			for(String prefix: new String[]{"tenant:1", "tenant:"}){
+				Iterator<Map.Entry<String, String>> i = map.removeByPrefix(prefix);
+				while(i.hasNext()){
+					String value = i.next().getValue();
+					synchronized(released){
+						released.add(value);
+					}
+				}
+			}
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+
+		//cada valor incluído foi substituído, removido ou ainda está no mapa.
+		Set<String> values = new HashSet<String>(released);
+		assertEquals(released.size(), values.size());
+
+		Iterator<Map.Entry<String, String>> i = map.entries("");
+		while(i.hasNext())
+			assertTrue(values.add(i.next().getValue()));
+
+		assertEquals(threads*puts, values.size());
+	}
+
+}
@@ -0,0 +1,58 @@
+package org.brandao.brcache.collections.treehugemap;
+
+import junit.framework.TestCase;
+
+public class CharNodeTest extends TestCase{
+
+	private static final int CHILDREN = 256;
+	
+	private static int key(int i){
+		return (i*37 + 11) & 0xff;
+	}
+	
+	public void testGrow(){
+		AbstractCharNode<Object> node = new CharNode4<Object>();
+		node.setId(10);
+		
+		for(int i=0;i<CHILDREN;i++){
+			node = node.putNext(key(i), i);
+			
+			if(i < CharNode4.CAPACITY)
+				assertTrue(node instanceof CharNode4);
+			else
+			if(i < CharNode16.CAPACITY)
+				assertTrue(node instanceof CharNode16);
+			else
+			if(i < CharNode48.CAPACITY)
+				assertTrue(node instanceof CharNode48);
+			else
+				assertTrue(node instanceof CharNode);
+		}
+		
+		assertEquals(10, node.getId());
+		assertEquals(CHILDREN, node.getChildren());
+		
+		for(int i=0;i<CHILDREN;i++)
+			assertEquals(i, node.getNextId(key(i)));
+	}
+
+	public void testShrink(){
+		AbstractCharNode<Object> node = new CharNode4<Object>();
+		
+		for(int i=0;i<CHILDREN;i++)
+			node = node.putNext(key(i), i);
+		
+		for(int i=CHILDREN-1;i>=0;i--){
+			node = node.deleteNext(key(i));
+			
+			assertEquals(i, node.getChildren());
+			assertEquals(-1, node.getNextId(key(i)));
+			
+			for(int k=0;k<i;k++)
+				assertEquals(k, node.getNextId(key(k)));
+		}
+		
+		assertTrue(node instanceof CharNode4);
+	}
+
+}
@@ -0,0 +1,79 @@
+package org.brandao.brcache.eviction;
+
+import junit.framework.TestCase;
+
+public class EvictionPolicyTest extends TestCase{
+
+	public void testLRU(){
+		EvictionPolicy policy = new LRUEvictionPolicy();
+		policy.insert("a", 1, 10);
+		policy.insert("b", 2, 10);
+		policy.insert("c", 3, 10);
+		policy.access("a", 1);
+		
+		assertEquals(3, policy.size());
+		assertEquals(30, policy.getWeight());
+		assertEquals("b", policy.victim().getKey());
+		assertEquals("c", policy.victim().getKey());
+		assertEquals("a", policy.victim().getKey());
+		assertNull(policy.victim());
+		assertEquals(0, policy.getWeight());
+	}
+
+	public void testRemoveReplaced(){
+		EvictionPolicy policy = new LRUEvictionPolicy();
+		policy.insert("a", 1, 10);
+		policy.insert("a", 2, 20);
+		policy.remove("a", 1);
+		
+		assertEquals(1, policy.size());
+		assertEquals(20, policy.getWeight());
+		
+		policy.remove("a", 2);
+		assertEquals(0, policy.size());
+		assertEquals(0, policy.getWeight());
+	}
+
+	public void testTinyLFUKeepsFrequent(){
+		EvictionPolicy policy = new TinyLFUEvictionPolicy(100);
+		
+		for(int i=0;i<100;i++){
+			policy.insert("hot" + i, i, 1);
+		}
+		
+		for(int k=0;k<5;k++){
+			for(int i=0;i<100;i++){
+				policy.access("hot" + i, i);
+			}
+		}
+		
+		//uma sequência de itens acessados uma única vez não remove os itens frequentes.
+		for(int i=0;i<1000;i++){
+			policy.insert("scan" + i, 1000 + i, 1);
+			policy.victim();
+		}
+		
+		int hot = 0;
+		EvictionEntry e;
+		while((e = policy.victim()) != null){
+			if(e.getKey().startsWith("hot"))
+				hot++;
+		}
+		
+		assertTrue(hot > 90);
+	}
+
+	public void testSketch(){
+		FrequencySketch sketch = new FrequencySketch(512);
+		
+		for(int i=0;i<20;i++){
+			sketch.increment("a".hashCode());
+		}
+		sketch.increment("b".hashCode());
+		
+		assertEquals(15, sketch.frequency("a".hashCode()));
+		assertTrue(sketch.frequency("b".hashCode()) >= 1);
+		assertEquals(0, sketch.frequency("c".hashCode()));
+	}
+	
+}
@@ -0,0 +1,113 @@
+package org.brandao.brcache.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+public class BudgetMemoryTest extends TestCase{
+
+	public void testAccounting(){
+		BudgetMemory memory = new BudgetMemory(new HeapMemory(), 4096, MemoryBudgetPolicy.FAIL, 0);
+		RegionMemory r1 = memory.alloc(1024);
+		RegionMemory r2 = memory.alloc(2048);
+		assertEquals(3072, memory.getUsedBytes());
+		
+		memory.realloc(512, r1);
+		assertEquals(2560, memory.getUsedBytes());
+		
+		memory.release(r1);
+		memory.release(r2);
+		assertEquals(0, memory.getUsedBytes());
+		assertEquals(3072, memory.getPeakBytes());
+	}
+	
+	public void testFail(){
+		BudgetMemory memory = new BudgetMemory(new HeapMemory(), 2048, MemoryBudgetPolicy.FAIL, 0);
+		memory.alloc(2048);
+		try{
+			memory.alloc(1);
+			fail("expected MemoryExhaustedException");
+		}
+		catch(MemoryExhaustedException e){
+		}
+		assertEquals(2048, memory.getUsedBytes());
+	}
+	
+	public void testBlock() throws InterruptedException{
+		final BudgetMemory memory = new BudgetMemory(new HeapMemory(), 2048, MemoryBudgetPolicy.BLOCK, 5000);
+		final RegionMemory r = memory.alloc(2048);
+		
+		Thread releaser = new Thread(){
+			public void run(){
+				try{
+					Thread.sleep(200);
+				}
+				catch(InterruptedException e){
+				}
+				memory.release(r);
+			}
+		};
+		releaser.start();
+		
+		RegionMemory r2 = memory.alloc(1024);
+		releaser.join();
+		assertEquals(1024, r2.size());
+		assertEquals(1024, memory.getUsedBytes());
+	}
+	
+	public void testBlockTimeout(){
+		BudgetMemory memory = new BudgetMemory(new HeapMemory(), 2048, MemoryBudgetPolicy.BLOCK, 100);
+		memory.alloc(2048);
+		long start = System.currentTimeMillis();
+		try{
+			memory.alloc(1024);
+			fail("expected MemoryExhaustedException");
+		}
+		catch(MemoryExhaustedException e){
+		}
+		assertTrue(System.currentTimeMillis() - start >= 90);
+	}
+	
+	public void testEvict(){
+		final BudgetMemory memory = new BudgetMemory(new HeapMemory(), 2048, MemoryBudgetPolicy.EVICT, 0);
+		final RegionMemory r = memory.alloc(2048);
+		memory.setReclaimer(new MemoryReclaimer(){
+			public long reclaim(long size){
+				long value = r.size();
+				memory.release(r);
+				return value;
+			}
+		});
+		
+		RegionMemory r2 = memory.alloc(1024);
+		assertEquals(1024, r2.size());
+		assertEquals(1024, memory.getUsedBytes());
+	}
+	
+	public void testSerializedCopy() throws Exception{
+		BudgetMemory memory = new BudgetMemory(new HeapMemory(), 4096, MemoryBudgetPolicy.FAIL, 0);
+		RegionMemory r      = memory.alloc(1024);
+		
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ObjectOutputStream out     = new ObjectOutputStream(bout);
+		out.writeObject(r);
+		out.flush();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+		RegionMemory r2      = (RegionMemory)in.readObject();
+		
+		//a cópia restaurada ocupa memória própria.
+		assertEquals(2048, memory.getUsedBytes());
+		
+		memory.release(r2);
+		memory.release(r2);
+		assertEquals(1024, memory.getUsedBytes());
+		
+		memory.release(r);
+		assertEquals(0, memory.getUsedBytes());
+		memory.destroy();
+	}
+	
+}
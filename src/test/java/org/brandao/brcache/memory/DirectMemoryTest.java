@@ -0,0 +1,106 @@
+package org.brandao.brcache.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class DirectMemoryTest extends TestCase{
+
+	private Memory memory = new DirectMemory();
+	
+	public void testAlloc(){
+		RegionMemory r = memory.alloc(1024);
+		byte[] b = new byte[1024];
+		Random random = new Random();
+		random.nextBytes(b);
+		r.write(0, b, 0, b.length);
+		
+		byte[] b2 = new byte[1024];
+		r.read(0, b2, 0, b2.length);
+		assertTrue(Arrays.equals(b, b2));
+	}
+	
+	public void testCopy2(){
+		RegionMemory r = memory.alloc(1024);
+		byte[] b = new byte[1024];
+		Random random = new Random();
+		random.nextBytes(b);
+		r.write(10, b, 10, b.length-10);
+		
+		byte[] b2 = new byte[1024];
+		r.read(10, b2, 10, b2.length-10);
+		
+		for(int i= 0;i<10;i++){
+			b[i] = 0;
+		}
+		
+		assertTrue(Arrays.equals(b, b2));
+	}
+
+	public void testRegionCopy(){
+		RegionMemory r = memory.alloc(1024);
+		byte[] b = new byte[1024];
+		Random random = new Random();
+		random.nextBytes(b);
+		r.write(0, b, 0, b.length);
+		
+		RegionMemory r2 = memory.alloc(2048);
+		r.read(0, r2, 1024, 1024);
+		
+		RegionMemory r3 = memory.alloc(1024);
+		r3.write(0, r2, 1024, 1024);
+		
+		byte[] b2 = new byte[1024];
+		r3.read(0, b2, 0, b2.length);
+		assertTrue(Arrays.equals(b, b2));
+		
+		RegionMemory r4 = new HeapMemory().alloc(1024);
+		r3.read(0, r4, 0, 1024);
+		byte[] b3 = new byte[1024];
+		r4.read(0, b3, 0, b3.length);
+		assertTrue(Arrays.equals(b, b3));
+	}
+	
+	public void testRealloc(){
+		RegionMemory r = memory.alloc(100);
+		byte[] b = new byte[100];
+		Random random = new Random();
+		random.nextBytes(b);
+		r.write(0, b, 0, b.length);
+		
+		memory.realloc(5000, r);
+		assertEquals(5000, r.size());
+		
+		byte[] b2 = new byte[100];
+		r.read(0, b2, 0, b2.length);
+		assertTrue(Arrays.equals(b, b2));
+		memory.release(r);
+	}
+	
+	public void testSerialization() throws Exception{
+		RegionMemory r = memory.alloc(20000);
+		byte[] b = new byte[20000];
+		Random random = new Random();
+		random.nextBytes(b);
+		r.write(0, b, 0, b.length);
+		
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ObjectOutputStream out     = new ObjectOutputStream(bout);
+		out.writeObject(r);
+		out.flush();
+		
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+		RegionMemory r2      = (RegionMemory)in.readObject();
+		
+		byte[] b2 = new byte[20000];
+		r2.read(0, b2, 0, b2.length);
+		assertEquals(20000, r2.size());
+		assertTrue(Arrays.equals(b, b2));
+	}
+	
+}
@@ -0,0 +1,170 @@
+package org.brandao.brcache.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class MappedMemoryTest extends TestCase{
+
+	private MappedMemory memory;
+	
+	protected void setUp(){
+		memory = new MappedMemory();
+		memory.setRootPath(System.getProperty("java.io.tmpdir") + File.separator + "brcache-mapped");
+		memory.setChunkSize(1024*1024);
+	}
+	
+	protected void tearDown(){
+		memory.destroy();
+	}
+	
+	public void testAlloc(){
+		RegionMemory r = memory.alloc(1024);
+		byte[] b = new byte[1024];
+		Random random = new Random();
+		random.nextBytes(b);
+		r.write(0, b, 0, b.length);
+		
+		byte[] b2 = new byte[1024];
+		r.read(0, b2, 0, b2.length);
+		assertTrue(Arrays.equals(b, b2));
+	}
+	
+	public void testRealloc(){
+		RegionMemory r = memory.alloc(100);
+		byte[] b = new byte[100];
+		Random random = new Random();
+		random.nextBytes(b);
+		r.write(0, b, 0, b.length);
+		
+		memory.realloc(5000, r);
+		assertEquals(5000, r.size());
+		
+		byte[] b2 = new byte[100];
+		r.read(0, b2, 0, b2.length);
+		assertTrue(Arrays.equals(b, b2));
+		memory.release(r);
+	}
+	
+	public void testSerialization() throws Exception{
+		RegionMemory r = memory.alloc(1024);
+		byte[] b = new byte[1024];
+		Random random = new Random();
+		random.nextBytes(b);
+		r.write(0, b, 0, b.length);
+		
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ObjectOutputStream out     = new ObjectOutputStream(bout);
+		out.writeObject(r);
+		out.flush();
+		
+		//somente a referência do slot é serializada.
+		assertTrue(bout.size() < 1024);
+		
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+		RegionMemory r2      = (RegionMemory)in.readObject();
+		
+		byte[] b2 = new byte[1024];
+		r2.read(0, b2, 0, b2.length);
+		assertTrue(Arrays.equals(b, b2));
+	}
+	
+	public void testPinnedRelease() throws Exception{
+		RegionMemory r = memory.alloc(100);
+		long used      = memory.getUsedBytes();
+		
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ObjectOutputStream out     = new ObjectOutputStream(bout);
+		out.writeObject(r);
+		out.flush();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+		RegionMemory r2      = (RegionMemory)in.readObject();
+		
+		//a fixação é compartilhada pelas cópias da região.
+		assertTrue(r.pin());
+		memory.release(r2);
+		assertFalse(r.pin());
+		assertEquals(used, memory.getUsedBytes());
+		
+		r.unpin();
+		assertEquals(used - 100, memory.getUsedBytes());
+	}
+	
+	public void testPinAfterRelease(){
+		RegionMemory r = memory.alloc(100);
+		memory.release(r);
+		assertFalse(r.pin());
+	}
+	
+	public void testPinStaleCopy() throws Exception{
+		MappedRegionMemory r = (MappedRegionMemory)memory.alloc(100);
+		
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ObjectOutputStream out     = new ObjectOutputStream(bout);
+		out.writeObject(r);
+		out.flush();
+		ObjectInputStream in  = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+		MappedRegionMemory r2 = (MappedRegionMemory)in.readObject();
+		
+		//o slot liberado é entregue a outra região.
+		memory.release(r);
+		MappedRegionMemory r3 = (MappedRegionMemory)memory.alloc(100);
+		assertEquals(r.slot, r3.slot);
+		
+		//a cópia antiga não fixa nem libera o slot da nova região.
+		assertTrue(r2.isReleased());
+		assertFalse(r2.pin());
+		long used = memory.getUsedBytes();
+		memory.release(r2);
+		assertEquals(used, memory.getUsedBytes());
+		
+		assertFalse(r3.isReleased());
+		assertTrue(r3.pin());
+		r3.unpin();
+		memory.release(r3);
+		assertTrue(r3.isReleased());
+	}
+	
+	public void testAllocLargerThanSlot() throws Exception{
+		int size       = 512*1024;
+		RegionMemory r = memory.alloc(size);
+		byte[] b       = new byte[size];
+		Random random  = new Random();
+		random.nextBytes(b);
+		r.write(0, b, 0, b.length);
+		
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ObjectOutputStream out     = new ObjectOutputStream(bout);
+		out.writeObject(r);
+		out.flush();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+		RegionMemory r2      = (RegionMemory)in.readObject();
+		
+		byte[] b2 = new byte[size];
+		r2.read(0, b2, 0, b2.length);
+		assertTrue(Arrays.equals(b, b2));
+		
+		assertTrue(r.pin());
+		memory.release(r);
+		assertFalse(r.pin());
+		r.read(0, b2, 0, b2.length);
+		assertTrue(Arrays.equals(b, b2));
+		r.unpin();
+		assertTrue(((MappedRegionMemory)r).isReleased());
+	}
+	
+	public void testDestroy(){
+		memory.alloc(100);
+		File file = memory.getFile();
+		assertTrue(file.exists());
+		memory.destroy();
+		assertFalse(file.exists());
+	}
+	
+}
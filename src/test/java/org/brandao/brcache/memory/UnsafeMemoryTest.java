@@ -50,4 +50,46 @@ public class UnsafeMemoryTest extends TestCase{
 		assertTrue(Arrays.equals(b, b2));
 	}
 	
+	public void testRealloc(){
+		RegionMemory r = memory.alloc(100);
+		byte[] b = new byte[100];
+		Random random = new Random();
+		random.nextBytes(b);
+		r.write(0, b, 0, b.length);
+		
+		memory.realloc(5000, r);
+		assertEquals(5000, r.size());
+		
+		byte[] b2 = new byte[100];
+		r.read(0, b2, 0, b2.length);
+		assertTrue(Arrays.equals(b, b2));
+		memory.release(r);
+	}
+	
+	public void testReleaseSlot(){
+		UnsafeRegionMemory r = (UnsafeRegionMemory)memory.alloc(100);
+		long address = r.address;
+		memory.release(r);
+		
+		UnsafeRegionMemory r2 = (UnsafeRegionMemory)memory.alloc(100);
+		assertEquals(address, r2.address.longValue());
+		memory.release(r2);
+	}
+	
+	public void testFragmentation(){
+		UnsafeMemory unsafeMemory = (UnsafeMemory)memory;
+		long used                 = unsafeMemory.getUsedBytes();
+		long allocated            = unsafeMemory.getAllocatedBytes();
+		RegionMemory r            = memory.alloc(100);
+		
+		assertEquals(used + 100, unsafeMemory.getUsedBytes());
+		assertTrue(unsafeMemory.getAllocatedBytes() - allocated >= 100);
+		assertTrue(unsafeMemory.getReservedBytes() >= unsafeMemory.getAllocatedBytes());
+		assertTrue(unsafeMemory.getFragmentation() >= 0 && unsafeMemory.getFragmentation() < 1);
+		
+		memory.release(r);
+		assertEquals(used, unsafeMemory.getUsedBytes());
+		assertEquals(allocated, unsafeMemory.getAllocatedBytes());
+	}
+	
 }
@@ -0,0 +1,108 @@
+package org.brandao.brcache.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class BinaryValueSerializerTest extends TestCase{
+
+	private BinaryValueSerializer serializer = new BinaryValueSerializer();
+
+	public void testPrimitives() throws IOException, ClassNotFoundException{
+		Object[] values = new Object[]{
+				null, Boolean.TRUE, Boolean.FALSE, (byte)-7, (short)-300, 'x',
+				0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, 123456789012L,
+				-1.5f, Math.PI, "", "valor ção"};
+
+		for(Object value: values){
+			assertEquals(value, this.copy(value));
+		}
+	}
+
+	public void testBytes() throws IOException, ClassNotFoundException{
+		byte[] value = new byte[300];
+		for(int i=0;i<value.length;i++){
+			value[i] = (byte)i;
+		}
+
+		assertTrue(Arrays.equals(value, (byte[])this.copy(value)));
+	}
+
+	public void testCompact() throws IOException{
+		assertEquals(2, this.write(10).length);
+		assertEquals(7, this.write("value").length);
+	}
+
+	public void testRegistered() throws IOException, ClassNotFoundException{
+		serializer.register(1, Point.class, new PointCodec());
+
+		byte[] data = this.write(new Point(3, -4));
+		Point p     = (Point)serializer.readObject(new ByteArrayInputStream(data));
+
+		assertEquals(3, p.x);
+		assertEquals(-4, p.y);
+		assertEquals(10, data.length);
+	}
+
+	public void testNotRegistered() throws IOException{
+		serializer.register(1, Point.class, new PointCodec());
+		byte[] data = this.write(new Point(3, -4));
+
+		try{
+			new BinaryValueSerializer().readObject(new ByteArrayInputStream(data));
+			fail("expected ClassNotFoundException");
+		}
+		catch(ClassNotFoundException e){
+		}
+	}
+
+	public void testJavaSerialization() throws IOException, ClassNotFoundException{
+		ArrayList<String> value = new ArrayList<String>();
+		value.add("a");
+		value.add("b");
+		assertEquals(value, this.copy(value));
+	}
+
+	private byte[] write(Object value) throws IOException{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.writeObject(value, out);
+		return out.toByteArray();
+	}
+
+	private Object copy(Object value) throws IOException, ClassNotFoundException{
+		return serializer.readObject(new ByteArrayInputStream(this.write(value)));
+	}
+
+	private static class Point{
+
+		int x;
+
+		int y;
+
+		public Point(int x, int y){
+			this.x = x;
+			this.y = y;
+		}
+
+	}
+
+	private static class PointCodec implements ValueCodec<Point>{
+
+		public void write(Point value, DataOutput out) throws IOException {
+			out.writeInt(value.x);
+			out.writeInt(value.y);
+		}
+
+		public Point read(DataInput in) throws IOException {
+			return new Point(in.readInt(), in.readInt());
+		}
+
+	}
+
+}